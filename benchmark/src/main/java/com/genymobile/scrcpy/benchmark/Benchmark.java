@@ -0,0 +1,28 @@
+package com.genymobile.scrcpy.benchmark;
+
+import java.util.List;
+
+/**
+ * A benchmark of a single operation, run once per parameter.
+ */
+public interface Benchmark {
+
+    String getName();
+
+    /**
+     * Return the parameters to run the benchmark with, for example the kinds of messages to parse.
+     */
+    List<String> getParams();
+
+    /**
+     * Prepare the input data, outside of the measure.
+     */
+    void setUp(String param);
+
+    /**
+     * Execute the measured operation once.
+     *
+     * @return a value depending on the result, consumed by the runner so that the operation cannot be optimized away
+     */
+    int run();
+}
@@ -0,0 +1,196 @@
+package com.genymobile.scrcpy.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Minimal benchmark harness, measuring the throughput and the allocation rate of each benchmark.
+ * <p>
+ * Each benchmark is run during {@link #WARMUP_ITERATIONS} warmup iterations (so that the JIT compiles it), then measured during
+ * {@link #MEASURE_ITERATIONS} iterations. The reported throughput is the median of the iterations.
+ * <p>
+ * Arguments:
+ * <ul>
+ * <li>{@code --baseline <file>}: compare the results to a baseline, and fail on a throughput regression of more than 30%;</li>
+ * <li>{@code --output <file>}: write the results, in the baseline format.</li>
+ * </ul>
+ */
+public final class BenchmarkRunner {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURE_ITERATIONS = 10;
+    private static final long ITERATION_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+    private static final int BATCH_SIZE = 1000;
+    private static final double MAX_REGRESSION = 0.3;
+
+    private static final class Result {
+        private final String key;
+        private final double opsPerSecond;
+        private final double bytesPerOp;
+
+        Result(String key, double opsPerSecond, double bytesPerOp) {
+            this.key = key;
+            this.opsPerSecond = opsPerSecond;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        String format() {
+            return String.format(Locale.ROOT, "%-60s %15.0f %10.1f", key, opsPerSecond, bytesPerOp);
+        }
+    }
+
+    // consumed results, so that the measured operations cannot be eliminated
+    private static volatile int sink;
+
+    private BenchmarkRunner() {
+        // not instantiable
+    }
+
+    private static List<Benchmark> createBenchmarks() {
+        return Arrays.<Benchmark>asList(
+                new ControlMessageReaderBenchmark(),
+                new VideoSettingsBenchmark(),
+                new DeviceMessageBenchmark(),
+                new DisplayInfoBenchmark());
+    }
+
+    public static void main(String... args) throws IOException {
+        File baselineFile = null;
+        File outputFile = null;
+        for (int i = 0; i < args.length - 1; i += 2) {
+            if ("--baseline".equals(args[i])) {
+                baselineFile = new File(args[i + 1]);
+            } else if ("--output".equals(args[i])) {
+                outputFile = new File(args[i + 1]);
+            } else {
+                throw new IllegalArgumentException("Unknown argument: " + args[i]);
+            }
+        }
+
+        List<Result> results = new ArrayList<>();
+        System.out.println(String.format(Locale.ROOT, "%-60s %15s %10s", "# benchmark", "ops/s", "bytes/op"));
+        for (Benchmark benchmark : createBenchmarks()) {
+            for (String param : benchmark.getParams()) {
+                benchmark.setUp(param);
+                Result result = measure(benchmark.getName() + ":" + param, benchmark);
+                System.out.println(result.format());
+                results.add(result);
+            }
+        }
+
+        if (outputFile != null) {
+            writeResults(outputFile, results);
+        }
+        if (baselineFile != null && !compare(readBaseline(baselineFile), results)) {
+            System.exit(1);
+        }
+    }
+
+    private static Result measure(String key, Benchmark benchmark) {
+        for (int i = 0; i < WARMUP_ITERATIONS; ++i) {
+            runIteration(benchmark);
+        }
+        double[] throughputs = new double[MEASURE_ITERATIONS];
+        long totalOps = 0;
+        long allocatedBefore = getAllocatedBytes();
+        for (int i = 0; i < MEASURE_ITERATIONS; ++i) {
+            long start = System.nanoTime();
+            long ops = runIteration(benchmark);
+            long elapsed = System.nanoTime() - start;
+            throughputs[i] = ops * (double) TimeUnit.SECONDS.toNanos(1) / elapsed;
+            totalOps += ops;
+        }
+        long allocated = getAllocatedBytes() - allocatedBefore;
+        Arrays.sort(throughputs);
+        double bytesPerOp = allocatedBefore < 0 ? -1 : (double) allocated / totalOps;
+        return new Result(key, throughputs[MEASURE_ITERATIONS / 2], bytesPerOp);
+    }
+
+    private static long runIteration(Benchmark benchmark) {
+        long deadline = System.nanoTime() + ITERATION_NANOS;
+        long ops = 0;
+        int acc = 0;
+        do {
+            for (int i = 0; i < BATCH_SIZE; ++i) {
+                acc += benchmark.run();
+            }
+            ops += BATCH_SIZE;
+        } while (System.nanoTime() < deadline);
+        sink = acc;
+        return ops;
+    }
+
+    /**
+     * Return the number of bytes allocated by the current thread, or -1 if the JVM does not support it.
+     */
+    private static long getAllocatedBytes() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+
+    private static void writeResults(File file, List<Result> results) throws IOException {
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(String.format(Locale.ROOT, "%-60s %15s %10s%n", "# benchmark", "ops/s", "bytes/op"));
+            for (Result result : results) {
+                writer.write(result.format());
+                writer.write(System.lineSeparator());
+            }
+        }
+    }
+
+    private static Map<String, Result> readBaseline(File file) throws IOException {
+        Map<String, Result> baseline = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\s+");
+                baseline.put(fields[0], new Result(fields[0], Double.parseDouble(fields[1]), Double.parseDouble(fields[2])));
+            }
+        }
+        return baseline;
+    }
+
+    private static boolean compare(Map<String, Result> baseline, List<Result> results) {
+        boolean ok = true;
+        for (Result result : results) {
+            Result reference = baseline.get(result.key);
+            if (reference == null) {
+                System.out.println("No baseline for " + result.key);
+                continue;
+            }
+            double ratio = result.opsPerSecond / reference.opsPerSecond;
+            if (ratio < 1 - MAX_REGRESSION) {
+                System.out.println(String.format(Locale.ROOT, "REGRESSION %s: %.0f ops/s (baseline %.0f, %+.0f%%)", result.key,
+                        result.opsPerSecond, reference.opsPerSecond, (ratio - 1) * 100));
+                ok = false;
+            }
+            if (result.bytesPerOp > reference.bytesPerOp + 1) {
+                System.out.println(String.format(Locale.ROOT, "More allocations for %s: %.1f bytes/op (baseline %.1f)", result.key,
+                        result.bytesPerOp, reference.bytesPerOp));
+            }
+        }
+        return ok;
+    }
+}
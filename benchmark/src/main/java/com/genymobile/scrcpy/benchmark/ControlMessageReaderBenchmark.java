@@ -0,0 +1,96 @@
+package com.genymobile.scrcpy.benchmark;
+
+import com.genymobile.scrcpy.ControlMessage;
+import com.genymobile.scrcpy.ControlMessageReader;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Parsing of the control messages received from the clients, the input path of touch streams.
+ * <p>
+ * The {@code -pooled} variants decode the messages into recycled instances, as the server does.
+ */
+public class ControlMessageReaderBenchmark implements Benchmark {
+
+    private static final String POOLED_SUFFIX = "-pooled";
+
+    private ControlMessageReader reader;
+    private ByteBuffer message;
+    // the last decoded message, so that it escapes: otherwise the JIT may eliminate the allocation of a message never recycled
+    private ControlMessage last;
+
+    @Override
+    public String getName() {
+        return "ControlMessageReader.parseEvent";
+    }
+
+    @Override
+    public List<String> getParams() {
+        return Arrays.asList("touch", "scroll", "keycode", "text", "touch" + POOLED_SUFFIX, "scroll" + POOLED_SUFFIX,
+                "keycode" + POOLED_SUFFIX);
+    }
+
+    @Override
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public void setUp(String param) {
+        boolean pooled = param.endsWith(POOLED_SUFFIX);
+        reader = pooled ? new ControlMessageReader(new ControlMessage.Pool()) : new ControlMessageReader();
+        String type = pooled ? param.substring(0, param.length() - POOLED_SUFFIX.length()) : param;
+
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        switch (type) {
+            case "touch":
+                buffer.put((byte) ControlMessage.TYPE_INJECT_TOUCH_EVENT);
+                buffer.put((byte) 2); // MotionEvent.ACTION_MOVE
+                buffer.putLong(-1); // pointer id
+                putPosition(buffer);
+                buffer.putShort((short) 0xffff); // pressure
+                buffer.putInt(1); // buttons
+                break;
+            case "scroll":
+                buffer.put((byte) ControlMessage.TYPE_INJECT_SCROLL_EVENT);
+                putPosition(buffer);
+                buffer.putInt(0);
+                buffer.putInt(-1);
+                break;
+            case "keycode":
+                buffer.put((byte) ControlMessage.TYPE_INJECT_KEYCODE);
+                buffer.put((byte) 0); // KeyEvent.ACTION_DOWN
+                buffer.putInt(66); // KeyEvent.KEYCODE_ENTER
+                buffer.putInt(0);
+                buffer.putInt(0);
+                break;
+            case "text":
+                byte[] text = "hello world".getBytes(StandardCharsets.UTF_8);
+                buffer.put((byte) ControlMessage.TYPE_INJECT_TEXT);
+                buffer.putInt(text.length);
+                buffer.put(text);
+                break;
+            default:
+                throw new IllegalArgumentException(param);
+        }
+        buffer.flip();
+        message = buffer;
+    }
+
+    @SuppressWarnings("checkstyle:MagicNumber")
+    private static void putPosition(ByteBuffer buffer) {
+        buffer.putInt(540);
+        buffer.putInt(960);
+        buffer.putShort((short) 1080);
+        buffer.putShort((short) 1920);
+    }
+
+    @Override
+    public int run() {
+        message.rewind();
+        ControlMessage msg = reader.parseEvent(message);
+        last = msg;
+        int type = msg.getType();
+        msg.recycle(); // no-op if not pooled
+        return type;
+    }
+}
@@ -0,0 +1,43 @@
+package com.genymobile.scrcpy.benchmark;
+
+import com.genymobile.scrcpy.DeviceMessage;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Serialization of the messages sent to the clients.
+ */
+public class DeviceMessageBenchmark implements Benchmark {
+
+    private static final int MAGIC_LENGTH = 14; // "scrcpy_message"
+
+    private DeviceMessage message;
+
+    @Override
+    public String getName() {
+        return "DeviceMessage.writeToByteArray";
+    }
+
+    @Override
+    public List<String> getParams() {
+        return Arrays.asList("push-response", "clipboard-16", "clipboard-4096");
+    }
+
+    @Override
+    public void setUp(String param) {
+        if ("push-response".equals(param)) {
+            message = DeviceMessage.createPushResponse((short) 1, 0);
+        } else {
+            int length = Integer.parseInt(param.substring("clipboard-".length()));
+            char[] text = new char[length];
+            Arrays.fill(text, 'a');
+            message = DeviceMessage.createClipboard(new String(text));
+        }
+    }
+
+    @Override
+    public int run() {
+        return message.writeToByteArray(MAGIC_LENGTH).length;
+    }
+}
@@ -0,0 +1,38 @@
+package com.genymobile.scrcpy.benchmark;
+
+import com.genymobile.scrcpy.DisplayInfo;
+import com.genymobile.scrcpy.Size;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Serialization of a display description, repeated for every display in the initial info.
+ * <p>
+ * {@code InitialInfo.getSnapshot()} itself queries the system services and the codecs, so it cannot run on the host JVM.
+ */
+public class DisplayInfoBenchmark implements Benchmark {
+
+    private DisplayInfo displayInfo;
+
+    @Override
+    public String getName() {
+        return "DisplayInfo.toByteArray";
+    }
+
+    @Override
+    public List<String> getParams() {
+        return Collections.singletonList("default");
+    }
+
+    @Override
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public void setUp(String param) {
+        displayInfo = new DisplayInfo(0, new Size(1080, 1920), 0, 0, DisplayInfo.FLAG_SUPPORTS_PROTECTED_BUFFERS);
+    }
+
+    @Override
+    public int run() {
+        return displayInfo.toByteArray().length;
+    }
+}
@@ -0,0 +1,50 @@
+package com.genymobile.scrcpy.benchmark;
+
+import com.genymobile.scrcpy.VideoSettings;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Serialization of the video settings, exchanged on every stream change and included in the initial info.
+ */
+public class VideoSettingsBenchmark implements Benchmark {
+
+    private VideoSettings videoSettings;
+    private byte[] bytes;
+    private boolean serialize;
+
+    @Override
+    public String getName() {
+        return "VideoSettings";
+    }
+
+    @Override
+    public List<String> getParams() {
+        return Arrays.asList("toByteArray", "fromByteArray", "fromByteArray-codecOptions");
+    }
+
+    @Override
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public void setUp(String param) {
+        videoSettings = new VideoSettings();
+        videoSettings.setBitRate(8_000_000);
+        videoSettings.setMaxFps(60);
+        videoSettings.setBounds(1080, 1920);
+        videoSettings.setSendFrameMeta(true);
+        if (param.endsWith("-codecOptions")) {
+            videoSettings.setCodecOptions("profile=1,level=4096,i-frame-interval:float=0.5");
+            videoSettings.setEncoderName("OMX.google.h264.encoder");
+        }
+        bytes = videoSettings.toByteArray();
+        serialize = "toByteArray".equals(param);
+    }
+
+    @Override
+    public int run() {
+        if (serialize) {
+            return videoSettings.toByteArray().length;
+        }
+        return VideoSettings.fromByteArray(bytes).getBitRate();
+    }
+}
@@ -0,0 +1,38 @@
+package android.util;
+
+/**
+ * Minimal host JVM stub of {@code android.util.Log}, for benchmarks: the messages are also printed by {@code Ln}.
+ */
+public final class Log {
+    private Log() {
+        // not instantiable
+    }
+
+    public static int v(String tag, String msg) {
+        return 0;
+    }
+
+    public static int d(String tag, String msg) {
+        return 0;
+    }
+
+    public static int i(String tag, String msg) {
+        return 0;
+    }
+
+    public static int w(String tag, String msg) {
+        return 0;
+    }
+
+    public static int w(String tag, String msg, Throwable tr) {
+        return 0;
+    }
+
+    public static int e(String tag, String msg) {
+        return 0;
+    }
+
+    public static int e(String tag, String msg, Throwable tr) {
+        return 0;
+    }
+}
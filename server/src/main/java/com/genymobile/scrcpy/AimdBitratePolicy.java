@@ -0,0 +1,53 @@
+package com.genymobile.scrcpy;
+
+import java.util.List;
+
+/**
+ * Additive-increase/multiplicative-decrease bitrate policy.
+ * <p>
+ * A client is congested if its queue holds more than {@link #MAX_QUEUED_DURATION_MS} of video, if frames have been dropped for it, or if
+ * its round-trip time grew significantly above its minimum. The bitrate decreases as soon as the majority of the clients are congested; the
+ * others are handled by dropping frames for them only.
+ */
+public class AimdBitratePolicy implements BitratePolicy {
+
+    private static final int MAX_QUEUED_DURATION_MS = 250;
+    private static final int MAX_RTT_INCREASE_MS = 150;
+    private static final float DECREASE_FACTOR = 0.75f;
+    private static final int INCREASE_DIVISOR = 20; // reach the max bitrate back in 20 steps
+    private static final int MIN_BIT_RATE = 250_000;
+
+    @Override
+    public int computeBitRate(int currentBitRate, int maxBitRate, List<ClientStats> clients) {
+        if (clients.isEmpty()) {
+            return currentBitRate;
+        }
+        int congested = 0;
+        for (ClientStats stats : clients) {
+            if (isCongested(stats, currentBitRate)) {
+                ++congested;
+            }
+        }
+
+        int minBitRate = Math.min(MIN_BIT_RATE, maxBitRate);
+        int bitRate;
+        if (congested * 2 > clients.size()) {
+            bitRate = (int) (currentBitRate * DECREASE_FACTOR);
+        } else {
+            bitRate = currentBitRate + Math.max(maxBitRate / INCREASE_DIVISOR, 1);
+        }
+        return Math.max(minBitRate, Math.min(maxBitRate, bitRate));
+    }
+
+    @SuppressWarnings("checkstyle:MagicNumber")
+    private static boolean isCongested(ClientStats stats, int bitRate) {
+        if (stats.getDroppedFrames() > 0) {
+            return true;
+        }
+        long maxQueuedBytes = (long) bitRate / 8 * MAX_QUEUED_DURATION_MS / 1000;
+        if (stats.getQueuedBytes() > maxQueuedBytes) {
+            return true;
+        }
+        return stats.getRttMs() >= 0 && stats.getMinRttMs() >= 0 && stats.getRttMs() - stats.getMinRttMs() > MAX_RTT_INCREASE_MS;
+    }
+}
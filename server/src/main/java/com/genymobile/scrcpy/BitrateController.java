@@ -0,0 +1,77 @@
+package com.genymobile.scrcpy;
+
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically adapt the bitrate of a running encoder to the state of the clients, without restarting the codec.
+ */
+public final class BitrateController implements Runnable {
+
+    public interface StatsProvider {
+        /**
+         * Sample the state of every client, and request a new round-trip time measure.
+         *
+         * @return the stats of each client
+         */
+        List<BitratePolicy.ClientStats> sampleClientStats();
+    }
+
+    private static final int PERIOD_MS = 500;
+    private static final int MIN_CHANGE_DIVISOR = 50; // ignore changes smaller than 2% of the max bitrate
+
+    private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor();
+
+    private final ScreenEncoder screenEncoder;
+    private final VideoSettings videoSettings;
+    private final StatsProvider statsProvider;
+    private final BitratePolicy policy;
+
+    private ScheduledFuture<?> future;
+    private int currentBitRate;
+
+    public BitrateController(ScreenEncoder screenEncoder, VideoSettings videoSettings, StatsProvider statsProvider, BitratePolicy policy) {
+        this.screenEncoder = screenEncoder;
+        this.videoSettings = videoSettings;
+        this.statsProvider = statsProvider;
+        this.policy = policy;
+    }
+
+    public synchronized void start() {
+        if (future == null) {
+            currentBitRate = videoSettings.getBitRate();
+            future = EXECUTOR.scheduleAtFixedRate(this, PERIOD_MS, PERIOD_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void stop() {
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        try {
+            update();
+        } catch (RuntimeException e) {
+            // an exception would cancel the periodic task
+            Ln.e("Could not update the bitrate", e);
+        }
+    }
+
+    private synchronized void update() {
+        int maxBitRate = videoSettings.getBitRate();
+        List<BitratePolicy.ClientStats> stats = statsProvider.sampleClientStats();
+        int bitRate = policy.computeBitRate(Math.min(currentBitRate, maxBitRate), maxBitRate, stats);
+        if (Math.abs(bitRate - currentBitRate) >= maxBitRate / MIN_CHANGE_DIVISOR || bitRate == maxBitRate && currentBitRate != maxBitRate) {
+            Ln.d("Adaptive bitrate: " + currentBitRate + " -> " + bitRate);
+            currentBitRate = bitRate;
+            screenEncoder.setBitRate(bitRate);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.genymobile.scrcpy;
+
+import java.util.List;
+
+/**
+ * Policy deciding the encoder bitrate from the state of the clients of a stream.
+ */
+public interface BitratePolicy {
+
+    final class ClientStats {
+        private final long queuedBytes;
+        private final int queuedFrames;
+        private final long droppedFrames;
+        private final long rttMs;
+        private final long minRttMs;
+
+        /**
+         * @param queuedBytes   bytes waiting to be written to the client
+         * @param queuedFrames  frames waiting to be written to the client
+         * @param droppedFrames frames dropped since the previous sample
+         * @param rttMs         last measured round-trip time, or -1 if unknown
+         * @param minRttMs      lowest measured round-trip time, or -1 if unknown
+         */
+        public ClientStats(long queuedBytes, int queuedFrames, long droppedFrames, long rttMs, long minRttMs) {
+            this.queuedBytes = queuedBytes;
+            this.queuedFrames = queuedFrames;
+            this.droppedFrames = droppedFrames;
+            this.rttMs = rttMs;
+            this.minRttMs = minRttMs;
+        }
+
+        public long getQueuedBytes() {
+            return queuedBytes;
+        }
+
+        public int getQueuedFrames() {
+            return queuedFrames;
+        }
+
+        public long getDroppedFrames() {
+            return droppedFrames;
+        }
+
+        public long getRttMs() {
+            return rttMs;
+        }
+
+        public long getMinRttMs() {
+            return minRttMs;
+        }
+    }
+
+    /**
+     * Compute the bitrate to apply.
+     *
+     * @param currentBitRate the bitrate currently applied
+     * @param maxBitRate     the bitrate requested by the video settings, which must not be exceeded
+     * @param clients        a sample for each client
+     * @return the new bitrate
+     */
+    int computeBitRate(int currentBitRate, int maxBitRate, List<ClientStats> clients);
+}
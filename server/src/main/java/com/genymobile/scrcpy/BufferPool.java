@@ -0,0 +1,87 @@
+package com.genymobile.scrcpy;
+
+import java.util.ArrayDeque;
+
+/**
+ * Pool of byte arrays, by power-of-two size classes.
+ * <p>
+ * The arrays larger than the biggest class are not pooled. The number of arrays kept in each class is bounded, so that a burst does not
+ * retain its memory forever.
+ */
+public final class BufferPool {
+
+    private final int minSizeShift;
+    private final int maxSizeShift;
+    private final int maxPooledPerClass;
+    private final ArrayDeque<byte[]>[] classes;
+
+    /**
+     * @param minSize           the size of the smallest class (rounded up to a power of two)
+     * @param maxSize           the size of the biggest class (rounded up to a power of two)
+     * @param maxPooledPerClass the max number of free arrays kept in each class
+     */
+    @SuppressWarnings("unchecked")
+    public BufferPool(int minSize, int maxSize, int maxPooledPerClass) {
+        if (minSize <= 0 || maxSize < minSize) {
+            throw new IllegalArgumentException("Invalid sizes: [" + minSize + ", " + maxSize + "]");
+        }
+        minSizeShift = ceilLog2(minSize);
+        maxSizeShift = ceilLog2(maxSize);
+        this.maxPooledPerClass = maxPooledPerClass;
+        classes = (ArrayDeque<byte[]>[]) new ArrayDeque<?>[maxSizeShift - minSizeShift + 1];
+        for (int i = 0; i < classes.length; ++i) {
+            classes[i] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Return an array of at least {@code size} bytes (its content is undefined).
+     */
+    public byte[] acquire(int size) {
+        int shift = Math.max(ceilLog2(size), minSizeShift);
+        if (shift > maxSizeShift) {
+            return new byte[size];
+        }
+        ArrayDeque<byte[]> free = classes[shift - minSizeShift];
+        byte[] array;
+        synchronized (free) {
+            array = free.poll();
+        }
+        return array != null ? array : new byte[1 << shift];
+    }
+
+    /**
+     * Give back an array acquired from this pool.
+     */
+    public void release(byte[] array) {
+        int shift = ceilLog2(array.length);
+        if (array.length != 1 << shift || shift < minSizeShift || shift > maxSizeShift) {
+            // not from a class of this pool
+            return;
+        }
+        ArrayDeque<byte[]> free = classes[shift - minSizeShift];
+        synchronized (free) {
+            if (free.size() < maxPooledPerClass) {
+                free.push(array);
+            }
+        }
+    }
+
+    /**
+     * Return the number of free arrays of the class of {@code size}.
+     */
+    public int getPooledCount(int size) {
+        int shift = Math.max(ceilLog2(size), minSizeShift);
+        if (shift > maxSizeShift) {
+            return 0;
+        }
+        ArrayDeque<byte[]> free = classes[shift - minSizeShift];
+        synchronized (free) {
+            return free.size();
+        }
+    }
+
+    static int ceilLog2(int value) {
+        return value <= 1 ? 0 : Integer.SIZE - Integer.numberOfLeadingZeros(value - 1);
+    }
+}
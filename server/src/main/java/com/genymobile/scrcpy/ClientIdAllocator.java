@@ -0,0 +1,124 @@
+package com.genymobile.scrcpy;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Allocator of client ids, in constant time.
+ * <p>
+ * An id is made of a slot (in the low {@link #SLOT_BITS} bits) and the generation of the slot (in the high bits). The released slots are
+ * reused in FIFO order, and the generation of a slot is incremented on every release, so that an id is not reused before the generation
+ * wraps around: a late message about a former client never reaches the client which got its slot.
+ * <p>
+ * The ids are positive. The memory grows with the number of concurrent clients, not with the capacity.
+ */
+public final class ClientIdAllocator {
+
+    public static final int NO_ID = -1;
+
+    static final int SLOT_BITS = 20;
+    // slot + 1 is stored, so that no id is 0
+    public static final int MAX_CAPACITY = (1 << SLOT_BITS) - 1;
+
+    private static final int SLOT_MASK = (1 << SLOT_BITS) - 1;
+    private static final int GENERATION_MASK = (1 << (Integer.SIZE - 1 - SLOT_BITS)) - 1;
+    private static final int INITIAL_SLOTS = 64;
+
+    private final int capacity;
+
+    private final BitSet inUse = new BitSet();
+    private int[] generations = new int[INITIAL_SLOTS];
+    // ring buffer of the released slots, in release order
+    private int[] freeSlots = new int[INITIAL_SLOTS];
+    private int freeHead;
+    private int freeCount;
+    // the slots created so far, in [0, slotCount)
+    private int slotCount;
+    private int usedCount;
+
+    public ClientIdAllocator() {
+        this(MAX_CAPACITY);
+    }
+
+    /**
+     * @param capacity the max number of ids in use at the same time
+     */
+    public ClientIdAllocator(int capacity) {
+        if (capacity <= 0 || capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity must be in [1, " + MAX_CAPACITY + "]: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Acquire an id.
+     *
+     * @return the id, or {@link #NO_ID} if {@code capacity} ids are in use
+     */
+    public synchronized int acquire() {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[freeHead];
+            freeHead = (freeHead + 1) % freeSlots.length;
+            --freeCount;
+        } else if (slotCount < capacity) {
+            if (slotCount == generations.length) {
+                grow();
+            }
+            slot = slotCount++;
+        } else {
+            return NO_ID;
+        }
+        inUse.set(slot);
+        ++usedCount;
+        return (generations[slot] << SLOT_BITS) | (slot + 1);
+    }
+
+    /**
+     * Release an id.
+     *
+     * @return {@code false} if the id is not in use (already released, or never acquired)
+     */
+    public synchronized boolean release(int id) {
+        if (id <= 0) {
+            return false;
+        }
+        int slot = (id & SLOT_MASK) - 1;
+        int generation = id >>> SLOT_BITS;
+        if (slot < 0 || slot >= slotCount || !inUse.get(slot) || generations[slot] != generation) {
+            return false;
+        }
+        inUse.clear(slot);
+        --usedCount;
+        generations[slot] = (generation + 1) & GENERATION_MASK;
+        // never full: there are at most slotCount free slots
+        freeSlots[(freeHead + freeCount) % freeSlots.length] = slot;
+        ++freeCount;
+        return true;
+    }
+
+    public synchronized boolean isInUse(int id) {
+        int slot = (id & SLOT_MASK) - 1;
+        return id > 0 && slot >= 0 && slot < slotCount && inUse.get(slot) && generations[slot] == (id >>> SLOT_BITS);
+    }
+
+    public synchronized int getUsedCount() {
+        return usedCount;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void grow() {
+        int newLength = (int) Math.min((long) generations.length * 2, capacity);
+        generations = Arrays.copyOf(generations, newLength);
+        // unroll the ring buffer
+        int[] newFreeSlots = new int[newLength];
+        for (int i = 0; i < freeCount; ++i) {
+            newFreeSlots[i] = freeSlots[(freeHead + i) % freeSlots.length];
+        }
+        freeSlots = newFreeSlots;
+        freeHead = 0;
+    }
+}
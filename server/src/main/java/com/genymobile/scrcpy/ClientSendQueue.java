@@ -0,0 +1,285 @@
+package com.genymobile.scrcpy;
+
+import android.media.MediaCodec;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.WebSocketImpl;
+import org.java_websocket.exceptions.WebsocketNotConnectedException;
+import org.java_websocket.server.WebSocketServer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded outbound video queue of a single WebSocket client.
+ * <p>
+ * Java-WebSocket never blocks on send: frames are appended to the connection queue and written later by the selector thread. On a slow
+ * link, this queue would grow without limit. Once it exceeds {@link #maxBytes} or {@link #maxFrames}, video packets for this client are
+ * dropped until the next key frame, without affecting the other clients. A new client also receives nothing but codec config packets until
+ * the first key frame.
+ * <p>
+ * Packets are {@link SharedFrame}s, already framed: their views are appended directly to the connection queue, and the references are
+ * released once the selector thread has written them. A view is written once the selector thread has removed it from the connection
+ * queue: since that queue is thread-safe, the removal happens-before this queue observes it, and the views are never read while written.
+ */
+public final class ClientSendQueue {
+
+    public static final int DEFAULT_MAX_BYTES = 2 * 1024 * 1024;
+    public static final int DEFAULT_MAX_FRAMES = 30;
+
+    /**
+     * The connection to the client, written asynchronously.
+     */
+    public interface Transport {
+        boolean isOpen();
+
+        /**
+         * Queue an already framed message, to be written by another thread.
+         */
+        void write(ByteBuffer data);
+
+        /**
+         * Indicate whether a message is still queued, the writer removing each message from its queue once fully written.
+         * <p>
+         * The removal must happen-before a call returning {@code false}.
+         */
+        boolean isQueued(ByteBuffer data);
+
+        void sendPing();
+    }
+
+    private static final class WebSocketTransport implements Transport {
+        private final WebSocket webSocket;
+        private final WebSocketServer server;
+
+        WebSocketTransport(WebSocket webSocket, WebSocketServer server) {
+            this.webSocket = webSocket;
+            this.server = server;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return webSocket.isOpen() && webSocket instanceof WebSocketImpl;
+        }
+
+        @Override
+        public void write(ByteBuffer data) {
+            // same as WebSocketImpl.send(), without framing the data again
+            ((WebSocketImpl) webSocket).outQueue.add(data);
+            server.onWriteDemand(webSocket);
+        }
+
+        @Override
+        public boolean isQueued(ByteBuffer data) {
+            // the selector thread polls a buffer from this blocking queue once fully written; its iterator takes the queue locks
+            for (ByteBuffer queued : ((WebSocketImpl) webSocket).outQueue) {
+                // by identity, ByteBuffer.equals() compares the contents
+                if (queued == data) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void sendPing() {
+            webSocket.sendPing();
+        }
+    }
+
+    private static final class Entry {
+        private final SharedFrame frame;
+        private final ByteBuffer view;
+        // the view is consumed by the selector thread, its position is never read
+        private final int size;
+
+        Entry(SharedFrame frame, ByteBuffer view) {
+            this.frame = frame;
+            this.view = view;
+            this.size = view.remaining();
+        }
+    }
+
+    private final Transport transport;
+    private final int maxBytes;
+    private final int maxFrames;
+
+    // frames handed to the connection queue, not fully written yet
+    private final ArrayDeque<Entry> inFlight = new ArrayDeque<>();
+    private long inFlightBytes;
+
+    // a new client cannot decode anything before the first key frame
+    private boolean waitingForKeyFrame = true;
+    private boolean synced; // a key frame has been queued at least once
+    private long droppedFrames;
+    private long reportedDroppedFrames;
+
+    private volatile boolean frameTimestamps;
+
+    private long pingSentAt = -1; // System.nanoTime() of the pending ping
+    private long rttMs = -1;
+    private long minRttMs = -1;
+
+    public ClientSendQueue(WebSocket webSocket, WebSocketServer server) {
+        this(new WebSocketTransport(webSocket, server), DEFAULT_MAX_BYTES, DEFAULT_MAX_FRAMES);
+    }
+
+    public ClientSendQueue(Transport transport, int maxBytes, int maxFrames) {
+        this.transport = transport;
+        this.maxBytes = maxBytes;
+        this.maxFrames = maxFrames;
+    }
+
+    /**
+     * Request the output timestamp of each packet, sent after the packet.
+     */
+    public void setFrameTimestamps(boolean frameTimestamps) {
+        this.frameTimestamps = frameTimestamps;
+    }
+
+    public boolean getFrameTimestamps() {
+        return frameTimestamps;
+    }
+
+    /**
+     * Send a video packet, unless the client is too far behind.
+     *
+     * @param frame the framed packet, retained by this queue until it is written
+     * @return {@code true} if the packet has been queued, {@code false} if it has been dropped
+     */
+    public synchronized boolean offer(SharedFrame frame) {
+        reclaimWritten();
+
+        boolean withTimestamp = frameTimestamps;
+        int flags = frame.getFlags();
+        boolean config = (flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
+        boolean keyFrame = (flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0;
+        // codec config packets are never dropped, the decoder could not recover without them
+        if (!config) {
+            if (waitingForKeyFrame && !keyFrame) {
+                if (synced) {
+                    // not dropped because of congestion before the first key frame
+                    ++droppedFrames;
+                }
+                return false;
+            }
+            if (isFull(frame.getLength(withTimestamp))) {
+                if (!waitingForKeyFrame) {
+                    Ln.d("Client send queue full, dropping frames until the next key frame");
+                    waitingForKeyFrame = true;
+                }
+                ++droppedFrames;
+                return false;
+            }
+            waitingForKeyFrame = false;
+            synced = true;
+        }
+
+        if (!transport.isOpen()) {
+            return false;
+        }
+        ByteBuffer view = frame.view(withTimestamp);
+        frame.retain();
+        Entry entry = new Entry(frame, view);
+        inFlight.add(entry);
+        inFlightBytes += entry.size;
+        transport.write(view);
+        return true;
+    }
+
+    private boolean isFull(int size) {
+        int frames = inFlight.size();
+        // always accept a packet on an empty queue, even if it exceeds the limit by itself
+        return frames > 0 && (frames >= maxFrames || inFlightBytes + size > maxBytes);
+    }
+
+    private void reclaimWritten() {
+        // the selector thread writes the views in order
+        Entry entry = inFlight.peek();
+        while (entry != null && !transport.isQueued(entry.view)) {
+            inFlight.poll();
+            inFlightBytes -= entry.size;
+            entry.frame.release();
+            entry = inFlight.peek();
+        }
+    }
+
+    /**
+     * Release the frames already written, on disconnection.
+     * <p>
+     * The frames not written yet are left to the garbage collector rather than returned to their pool, since the selector thread may still
+     * be flushing them.
+     */
+    public synchronized void release() {
+        reclaimWritten();
+        inFlight.clear();
+        inFlightBytes = 0;
+    }
+
+    /**
+     * Send a ping to measure the round-trip time, if none is pending.
+     * <p>
+     * The ping is queued after the video frames, so the measure includes the queuing delay.
+     */
+    public void sendPing() {
+        synchronized (this) {
+            if (pingSentAt != -1 || !transport.isOpen()) {
+                return;
+            }
+            pingSentAt = System.nanoTime();
+        }
+        try {
+            transport.sendPing();
+        } catch (WebsocketNotConnectedException e) {
+            // closed in the meantime
+        }
+    }
+
+    public synchronized void onPong() {
+        if (pingSentAt == -1) {
+            // not requested by this queue
+            return;
+        }
+        rttMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pingSentAt);
+        pingSentAt = -1;
+        if (minRttMs == -1 || rttMs < minRttMs) {
+            minRttMs = rttMs;
+        }
+    }
+
+    /**
+     * Sample the state of the queue.
+     *
+     * @return the stats, with the frames dropped since the previous call
+     */
+    public synchronized BitratePolicy.ClientStats sampleStats() {
+        reclaimWritten();
+        long dropped = droppedFrames - reportedDroppedFrames;
+        reportedDroppedFrames = droppedFrames;
+        long rtt = rttMs;
+        if (pingSentAt != -1) {
+            // a pong which takes longer than the last measure is also a measure
+            rtt = Math.max(rtt, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - pingSentAt));
+        }
+        return new BitratePolicy.ClientStats(inFlightBytes, inFlight.size(), dropped, rtt, minRttMs);
+    }
+
+    public synchronized int getQueuedFrames() {
+        reclaimWritten();
+        return inFlight.size();
+    }
+
+    public synchronized long getQueuedBytes() {
+        reclaimWritten();
+        return inFlightBytes;
+    }
+
+    public synchronized boolean isWaitingForKeyFrame() {
+        return waitingForKeyFrame;
+    }
+
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+}
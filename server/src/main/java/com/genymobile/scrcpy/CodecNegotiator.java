@@ -0,0 +1,131 @@
+package com.genymobile.scrcpy;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Select the video codec of a stream.
+ * <p>
+ * A client requests a list of mime types, in order of preference (typically the ones it can decode, the most efficient first). The
+ * first one supported by an encoder of the device is used, so that a client can compute the result from the mime/encoder pairs
+ * advertised in the initial info. If none is supported, the stream falls back to AVC, which every device supports.
+ * <p>
+ * A stream shared by several clients is encoded once, in a codec all its viewers can decode: a client joining a stream whose codec it
+ * offered accepts it as is; otherwise the stream is renegotiated among the mime types offered by all its viewers (falling back to AVC).
+ * The mime type actually selected is sent to the clients before each codec config packet (see
+ * {@link DeviceMessage#createVideoCodec(String)}).
+ */
+public final class CodecNegotiator {
+
+    public static final String MIMETYPE_AVC = "video/avc";
+    public static final String MIMETYPE_HEVC = "video/hevc";
+    public static final String MIMETYPE_AV1 = "video/av01";
+
+    public static final String DEFAULT_MIME_TYPE = MIMETYPE_AVC;
+
+    private CodecNegotiator() {
+        // not instantiable
+    }
+
+    /**
+     * Parse a list of mime types separated by commas.
+     *
+     * @param mimeTypes the list, may be {@code null}
+     * @return the mime types, in order, without the empty ones
+     */
+    public static List<String> parse(String mimeTypes) {
+        List<String> result = new ArrayList<>();
+        if (mimeTypes == null) {
+            return result;
+        }
+        for (String token : mimeTypes.split(",")) {
+            String mimeType = token.trim();
+            if (!mimeType.isEmpty() && !result.contains(mimeType)) {
+                result.add(mimeType);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Return the mime type of higher preference, to which the requested profile and level apply.
+     *
+     * @param mimeTypes the requested mime types, separated by commas, may be {@code null}
+     * @return the mime type, or {@link #DEFAULT_MIME_TYPE} if none is requested
+     */
+    public static String getPreferred(String mimeTypes) {
+        List<String> list = parse(mimeTypes);
+        return list.isEmpty() ? DEFAULT_MIME_TYPE : list.get(0);
+    }
+
+    /**
+     * Select the mime type of a stream.
+     *
+     * @param mimeTypes the requested mime types, separated by commas, may be {@code null}
+     * @param supported the mime types supported by the encoders
+     * @return the first requested mime type supported, or {@link #DEFAULT_MIME_TYPE}
+     */
+    public static String negotiate(String mimeTypes, Collection<String> supported) {
+        for (String mimeType : parse(mimeTypes)) {
+            if (supported.contains(mimeType)) {
+                return mimeType;
+            }
+        }
+        return DEFAULT_MIME_TYPE;
+    }
+
+    /**
+     * Replace the codec requested by a client joining a stream which already has viewers.
+     * <p>
+     * If the client offered the codec of the stream, it adopts it, so that the stream is not restarted. Otherwise, the requested mime
+     * types become the ones offered both by the client and for the stream (which are all offered by its other viewers), in the order of
+     * the stream, or AVC if there are none: the stream restarts in a codec every viewer can decode. The other settings (the bitrate, the
+     * crop, etc.) are still requested by the client.
+     *
+     * @param requested       the settings requested by the client, modified
+     * @param running         the settings of the stream
+     * @param runningMimeType the mime type of the running codec, or {@code null} if unknown
+     * @return {@code true} if the codec of the stream is kept
+     */
+    public static boolean negotiateJoin(VideoSettings requested, VideoSettings running, String runningMimeType) {
+        List<String> offered = getOffered(requested.getMimeTypes());
+        if (runningMimeType != null && offered.contains(runningMimeType)) {
+            requested.setEncoderName(running.getEncoderName());
+            requested.setMimeTypes(running.getMimeTypes());
+            requested.setProfile(running.getProfile());
+            requested.setLevel(running.getLevel());
+            return true;
+        }
+        StringBuilder common = new StringBuilder();
+        for (String mimeType : getOffered(running.getMimeTypes())) {
+            if (offered.contains(mimeType)) {
+                if (common.length() > 0) {
+                    common.append(',');
+                }
+                common.append(mimeType);
+            }
+        }
+        String mimeTypes = common.length() > 0 ? common.toString() : DEFAULT_MIME_TYPE;
+        if (!getPreferred(mimeTypes).equals(getPreferred(requested.getMimeTypes()))) {
+            // the profile and the level only apply to the preferred mime type of the client
+            requested.setProfile(0);
+            requested.setLevel(0);
+        }
+        // the encoder requested by name may not support the common codecs
+        requested.setEncoderName(null);
+        requested.setMimeTypes(mimeTypes);
+        return false;
+    }
+
+    /**
+     * Return the mime types a client may decode: the ones it requested, or the default one if none.
+     */
+    private static List<String> getOffered(String mimeTypes) {
+        List<String> list = parse(mimeTypes);
+        if (list.isEmpty()) {
+            list.add(DEFAULT_MIME_TYPE);
+        }
+        return list;
+    }
+}
@@ -9,13 +9,9 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 
 public abstract class Connection implements Device.RotationListener, Device.ClipboardListener {
-    public interface StreamInvalidateListener {
-        void onStreamInvalidate();
-    }
-
-    protected final ControlMessageReader reader = new ControlMessageReader();
+    protected final ControlMessageReader reader = new ControlMessageReader(new ControlMessage.Pool());
     protected static final int DEVICE_NAME_FIELD_LENGTH = 64;
-    protected StreamInvalidateListener streamInvalidateListener;
+    protected ReconfigurationPlanner.Encoder encoder;
     protected Device device;
     protected final VideoSettings videoSettings;
     protected final Options options;
@@ -24,6 +20,22 @@ public abstract class Connection implements Device.RotationListener, Device.Clip
 
     abstract void send(ByteBuffer data);
 
+    /**
+     * Send an encoded video packet, preceded by its frame meta if enabled.
+     *
+     * @param frameMeta      the frame header, or {@code null} if frame meta are disabled
+     * @param packet         the encoded packet
+     * @param frameTimestamp the output timestamp of the packet, for the clients which requested it, or {@code null} if frame meta are
+     *                       disabled
+     * @param flags          the {@code MediaCodec.BUFFER_FLAG_*} of the packet
+     */
+    void sendVideoPacket(ByteBuffer frameMeta, ByteBuffer packet, ByteBuffer frameTimestamp, int flags) {
+        if (frameMeta != null) {
+            send(frameMeta);
+        }
+        send(packet);
+    }
+
     abstract void sendDeviceMessage(DeviceMessage msg) throws IOException;
 
     abstract void close() throws Exception;
@@ -73,26 +85,43 @@ public abstract class Connection implements Device.RotationListener, Device.Clip
         }
     }
 
-    public boolean setVideoSettings(VideoSettings newSettings) {
-        if (!videoSettings.equals(newSettings)) {
+    /**
+     * Apply new video settings, reconfiguring the running encoder as little as possible.
+     *
+     * @param newSettings the new settings
+     * @param joining     whether the settings are requested by a new client, which needs a sync frame to start decoding
+     */
+    public void setVideoSettings(VideoSettings newSettings, boolean joining) {
+        int plan;
+        if (joining) {
+            plan = ReconfigurationPlanner.planJoin(videoSettings, newSettings);
+        } else {
+            plan = ReconfigurationPlanner.plan(videoSettings, newSettings);
+        }
+        if (plan == ReconfigurationPlanner.NONE) {
+            return;
+        }
+        synchronized (videoSettings) {
+            // the encoder thread snapshots the settings for each codec instance
             videoSettings.merge(newSettings);
+        }
+        InitialInfo.invalidate();
+        if ((plan & (ReconfigurationPlanner.RESTART | ReconfigurationPlanner.UPDATE_VIEWPORT)) != 0) {
             device.applyNewVideoSetting(videoSettings);
-            if (this.streamInvalidateListener != null) {
-                streamInvalidateListener.onStreamInvalidate();
-            }
-            return true;
         }
-        return false;
+        if (this.encoder != null) {
+            ReconfigurationPlanner.apply(plan, encoder, videoSettings);
+        }
     }
 
-    public void setStreamInvalidateListener(StreamInvalidateListener listener) {
-        this.streamInvalidateListener = listener;
+    public void setEncoder(ReconfigurationPlanner.Encoder encoder) {
+        this.encoder = encoder;
     }
 
     @Override
     public void onRotationChanged(int rotation) {
-        if (this.streamInvalidateListener != null) {
-            streamInvalidateListener.onStreamInvalidate();
+        if (this.encoder != null) {
+            ReconfigurationPlanner.apply(ReconfigurationPlanner.planRotation(), encoder, videoSettings);
         }
     }
 
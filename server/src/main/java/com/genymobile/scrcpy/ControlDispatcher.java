@@ -0,0 +1,91 @@
+package com.genymobile.scrcpy;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Dispatch the control messages of a client out of the WebSocket thread, so that a blocking call never stalls the other clients.
+ * <p>
+ * Each client has its own lanes, each one handled in order:
+ * <ul>
+ * <li>input: the latency-critical input events, and the clipboard operations, which must stay ordered with the key events (a paste after
+ * a set clipboard, a get clipboard after a copy);</li>
+ * <li>slow: the other operations which may block on an IPC (power mode, rotation, panels).</li>
+ * </ul>
+ * The relative order of messages in different lanes is not preserved. The messages are handled by the controller of the stream the client
+ * views when they are handled (or dropped if it views none). The file pushes are handled separately (see
+ * {@link FilePushHandler#submit(org.java_websocket.WebSocket, ControlMessage)}).
+ */
+public final class ControlDispatcher {
+
+    // shared by all the lanes, so that idle lanes hold no thread
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool();
+
+    private static final String METRIC_QUEUE_DEPTH = "scrcpy_dispatch_queue_depth";
+    private static final String METRIC_QUEUE_DEPTH_HELP = "Control messages waiting to be handled";
+
+    private static final MetricsRegistry.Gauge INPUT_QUEUE_DEPTH = MetricsRegistry.getInstance()
+            .gauge(METRIC_QUEUE_DEPTH, METRIC_QUEUE_DEPTH_HELP, "lane=\"input\"");
+    private static final MetricsRegistry.Gauge SLOW_QUEUE_DEPTH = MetricsRegistry.getInstance()
+            .gauge(METRIC_QUEUE_DEPTH, METRIC_QUEUE_DEPTH_HELP, "lane=\"slow\"");
+
+    /**
+     * The controller of the client.
+     */
+    public interface ControllerProvider {
+        /**
+         * Return the controller of the stream the client currently views, or {@code null}.
+         */
+        Controller getController();
+    }
+
+    private final SerialQueue<ControlMessage> inputLane;
+    private final SerialQueue<ControlMessage> slowLane;
+
+    public ControlDispatcher(final ControllerProvider controllerProvider) {
+        SerialQueue.Handler<ControlMessage> handler = new SerialQueue.Handler<ControlMessage>() {
+            @Override
+            public void handle(ControlMessage msg) {
+                try {
+                    Controller controller = controllerProvider.getController();
+                    if (controller != null) {
+                        controller.handleEvent(msg);
+                    }
+                } finally {
+                    msg.recycle();
+                }
+            }
+        };
+        inputLane = new SerialQueue<>(EXECUTOR, handler, INPUT_QUEUE_DEPTH);
+        slowLane = new SerialQueue<>(EXECUTOR, handler, SLOW_QUEUE_DEPTH);
+    }
+
+    /**
+     * Indicate whether a message is handled in the input lane.
+     */
+    public static boolean isInputLane(int type) {
+        switch (type) {
+            case ControlMessage.TYPE_INJECT_KEYCODE:
+            case ControlMessage.TYPE_INJECT_TEXT:
+            case ControlMessage.TYPE_INJECT_TOUCH_EVENT:
+            case ControlMessage.TYPE_INJECT_SCROLL_EVENT:
+            case ControlMessage.TYPE_BACK_OR_SCREEN_ON:
+            case ControlMessage.TYPE_GET_CLIPBOARD:
+            case ControlMessage.TYPE_SET_CLIPBOARD:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Queue a message to be handled by the controller, then recycled.
+     */
+    public void dispatch(ControlMessage msg) {
+        if (isInputLane(msg.getType())) {
+            inputLane.add(msg);
+        } else {
+            slowLane.add(msg);
+        }
+    }
+}
@@ -2,12 +2,59 @@ package com.genymobile.scrcpy;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Union of all supported event types, identified by their {@code type}.
+ * <p>
+ * The frequent input events (key, touch and scroll) may be obtained from a {@link Pool}, to decode them without allocation. Such messages
+ * must be {@link #recycle() recycled} once handled.
  */
 public final class ControlMessage {
 
+    /**
+     * Pool of reusable messages.
+     * <p>
+     * Messages may be obtained and recycled from any thread: the WebSocket server decodes the messages of its clients on several worker
+     * threads sharing the same reader. The pool never holds more messages than the max number of messages in flight.
+     */
+    public static final class Pool {
+        // messages recycled from any thread (a stack linked by ControlMessage.next), without lock
+        private final AtomicReference<ControlMessage> recycledHead = new AtomicReference<>();
+        // messages available to the reading threads, protected by the pool lock (only contended by the reading threads)
+        private ControlMessage freeHead;
+
+        ControlMessage obtain() {
+            ControlMessage msg;
+            synchronized (this) {
+                if (freeHead == null) {
+                    // take all the recycled messages at once
+                    freeHead = recycledHead.getAndSet(null);
+                }
+                msg = freeHead;
+                if (msg != null) {
+                    freeHead = msg.next;
+                }
+            }
+            if (msg == null) {
+                msg = new ControlMessage();
+                msg.pool = this;
+            } else {
+                msg.next = null;
+            }
+            msg.inPool = false;
+            return msg;
+        }
+
+        void recycle(ControlMessage msg) {
+            ControlMessage head;
+            do {
+                head = recycledHead.get();
+                msg.next = head;
+            } while (!recycledHead.compareAndSet(head, msg));
+        }
+    }
+
     public static final int TYPE_INJECT_KEYCODE = 0;
     public static final int TYPE_INJECT_TEXT = 1;
     public static final int TYPE_INJECT_TOUCH_EVENT = 2;
@@ -23,11 +70,18 @@ public final class ControlMessage {
     public static final int TYPE_CHANGE_STREAM_PARAMETERS = 101;
     public static final int TYPE_PUSH_FILE = 102;
 
+    // the chunks of the file pushes, from 4 KiB to 1 MiB
+    public static final BufferPool CHUNK_POOL = new BufferPool(1 << 12, 1 << 20, 16);
+
     public static final int PUSH_STATE_NEW = 0;
     public static final int PUSH_STATE_START = 1;
     public static final int PUSH_STATE_APPEND = 2;
     public static final int PUSH_STATE_FINISH = 3;
     public static final int PUSH_STATE_CANCEL = 4;
+    // like START, but the chunks are acknowledged by cumulative offsets (see DeviceMessage#createPushAck(short, long, int))
+    public static final int PUSH_STATE_START_STREAMING = 5;
+    // like START_STREAMING, followed by the SHA-256 of the content: resumed from the bytes already written, and verified on FINISH
+    public static final int PUSH_STATE_START_RESUMABLE = 6;
 
     private int type;
     private String text;
@@ -37,7 +91,11 @@ public final class ControlMessage {
     private int buttons; // MotionEvent.BUTTON_*
     private long pointerId;
     private float pressure;
-    private Position position;
+    private Position position; // created on demand from the fields below
+    private int x;
+    private int y;
+    private int screenWidth;
+    private int screenHeight;
     private int hScroll;
     private int vScroll;
     private boolean paste;
@@ -49,13 +107,48 @@ public final class ControlMessage {
     private int pushChunkSize;
     private int fileSize;
     private String fileName;
+    private byte[] pushHash;
     private VideoSettings videoSettings;
 
+    private Pool pool; // null if not pooled
+    private boolean inPool;
+    private ControlMessage next; // in the pool
+
     private ControlMessage() {
     }
 
+    private static ControlMessage obtain(Pool pool) {
+        return pool == null ? new ControlMessage() : pool.obtain();
+    }
+
+    /**
+     * Return this message to its pool, if any.
+     * <p>
+     * The message must not be used anymore once recycled.
+     */
+    public void recycle() {
+        if (pool == null) {
+            return;
+        }
+        if (inPool) {
+            throw new IllegalStateException("Message already recycled");
+        }
+        inPool = true;
+        // do not retain references
+        position = null;
+        text = null;
+        pool.recycle(this);
+    }
+
     public static ControlMessage createInjectKeycode(int action, int keycode, int repeat, int metaState) {
-        ControlMessage msg = new ControlMessage();
+        return obtainInjectKeycode(null, action, keycode, repeat, metaState);
+    }
+
+    /**
+     * Same as {@link #createInjectKeycode(int, int, int, int)}, but obtain the message from a pool (if not {@code null}).
+     */
+    static ControlMessage obtainInjectKeycode(Pool pool, int action, int keycode, int repeat, int metaState) {
+        ControlMessage msg = obtain(pool);
         msg.type = TYPE_INJECT_KEYCODE;
         msg.action = action;
         msg.keycode = keycode;
@@ -72,25 +165,59 @@ public final class ControlMessage {
     }
 
     public static ControlMessage createInjectTouchEvent(int action, long pointerId, Position position, float pressure, int buttons) {
-        ControlMessage msg = new ControlMessage();
+        Point point = position.getPoint();
+        Size screenSize = position.getScreenSize();
+        ControlMessage msg = obtainInjectTouchEvent(null, action, pointerId, pressure, buttons);
+        msg.setPosition(point.getX(), point.getY(), screenSize.getWidth(), screenSize.getHeight());
+        msg.position = position;
+        return msg;
+    }
+
+    /**
+     * Create a touch event, without allocation if a pool is provided.
+     * <p>
+     * The position must be set by {@link #setPosition(int, int, int, int)}.
+     */
+    static ControlMessage obtainInjectTouchEvent(Pool pool, int action, long pointerId, float pressure, int buttons) {
+        ControlMessage msg = obtain(pool);
         msg.type = TYPE_INJECT_TOUCH_EVENT;
         msg.action = action;
         msg.pointerId = pointerId;
         msg.pressure = pressure;
-        msg.position = position;
         msg.buttons = buttons;
         return msg;
     }
 
     public static ControlMessage createInjectScrollEvent(Position position, int hScroll, int vScroll) {
-        ControlMessage msg = new ControlMessage();
-        msg.type = TYPE_INJECT_SCROLL_EVENT;
+        Point point = position.getPoint();
+        Size screenSize = position.getScreenSize();
+        ControlMessage msg = obtainInjectScrollEvent(null, hScroll, vScroll);
+        msg.setPosition(point.getX(), point.getY(), screenSize.getWidth(), screenSize.getHeight());
         msg.position = position;
+        return msg;
+    }
+
+    /**
+     * Create a scroll event, without allocation if a pool is provided.
+     * <p>
+     * The position must be set by {@link #setPosition(int, int, int, int)}.
+     */
+    static ControlMessage obtainInjectScrollEvent(Pool pool, int hScroll, int vScroll) {
+        ControlMessage msg = obtain(pool);
+        msg.type = TYPE_INJECT_SCROLL_EVENT;
         msg.hScroll = hScroll;
         msg.vScroll = vScroll;
         return msg;
     }
 
+    void setPosition(int x, int y, int screenWidth, int screenHeight) {
+        this.position = null;
+        this.x = x;
+        this.y = y;
+        this.screenWidth = screenWidth;
+        this.screenHeight = screenHeight;
+    }
+
     public static ControlMessage createBackOrScreenOn(int action) {
         ControlMessage msg = new ControlMessage();
         msg.type = TYPE_BACK_OR_SCREEN_ON;
@@ -123,24 +250,38 @@ public final class ControlMessage {
         return event;
     }
 
-    public static ControlMessage createFilePush(byte[] bytes) {
+    /**
+     * Parse a file push message, consuming all the remaining bytes of the buffer.
+     * <p>
+     * The chunk of an append is copied once, into an array of {@link #CHUNK_POOL}: call {@link #releasePushChunk()} once it is written.
+     */
+    public static ControlMessage createFilePush(ByteBuffer buffer) {
         ControlMessage event = new ControlMessage();
         event.type = TYPE_PUSH_FILE;
-        ByteBuffer buffer = ByteBuffer.wrap(bytes);
         event.pushId = buffer.getShort();
         event.pushState = buffer.get();
         switch (event.pushState) {
             case PUSH_STATE_START:
+            case PUSH_STATE_START_STREAMING:
                 event.fileSize = buffer.getInt();
                 short nameLength = buffer.getShort();
                 byte[] textBuffer = new byte[nameLength];
                 buffer.get(textBuffer, 0, nameLength);
                 event.fileName = new String(textBuffer, 0, nameLength, StandardCharsets.UTF_8);
                 break;
+            case PUSH_STATE_START_RESUMABLE:
+                event.fileSize = buffer.getInt();
+                short resumableNameLength = buffer.getShort();
+                byte[] resumableName = new byte[resumableNameLength];
+                buffer.get(resumableName, 0, resumableNameLength);
+                event.fileName = new String(resumableName, 0, resumableNameLength, StandardCharsets.UTF_8);
+                event.pushHash = new byte[ResumablePushStore.HASH_LENGTH];
+                buffer.get(event.pushHash);
+                break;
             case PUSH_STATE_APPEND:
                 int chunkSize = buffer.getInt();
-                byte[] chunk = new byte[chunkSize];
-                if (buffer.remaining() >= chunkSize) {
+                if (chunkSize >= 0 && buffer.remaining() >= chunkSize) {
+                    byte[] chunk = CHUNK_POOL.acquire(chunkSize);
                     buffer.get(chunk, 0, chunkSize);
                     event.pushChunkSize = chunkSize;
                     event.pushChunk = chunk;
@@ -155,8 +296,10 @@ public final class ControlMessage {
                 // nothing special;
             default:
                 Ln.w("Unknown push event state: " + event.pushState);
+                buffer.position(buffer.limit());
                 return null;
         }
+        buffer.position(buffer.limit());
         return event;
     }
 
@@ -199,9 +342,28 @@ public final class ControlMessage {
     }
 
     public Position getPosition() {
+        if (position == null && (type == TYPE_INJECT_TOUCH_EVENT || type == TYPE_INJECT_SCROLL_EVENT)) {
+            position = new Position(x, y, screenWidth, screenHeight);
+        }
         return position;
     }
 
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getScreenWidth() {
+        return screenWidth;
+    }
+
+    public int getScreenHeight() {
+        return screenHeight;
+    }
+
     public int getHScroll() {
         return hScroll;
     }
@@ -234,6 +396,16 @@ public final class ControlMessage {
         return pushChunk;
     }
 
+    /**
+     * Give the chunk of a file push back to {@link #CHUNK_POOL}.
+     */
+    public void releasePushChunk() {
+        if (pushChunk != null) {
+            CHUNK_POOL.release(pushChunk);
+            pushChunk = null;
+        }
+    }
+
     public int getPushChunkSize() {
         return pushChunkSize;
     }
@@ -242,6 +414,13 @@ public final class ControlMessage {
         return fileName;
     }
 
+    /**
+     * Return the SHA-256 of the content of a resumable push, or {@code null}.
+     */
+    public byte[] getPushHash() {
+        return pushHash;
+    }
+
     public int getFileSize() {
         return fileSize;
     }
@@ -23,7 +23,18 @@ public class ControlMessageReader {
     private final byte[] rawBuffer = new byte[MESSAGE_MAX_SIZE];
     private final ByteBuffer buffer = ByteBuffer.wrap(rawBuffer);
 
+    // to decode the input events without allocation, may be null
+    private final ControlMessage.Pool pool;
+
     public ControlMessageReader() {
+        this(null);
+    }
+
+    /**
+     * @param pool the pool to obtain the key, touch and scroll messages from, or {@code null} to allocate them
+     */
+    public ControlMessageReader(ControlMessage.Pool pool) {
+        this.pool = pool;
         // invariant: the buffer is always in "get" mode
         buffer.limit(0);
     }
@@ -116,12 +127,7 @@ public class ControlMessageReader {
     }
 
     private ControlMessage parsePushFile(ByteBuffer buffer) {
-        int re = buffer.remaining();
-        byte[] bytes = new byte[re];
-        if (re > 0) {
-            buffer.get(bytes, 0, re);
-        }
-        return ControlMessage.createFilePush(bytes);
+        return ControlMessage.createFilePush(buffer);
     }
 
     private ControlMessage parseInjectKeycode(ByteBuffer buffer) {
@@ -132,7 +138,7 @@ public class ControlMessageReader {
         int keycode = buffer.getInt();
         int repeat = buffer.getInt();
         int metaState = buffer.getInt();
-        return ControlMessage.createInjectKeycode(action, keycode, repeat, metaState);
+        return ControlMessage.obtainInjectKeycode(pool, action, keycode, repeat, metaState);
     }
 
     private String parseString(ByteBuffer buffer) {
@@ -161,23 +167,35 @@ public class ControlMessageReader {
         }
         int action = toUnsigned(buffer.get());
         long pointerId = buffer.getLong();
-        Position position = readPosition(buffer);
+        // position
+        int x = buffer.getInt();
+        int y = buffer.getInt();
+        int screenWidth = toUnsigned(buffer.getShort());
+        int screenHeight = toUnsigned(buffer.getShort());
         // 16 bits fixed-point
         int pressureInt = toUnsigned(buffer.getShort());
         // convert it to a float between 0 and 1 (0x1p16f is 2^16 as float)
         float pressure = pressureInt == 0xffff ? 1f : (pressureInt / 0x1p16f);
         int buttons = buffer.getInt();
-        return ControlMessage.createInjectTouchEvent(action, pointerId, position, pressure, buttons);
+        ControlMessage msg = ControlMessage.obtainInjectTouchEvent(pool, action, pointerId, pressure, buttons);
+        msg.setPosition(x, y, screenWidth, screenHeight);
+        return msg;
     }
 
     private ControlMessage parseInjectScrollEvent(ByteBuffer buffer) {
         if (buffer.remaining() < INJECT_SCROLL_EVENT_PAYLOAD_LENGTH) {
             return null;
         }
-        Position position = readPosition(buffer);
+        // position
+        int x = buffer.getInt();
+        int y = buffer.getInt();
+        int screenWidth = toUnsigned(buffer.getShort());
+        int screenHeight = toUnsigned(buffer.getShort());
         int hScroll = buffer.getInt();
         int vScroll = buffer.getInt();
-        return ControlMessage.createInjectScrollEvent(position, hScroll, vScroll);
+        ControlMessage msg = ControlMessage.obtainInjectScrollEvent(pool, hScroll, vScroll);
+        msg.setPosition(x, y, screenWidth, screenHeight);
+        return msg;
     }
 
     private ControlMessage parseBackOrScreenOnEvent(ByteBuffer buffer) {
@@ -208,14 +226,6 @@ public class ControlMessageReader {
         return ControlMessage.createSetScreenPowerMode(mode);
     }
 
-    private static Position readPosition(ByteBuffer buffer) {
-        int x = buffer.getInt();
-        int y = buffer.getInt();
-        int screenWidth = toUnsigned(buffer.getShort());
-        int screenHeight = toUnsigned(buffer.getShort());
-        return new Position(x, y, screenWidth, screenHeight);
-    }
-
     private static int toUnsigned(short value) {
         return value & 0xffff;
     }
@@ -18,22 +18,32 @@ public class Controller {
 
     private static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor();
 
+    private static final MetricsRegistry.Counter CONTROL_MESSAGES = MetricsRegistry.getInstance()
+            .counter("scrcpy_control_messages_total", "Control messages handled");
+    private static final MetricsRegistry.Histogram HANDLE_LATENCY = MetricsRegistry.getInstance()
+            .histogram("scrcpy_control_handle_latency_seconds", "Time to handle a control message, including the input injection");
+
     private final Device device;
     private final Connection connection;
     private final DeviceMessageSender sender;
+    private final InputScheduler<MotionEvent> inputScheduler;
 
     private final KeyCharacterMap charMap = KeyCharacterMap.load(KeyCharacterMap.VIRTUAL_KEYBOARD);
 
+    // the clients of a stream inject their events from their own input lanes
+    private final Object pointersLock = new Object();
     private long lastTouchDown;
     private final PointersState pointersState = new PointersState();
     private final MotionEvent.PointerProperties[] pointerProperties = new MotionEvent.PointerProperties[PointersState.MAX_POINTERS];
     private final MotionEvent.PointerCoords[] pointerCoords = new MotionEvent.PointerCoords[PointersState.MAX_POINTERS];
 
-    private boolean keepPowerModeOff;
+    // written by the slow lane, read by the input lane
+    private volatile boolean keepPowerModeOff;
 
     public Controller(Device device, Connection connection) {
         this.device = device;
         this.connection = connection;
+        inputScheduler = new InputScheduler<>(new MotionEventInjector(device), EXECUTOR, InputScheduler.UPTIME_CLOCK);
         initPointers();
         sender = new DeviceMessageSender(connection);
     }
@@ -57,6 +67,13 @@ public class Controller {
     }
 
     public void handleEvent(ControlMessage msg) {
+        long start = System.nanoTime();
+        dispatch(msg);
+        CONTROL_MESSAGES.inc();
+        HANDLE_LATENCY.recordSince(start);
+    }
+
+    private void dispatch(ControlMessage msg) {
         switch (msg.getType()) {
             case ControlMessage.TYPE_INJECT_KEYCODE:
                 if (device.supportsInputEvents()) {
@@ -70,12 +87,14 @@ public class Controller {
                 break;
             case ControlMessage.TYPE_INJECT_TOUCH_EVENT:
                 if (device.supportsInputEvents()) {
-                    injectTouch(msg.getAction(), msg.getPointerId(), msg.getPosition(), msg.getPressure(), msg.getButtons());
+                    long touchPoint = device.getPhysicalPoint(msg.getX(), msg.getY(), msg.getScreenWidth(), msg.getScreenHeight());
+                    injectTouch(msg.getAction(), msg.getPointerId(), touchPoint, msg.getPressure(), msg.getButtons());
                 }
                 break;
             case ControlMessage.TYPE_INJECT_SCROLL_EVENT:
                 if (device.supportsInputEvents()) {
-                    injectScroll(msg.getPosition(), msg.getHScroll(), msg.getVScroll());
+                    long scrollPoint = device.getPhysicalPoint(msg.getX(), msg.getY(), msg.getScreenWidth(), msg.getScreenHeight());
+                    injectScroll(scrollPoint, msg.getHScroll(), msg.getVScroll());
                 }
                 break;
             case ControlMessage.TYPE_BACK_OR_SCREEN_ON:
@@ -128,6 +147,8 @@ public class Controller {
         if (keepPowerModeOff && action == KeyEvent.ACTION_UP && (keycode == KeyEvent.KEYCODE_POWER || keycode == KeyEvent.KEYCODE_WAKEUP)) {
             schedulePowerModeOff();
         }
+        // keep the order with the pending touch moves
+        inputScheduler.flush();
         return device.injectKeyEvent(action, keycode, repeat, metaState);
     }
 
@@ -147,6 +168,7 @@ public class Controller {
     }
 
     private int injectText(String text) {
+        inputScheduler.flush();
         int successCount = 0;
         for (char c : text.toCharArray()) {
             if (!injectChar(c)) {
@@ -158,11 +180,19 @@ public class Controller {
         return successCount;
     }
 
-    private boolean injectTouch(int action, long pointerId, Position position, float pressure, int buttons) {
+    /**
+     * @param point the physical point, as returned by {@link Device#getPhysicalPoint(int, int, int, int)}
+     */
+    private boolean injectTouch(int action, long pointerId, long point, float pressure, int buttons) {
+        synchronized (pointersLock) {
+            return injectTouchLocked(action, pointerId, point, pressure, buttons);
+        }
+    }
+
+    private boolean injectTouchLocked(int action, long pointerId, long point, float pressure, int buttons) {
         long now = SystemClock.uptimeMillis();
 
-        Point point = device.getPhysicalPoint(position);
-        if (point == null) {
+        if (point == Device.INVALID_POINT) {
             Ln.w("Ignore touch event, it was generated for a different device size");
             return false;
         }
@@ -173,7 +203,7 @@ public class Controller {
             return false;
         }
         Pointer pointer = pointersState.get(pointerIndex);
-        pointer.setPoint(point);
+        pointer.setPoint(Device.unpackX(point), Device.unpackY(point));
         pointer.setPressure(pressure);
         pointer.setUp(action == MotionEvent.ACTION_UP);
 
@@ -203,13 +233,22 @@ public class Controller {
         MotionEvent event = MotionEvent
                 .obtain(lastTouchDown, now, action, pointerCount, pointerProperties, pointerCoords, 0, buttons, 1f, 1f, DEFAULT_DEVICE_ID, 0, source,
                         0);
-        return device.injectEvent(event);
+        if (action == MotionEvent.ACTION_MOVE) {
+            // moves may be coalesced if they are received faster than the display refresh rate
+            return inputScheduler.injectMove(event);
+        }
+        return inputScheduler.inject(event);
+    }
+
+    private boolean injectScroll(long point, int hScroll, int vScroll) {
+        synchronized (pointersLock) {
+            return injectScrollLocked(point, hScroll, vScroll);
+        }
     }
 
-    private boolean injectScroll(Position position, int hScroll, int vScroll) {
+    private boolean injectScrollLocked(long point, int hScroll, int vScroll) {
         long now = SystemClock.uptimeMillis();
-        Point point = device.getPhysicalPoint(position);
-        if (point == null) {
+        if (point == Device.INVALID_POINT) {
             // ignore event
             return false;
         }
@@ -218,15 +257,15 @@ public class Controller {
         props.id = 0;
 
         MotionEvent.PointerCoords coords = pointerCoords[0];
-        coords.x = point.getX();
-        coords.y = point.getY();
+        coords.x = Device.unpackX(point);
+        coords.y = Device.unpackY(point);
         coords.setAxisValue(MotionEvent.AXIS_HSCROLL, hScroll);
         coords.setAxisValue(MotionEvent.AXIS_VSCROLL, vScroll);
 
         MotionEvent event = MotionEvent
                 .obtain(lastTouchDown, now, MotionEvent.ACTION_SCROLL, 1, pointerProperties, pointerCoords, 0, 0, 1f, 1f, DEFAULT_DEVICE_ID, 0,
                         InputDevice.SOURCE_MOUSE, 0);
-        return device.injectEvent(event);
+        return inputScheduler.inject(event);
     }
 
     /**
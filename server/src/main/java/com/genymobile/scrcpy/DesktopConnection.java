@@ -15,6 +15,7 @@ import java.nio.charset.StandardCharsets;
 public final class DesktopConnection extends Connection {
 
     private static final String SOCKET_NAME = "scrcpy";
+    private static final int FRAME_RING_CAPACITY = 16;
 
     private final LocalSocket videoSocket;
     private final FileDescriptor videoFd;
@@ -25,6 +26,8 @@ public final class DesktopConnection extends Connection {
 
     private final DeviceMessageWriter writer = new DeviceMessageWriter();
 
+    private final FrameRing frameRing = new FrameRing(FRAME_RING_CAPACITY);
+
     private static LocalSocket connect(String abstractName) throws IOException {
         LocalSocket localSocket = new LocalSocket();
         localSocket.connect(new LocalSocketAddress(abstractName));
@@ -67,6 +70,7 @@ public final class DesktopConnection extends Connection {
         }
         Size videoSize = device.getScreenInfo().getVideoSize();
         send(Device.getDeviceName(), videoSize.getWidth(), videoSize.getHeight());
+        startVideoWriter(frameRing.addConsumer());
         screenEncoder = new ScreenEncoder(videoSettings);
         screenEncoder.setDevice(device);
         screenEncoder.setConnection(this);
@@ -105,6 +109,13 @@ public final class DesktopConnection extends Connection {
         }
     }
 
+    @Override
+    void sendVideoPacket(ByteBuffer frameMeta, ByteBuffer packet, ByteBuffer frameTimestamp, int flags) {
+        // never block the encoder on the socket, the packet is written by the video writer thread
+        // (the desktop client never requests the frame timestamps)
+        frameRing.publish(frameMeta, packet, flags);
+    }
+
     @Override
     boolean hasConnections() {
         return true;
@@ -136,6 +147,7 @@ public final class DesktopConnection extends Connection {
                         ControlMessage controlEvent = receiveControlMessage();
                         if (controlEvent != null) {
                             controller.handleEvent(controlEvent);
+                            controlEvent.recycle();
                         }
                     }
 
@@ -147,6 +159,25 @@ public final class DesktopConnection extends Connection {
         }).start();
     }
 
+    private void startVideoWriter(final FrameRing.Consumer consumer) {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        ByteBuffer packet = consumer.take();
+                        IO.writeFully(videoFd, packet);
+                    }
+                } catch (IOException | InterruptedException e) {
+                    // this is expected on close
+                    Ln.d("Video writer stopped");
+                } finally {
+                    consumer.close();
+                }
+            }
+        }).start();
+    }
+
     public ControlMessage receiveControlMessage() throws IOException {
         ControlMessage msg = reader.next();
         while (msg == null) {
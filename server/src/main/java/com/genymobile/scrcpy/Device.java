@@ -2,6 +2,7 @@ package com.genymobile.scrcpy;
 
 import com.genymobile.scrcpy.wrappers.ClipboardManager;
 import com.genymobile.scrcpy.wrappers.ContentProvider;
+import com.genymobile.scrcpy.wrappers.HiddenApi;
 import com.genymobile.scrcpy.wrappers.InputManager;
 import com.genymobile.scrcpy.wrappers.ServiceManager;
 import com.genymobile.scrcpy.wrappers.SurfaceControl;
@@ -28,6 +29,11 @@ public final class Device {
     public static final int LOCK_VIDEO_ORIENTATION_UNLOCKED = -1;
     public static final int LOCK_VIDEO_ORIENTATION_INITIAL = -2;
 
+    /**
+     * Returned by {@link #getPhysicalPoint(int, int, int, int)} if the event must be ignored.
+     */
+    public static final long INVALID_POINT = Long.MIN_VALUE;
+
     private static final ServiceManager SERVICE_MANAGER = new ServiceManager();
 
     public interface RotationListener {
@@ -67,7 +73,7 @@ public final class Device {
 
         int displayInfoFlags = displayInfo.getFlags();
 
-        screenInfo = ScreenInfo.computeScreenInfo(displayInfo, videoSettings);
+        screenInfo = ScreenInfo.computeScreenInfo(displayInfo, videoSettings, EncoderProber.probe(videoSettings));
         layerStack = displayInfo.getLayerStack();
 
         rotationWatcher = new IRotationWatcher.Stub() {
@@ -133,7 +139,8 @@ public final class Device {
     }
 
     public void applyNewVideoSetting(VideoSettings videoSettings) {
-        this.setScreenInfo(ScreenInfo.computeScreenInfo(Device.getDisplayInfo(displayId), videoSettings));
+        EncoderCapabilities capabilities = EncoderProber.probe(videoSettings);
+        this.setScreenInfo(ScreenInfo.computeScreenInfo(Device.getDisplayInfo(displayId), videoSettings, capabilities));
     }
 
     public synchronized void setScreenInfo(ScreenInfo screenInfo) {
@@ -141,6 +148,22 @@ public final class Device {
     }
 
     public Point getPhysicalPoint(Position position) {
+        Point point = position.getPoint();
+        Size screenSize = position.getScreenSize();
+        long packed = getPhysicalPoint(point.getX(), point.getY(), screenSize.getWidth(), screenSize.getHeight());
+        if (packed == INVALID_POINT) {
+            return null;
+        }
+        return new Point(unpackX(packed), unpackY(packed));
+    }
+
+    /**
+     * Same as {@link #getPhysicalPoint(Position)}, without allocation.
+     *
+     * @return the physical point packed in a {@code long} (to be read by {@link #unpackX(long)} and {@link #unpackY(long)}), or
+     * {@link #INVALID_POINT} if the event must be ignored
+     */
+    public long getPhysicalPoint(int x, int y, int screenWidth, int screenHeight) {
         // it hides the field on purpose, to read it with a lock
         @SuppressWarnings("checkstyle:HiddenField")
         ScreenInfo screenInfo = getScreenInfo(); // read with synchronization
@@ -148,21 +171,61 @@ public final class Device {
         // ignore the locked video orientation, the events will apply in coordinates considered in the physical device orientation
         Size unlockedVideoSize = screenInfo.getUnlockedVideoSize();
 
-        int reverseVideoRotation = screenInfo.getReverseVideoRotation();
-        // reverse the video rotation to apply the events
-        Position devicePosition = position.rotate(reverseVideoRotation);
+        // reverse the video rotation to apply the events (same as Position.rotate())
+        int deviceX;
+        int deviceY;
+        int deviceWidth;
+        int deviceHeight;
+        switch (screenInfo.getReverseVideoRotation()) {
+            case 1:
+                deviceX = screenHeight - y;
+                deviceY = x;
+                deviceWidth = screenHeight;
+                deviceHeight = screenWidth;
+                break;
+            case 2:
+                deviceX = screenWidth - x;
+                deviceY = screenHeight - y;
+                deviceWidth = screenWidth;
+                deviceHeight = screenHeight;
+                break;
+            case 3:
+                deviceX = y;
+                deviceY = screenWidth - x;
+                deviceWidth = screenHeight;
+                deviceHeight = screenWidth;
+                break;
+            default:
+                deviceX = x;
+                deviceY = y;
+                deviceWidth = screenWidth;
+                deviceHeight = screenHeight;
+                break;
+        }
 
-        Size clientVideoSize = devicePosition.getScreenSize();
-        if (!unlockedVideoSize.equals(clientVideoSize)) {
+        if (unlockedVideoSize.getWidth() != deviceWidth || unlockedVideoSize.getHeight() != deviceHeight) {
             // The client sends a click relative to a video with wrong dimensions,
             // the device may have been rotated since the event was generated, so ignore the event
-            return null;
+            return INVALID_POINT;
         }
         Rect contentRect = screenInfo.getContentRect();
-        Point point = devicePosition.getPoint();
-        int convertedX = contentRect.left + point.getX() * contentRect.width() / unlockedVideoSize.getWidth();
-        int convertedY = contentRect.top + point.getY() * contentRect.height() / unlockedVideoSize.getHeight();
-        return new Point(convertedX, convertedY);
+        int convertedX = contentRect.left + deviceX * contentRect.width() / unlockedVideoSize.getWidth();
+        int convertedY = contentRect.top + deviceY * contentRect.height() / unlockedVideoSize.getHeight();
+        return packPoint(convertedX, convertedY);
+    }
+
+    @SuppressWarnings("checkstyle:MagicNumber")
+    static long packPoint(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static int unpackX(long packed) {
+        return (int) (packed >> 32);
+    }
+
+    public static int unpackY(long packed) {
+        return (int) packed;
     }
 
     public static String getDeviceName() {
@@ -333,6 +396,20 @@ public final class Device {
         return SERVICE_MANAGER.getDisplayManager().getDisplayIds();
     }
 
+    /**
+     * Resolve the hidden API methods used on the critical paths (encoder restarts, input injection), and log their availability.
+     */
+    public static void resolveHiddenApi() {
+        SurfaceControl.init();
+        SERVICE_MANAGER.getWindowManager();
+        SERVICE_MANAGER.getDisplayManager();
+        SERVICE_MANAGER.getInputManager();
+        SERVICE_MANAGER.getPowerManager();
+        SERVICE_MANAGER.getStatusBarManager();
+        HiddenApi.resolveAll();
+        Ln.d("Hidden API methods:\n" + HiddenApi.getReport());
+    }
+
     public static DisplayInfo getDisplayInfo(int displayId) {
         return SERVICE_MANAGER.getDisplayManager().getDisplayInfo(displayId);
     }
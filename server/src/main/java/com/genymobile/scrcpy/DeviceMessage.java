@@ -8,6 +8,10 @@ public abstract class DeviceMessage {
     public static final int MAX_EVENT_SIZE = 4096;
     public static final int TYPE_CLIPBOARD = 0;
     public static final int TYPE_PUSH_RESPONSE = 101;
+    public static final int TYPE_CLIENT_ID = 102;
+    public static final int TYPE_PUSH_ACK = 103;
+    public static final int TYPE_HEARTBEAT = 104;
+    public static final int TYPE_VIDEO_CODEC = 105;
 
     private int type;
 
@@ -59,6 +63,97 @@ public abstract class DeviceMessage {
         }
     }
 
+    private static final class FilePushAckMessage extends DeviceMessage {
+        private short id;
+        private long offset;
+        private int window;
+
+        private FilePushAckMessage(short id, long offset, int window) {
+            super(TYPE_PUSH_ACK);
+            this.id = id;
+            this.offset = offset;
+            this.window = window;
+        }
+
+        @Override
+        public void writeToByteArray(byte[] array, int offset) {
+            ByteBuffer buffer = ByteBuffer.wrap(array, offset, array.length - offset);
+            buffer.put((byte) this.getType());
+            buffer.putShort(id);
+            buffer.putLong(this.offset);
+            buffer.putInt(window);
+        }
+
+        @Override
+        public int getLen() {
+            return 15;
+        }
+    }
+
+    private static final class ClientIdMessage extends DeviceMessage {
+        private int clientId;
+
+        private ClientIdMessage(int clientId) {
+            super(TYPE_CLIENT_ID);
+            this.clientId = clientId;
+        }
+
+        @Override
+        public void writeToByteArray(byte[] array, int offset) {
+            ByteBuffer buffer = ByteBuffer.wrap(array, offset, array.length - offset);
+            buffer.put((byte) this.getType());
+            buffer.putInt(clientId);
+        }
+
+        @Override
+        public int getLen() {
+            return 5;
+        }
+    }
+
+    private static final class HeartbeatMessage extends DeviceMessage {
+        private long pts;
+
+        private HeartbeatMessage(long pts) {
+            super(TYPE_HEARTBEAT);
+            this.pts = pts;
+        }
+
+        @Override
+        public void writeToByteArray(byte[] array, int offset) {
+            ByteBuffer buffer = ByteBuffer.wrap(array, offset, array.length - offset);
+            buffer.put((byte) this.getType());
+            buffer.putLong(pts);
+        }
+
+        @Override
+        public int getLen() {
+            return 9;
+        }
+    }
+
+    private static final class VideoCodecMessage extends DeviceMessage {
+        private byte[] mimeType;
+
+        private VideoCodecMessage(String mimeType) {
+            super(TYPE_VIDEO_CODEC);
+            this.mimeType = mimeType.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public void writeToByteArray(byte[] array, int offset) {
+            ByteBuffer buffer = ByteBuffer.wrap(array, offset, array.length - offset);
+            buffer.put((byte) this.getType());
+            buffer.put((byte) mimeType.length);
+            buffer.put(mimeType);
+        }
+
+        @Override
+        public int getLen() {
+            return 2 + mimeType.length;
+        }
+    }
+
     public static DeviceMessage createClipboard(String text) {
         return new ClipboardMessage(text);
     }
@@ -67,6 +162,41 @@ public abstract class DeviceMessage {
         return new FilePushResponseMessage(id, result);
     }
 
+    /**
+     * Create the acknowledgment of a streaming push.
+     *
+     * @param offset the number of bytes written to the file
+     * @param window the number of bytes the client may send beyond {@code offset}
+     */
+    public static DeviceMessage createPushAck(short id, long offset, int window) {
+        return new FilePushAckMessage(id, offset, window);
+    }
+
+    /**
+     * Create the message telling a WebSocket client its id, sent after the initial info (which is shared by all the clients).
+     */
+    public static DeviceMessage createClientId(int clientId) {
+        return new ClientIdMessage(clientId);
+    }
+
+    /**
+     * Create the message sent periodically instead of the video frames while the screen is static.
+     *
+     * @param pts the presentation timestamp of the last dropped frame, in the time base of the frame meta
+     */
+    public static DeviceMessage createHeartbeat(long pts) {
+        return new HeartbeatMessage(pts);
+    }
+
+    /**
+     * Create the message announcing the mime type of the video stream, sent before each codec config packet.
+     *
+     * @param mimeType the mime type selected for the stream, shorter than 256 bytes
+     */
+    public static DeviceMessage createVideoCodec(String mimeType) {
+        return new VideoCodecMessage(mimeType);
+    }
+
     public int getType() {
         return type;
     }
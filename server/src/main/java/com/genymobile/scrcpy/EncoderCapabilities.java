@@ -0,0 +1,135 @@
+package com.genymobile.scrcpy;
+
+/**
+ * The limits of a video encoder, to adapt the settings before configuring the codec.
+ * <p>
+ * A codec configured beyond its limits fails (typically with error 0xfffffc0e on a large screen), so the video size, the bitrate and the
+ * frame rate are clamped to the supported values instead.
+ */
+public class EncoderCapabilities {
+
+    /**
+     * Alignment of the video size when the encoder does not require more: some encoders handle other sizes incorrectly.
+     */
+    public static final int DEFAULT_ALIGNMENT = 16;
+
+    // scale factor of each attempt to find a supported size, in percents
+    private static final int SCALE_STEP_PERCENT = 90;
+
+    private final int maxWidth;
+    private final int maxHeight;
+    private final int widthAlignment;
+    private final int heightAlignment;
+    private final int minBitRate;
+    private final int maxBitRate;
+
+    public EncoderCapabilities(int maxWidth, int maxHeight, int widthAlignment, int heightAlignment, int minBitRate, int maxBitRate) {
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+        this.widthAlignment = Math.max(DEFAULT_ALIGNMENT, widthAlignment);
+        this.heightAlignment = Math.max(DEFAULT_ALIGNMENT, heightAlignment);
+        this.minBitRate = minBitRate;
+        this.maxBitRate = maxBitRate;
+    }
+
+    public int getMaxWidth() {
+        return maxWidth;
+    }
+
+    public int getMaxHeight() {
+        return maxHeight;
+    }
+
+    public int getWidthAlignment() {
+        return widthAlignment;
+    }
+
+    public int getHeightAlignment() {
+        return heightAlignment;
+    }
+
+    /**
+     * Indicate whether the encoder supports a video size.
+     * <p>
+     * The default implementation only checks the max dimensions and the alignment.
+     */
+    public boolean isSizeSupported(int width, int height) {
+        return width > 0 && height > 0 && width <= maxWidth && height <= maxHeight && width % widthAlignment == 0
+                && height % heightAlignment == 0;
+    }
+
+    /**
+     * Return the max frame rate the encoder achieves at a video size.
+     *
+     * @return the frame rate, or 0 if unknown
+     */
+    public double getMaxFrameRate(int width, int height) {
+        return 0;
+    }
+
+    /**
+     * Return the largest supported size, not larger than the requested one, preserving its aspect ratio (as much as the alignment
+     * allows).
+     *
+     * @param size the requested size
+     * @return the size, or {@code null} if the encoder supports no size of this aspect ratio
+     */
+    public Size fitSize(Size size) {
+        int width = size.getWidth();
+        int height = size.getHeight();
+        if (width > maxWidth) {
+            height = (int) ((long) height * maxWidth / width);
+            width = maxWidth;
+        }
+        if (height > maxHeight) {
+            width = (int) ((long) width * maxHeight / height);
+            height = maxHeight;
+        }
+        // other limits (the number of macroblocks, for example) are only known by isSizeSupported()
+        while (width >= widthAlignment && height >= heightAlignment) {
+            int alignedWidth = width - width % widthAlignment;
+            int alignedHeight = height - height % heightAlignment;
+            if (isSizeSupported(alignedWidth, alignedHeight)) {
+                return new Size(alignedWidth, alignedHeight);
+            }
+            width = width * SCALE_STEP_PERCENT / 100;
+            height = height * SCALE_STEP_PERCENT / 100;
+        }
+        return null;
+    }
+
+    /**
+     * Clamp a bitrate to the supported range.
+     */
+    public int clampBitRate(int bitRate) {
+        if (maxBitRate > 0 && bitRate > maxBitRate) {
+            return maxBitRate;
+        }
+        return Math.max(bitRate, minBitRate);
+    }
+
+    /**
+     * Clamp a frame rate to the frame rate achievable at a video size.
+     * <p>
+     * The achievable frame rate declared by the encoder is often conservative: a frame rate not limited by the user is kept unlimited.
+     *
+     * @param fps the requested frame rate, 0 for no limit
+     * @return the frame rate, 0 for no limit
+     */
+    public int clampFrameRate(int fps, int width, int height) {
+        int achievable = (int) getMaxFrameRate(width, height);
+        if (achievable <= 0 || fps <= 0) {
+            return fps;
+        }
+        return Math.min(fps, achievable);
+    }
+
+    @Override
+    public String toString() {
+        return "EncoderCapabilities{"
+                + "maxSize=" + maxWidth + "x" + maxHeight
+                + ", alignment=" + widthAlignment + "x" + heightAlignment
+                + ", bitRate=[" + minBitRate + ", " + maxBitRate + "]"
+                + "}";
+    }
+}
@@ -0,0 +1,87 @@
+package com.genymobile.scrcpy;
+
+import android.media.MediaCodecInfo;
+import android.util.Range;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Read the capabilities of the video encoders.
+ * <p>
+ * The encoders do not change while the server is running, so the capabilities are read once per encoder and mime type.
+ */
+public final class EncoderProber {
+
+    private static final ConcurrentHashMap<String, EncoderCapabilities> CACHE = new ConcurrentHashMap<>();
+
+    private EncoderProber() {
+        // not instantiable
+    }
+
+    /**
+     * Return the capabilities of the encoder used for video settings.
+     *
+     * @return the capabilities, or {@code null} if the encoder is not found
+     */
+    public static EncoderCapabilities probe(VideoSettings videoSettings) {
+        return probe(videoSettings.getEncoderName(), ScreenEncoder.selectMimeType(videoSettings));
+    }
+
+    /**
+     * Return the capabilities of an encoder.
+     *
+     * @param encoderName the encoder name, or {@code null} for the default encoder of the mime type
+     * @param mimeType    the mime type
+     * @return the capabilities, or {@code null} if the encoder is not found
+     */
+    public static EncoderCapabilities probe(String encoderName, String mimeType) {
+        String key = (encoderName == null ? "" : encoderName) + '/' + mimeType;
+        EncoderCapabilities capabilities = CACHE.get(key);
+        if (capabilities == null) {
+            MediaCodecInfo codecInfo = findEncoder(encoderName, mimeType);
+            if (codecInfo == null) {
+                return null;
+            }
+            capabilities = read(codecInfo.getCapabilitiesForType(mimeType).getVideoCapabilities());
+            Ln.d("Encoder '" + codecInfo.getName() + "' (" + mimeType + "): " + capabilities);
+            CACHE.put(key, capabilities);
+        }
+        return capabilities;
+    }
+
+    private static MediaCodecInfo findEncoder(String encoderName, String mimeType) {
+        MediaCodecInfo[] encoders = ScreenEncoder.listEncoders(mimeType);
+        if (encoderName == null) {
+            // the one selected by MediaCodec.createEncoderByType()
+            return encoders.length == 0 ? null : encoders[0];
+        }
+        for (MediaCodecInfo encoder : encoders) {
+            if (encoder.getName().equals(encoderName)) {
+                return encoder;
+            }
+        }
+        return null;
+    }
+
+    private static EncoderCapabilities read(final MediaCodecInfo.VideoCapabilities video) {
+        Range<Integer> bitRates = video.getBitrateRange();
+        return new EncoderCapabilities(video.getSupportedWidths().getUpper(), video.getSupportedHeights().getUpper(),
+                video.getWidthAlignment(), video.getHeightAlignment(), bitRates.getLower(), bitRates.getUpper()) {
+            @Override
+            public boolean isSizeSupported(int width, int height) {
+                // also checks the number of macroblocks
+                return super.isSizeSupported(width, height) && video.isSizeSupported(width, height);
+            }
+
+            @Override
+            public double getMaxFrameRate(int width, int height) {
+                try {
+                    return video.getSupportedFrameRatesFor(width, height).getUpper();
+                } catch (IllegalArgumentException e) {
+                    // unsupported size
+                    return 0;
+                }
+            }
+        };
+    }
+}
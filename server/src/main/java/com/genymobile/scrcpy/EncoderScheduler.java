@@ -0,0 +1,270 @@
+package com.genymobile.scrcpy;
+
+import android.media.MediaCodecInfo;
+import android.os.Build;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Run the screen encoders of all the streamed displays, within the number of codec instances supported by the device.
+ * <p>
+ * Hardware encoders support a limited number of concurrent instances, each encoder (and codec) its own. A session is accounted against
+ * the limit of the encoder it uses. The sessions exceeding the limit of their encoder are queued, and started by decreasing number of
+ * viewers (then by submission order) as soon as a running session of the same encoder terminates; a saturated encoder does not delay the
+ * sessions of the other encoders.
+ */
+public final class EncoderScheduler {
+
+    public enum State {
+        QUEUED,
+        RUNNING,
+        FINISHED
+    }
+
+    /**
+     * The number of concurrent instances supported by the encoders.
+     */
+    public interface InstanceLimits {
+        /**
+         * @param encoderName the name of the encoder, or {@code null} if unknown
+         * @param mimeType    the mime type it encodes
+         * @return the max number of concurrent instances
+         */
+        int getMaxInstances(String encoderName, String mimeType);
+    }
+
+    public static final class Session {
+        private final EncoderScheduler scheduler;
+        private final int displayId;
+        private final String encoderName;
+        private final String mimeType;
+        private final Runnable encoder;
+        private final long order;
+        private int viewers;
+        private State state = State.QUEUED;
+
+        private Session(EncoderScheduler scheduler, int displayId, String encoderName, String mimeType, Runnable encoder, long order,
+                int viewers) {
+            this.scheduler = scheduler;
+            this.displayId = displayId;
+            this.encoderName = encoderName;
+            this.mimeType = mimeType;
+            this.encoder = encoder;
+            this.order = order;
+            this.viewers = viewers;
+        }
+
+        public int getDisplayId() {
+            return displayId;
+        }
+
+        public int getViewers() {
+            synchronized (scheduler) {
+                return viewers;
+            }
+        }
+
+        public State getState() {
+            synchronized (scheduler) {
+                return state;
+            }
+        }
+
+        @Override
+        public String toString() {
+            synchronized (scheduler) {
+                return "Session{displayId=" + displayId + ", encoder=" + encoderName + ", viewers=" + viewers + ", state=" + state + "}";
+            }
+        }
+    }
+
+    private static EncoderScheduler instance;
+
+    private static final Comparator<Session> PRIORITY = new Comparator<Session>() {
+        @Override
+        public int compare(Session s1, Session s2) {
+            if (s1.viewers != s2.viewers) {
+                return s2.viewers - s1.viewers;
+            }
+            return Long.compare(s1.order, s2.order);
+        }
+    };
+
+    private final InstanceLimits limits;
+    private final Executor executor;
+    private final List<Session> running = new ArrayList<>();
+    private final List<Session> queued = new ArrayList<>();
+    private long nextOrder;
+
+    /**
+     * Create a scheduler with the same limit for all the encoders.
+     */
+    public EncoderScheduler(final int maxInstances, Executor executor) {
+        this(new InstanceLimits() {
+            @Override
+            public int getMaxInstances(String encoderName, String mimeType) {
+                return maxInstances;
+            }
+        }, executor);
+        if (maxInstances <= 0) {
+            throw new IllegalArgumentException("maxInstances must be positive");
+        }
+    }
+
+    public EncoderScheduler(InstanceLimits limits, Executor executor) {
+        this.limits = limits;
+        this.executor = executor;
+    }
+
+    public static synchronized EncoderScheduler getInstance() {
+        if (instance == null) {
+            instance = new EncoderScheduler(new DeviceInstanceLimits(), new Executor() {
+                @Override
+                public void execute(Runnable command) {
+                    new Thread(command).start();
+                }
+            });
+        }
+        return instance;
+    }
+
+    /**
+     * The limits advertised by the encoders of the device, cached (only called with the lock of the scheduler held).
+     */
+    private static final class DeviceInstanceLimits implements InstanceLimits {
+        private final Map<String, Integer> cache = new HashMap<>();
+
+        @Override
+        public int getMaxInstances(String encoderName, String mimeType) {
+            String key = encoderName + "/" + mimeType;
+            Integer maxInstances = cache.get(key);
+            if (maxInstances == null) {
+                maxInstances = getMaxSupportedInstances(encoderName, mimeType);
+                Ln.d("Encoder scheduler: max " + maxInstances + " concurrent instance(s) of " + key);
+                cache.put(key, maxInstances);
+            }
+            return maxInstances;
+        }
+
+        private static int getMaxSupportedInstances(String encoderName, String mimeType) {
+            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M || encoderName == null) {
+                // unknown, do not limit
+                return Integer.MAX_VALUE;
+            }
+            for (MediaCodecInfo codecInfo : ScreenEncoder.listEncoders(mimeType)) {
+                if (codecInfo.getName().equals(encoderName)) {
+                    MediaCodecInfo.CodecCapabilities capabilities = codecInfo.getCapabilitiesForType(mimeType);
+                    return Math.max(1, capabilities.getMaxSupportedInstances());
+                }
+            }
+            return Integer.MAX_VALUE;
+        }
+    }
+
+    /**
+     * Submit the encoder of a display, without limit other than the one of an unknown encoder.
+     *
+     * @see #submit(int, String, String, Runnable, int)
+     */
+    public Session submit(int displayId, Runnable encoder, int viewers) {
+        return submit(displayId, null, null, encoder, viewers);
+    }
+
+    /**
+     * Submit the encoder of a display, to be run as soon as an instance of its codec is available.
+     *
+     * @param displayId   the streamed display
+     * @param encoderName the name of the encoder used by the session, or {@code null} if unknown
+     * @param mimeType    the mime type it encodes
+     * @param encoder     the encoder, running until the stream terminates
+     * @param viewers     the number of clients of the stream
+     * @return the session, either running or queued
+     */
+    public synchronized Session submit(int displayId, String encoderName, String mimeType, Runnable encoder, int viewers) {
+        Session session = new Session(this, displayId, encoderName, mimeType, encoder, nextOrder++, viewers);
+        queued.add(session);
+        schedule();
+        return session;
+    }
+
+    /**
+     * Update the number of clients of a stream, which defines its priority while it is queued.
+     */
+    public synchronized void setViewers(Session session, int viewers) {
+        session.viewers = viewers;
+    }
+
+    /**
+     * Cancel a queued session. A running session terminates by itself once it has no clients anymore.
+     */
+    public synchronized void cancel(Session session) {
+        if (queued.remove(session)) {
+            session.state = State.FINISHED;
+        }
+    }
+
+    public synchronized int getRunningCount() {
+        return running.size();
+    }
+
+    public synchronized int getQueuedCount() {
+        return queued.size();
+    }
+
+    private void schedule() {
+        if (queued.isEmpty()) {
+            return;
+        }
+        List<Session> candidates = new ArrayList<>(queued);
+        Collections.sort(candidates, PRIORITY);
+        for (Session session : candidates) {
+            if (getRunningCount(session.encoderName) < limits.getMaxInstances(session.encoderName, session.mimeType)) {
+                queued.remove(session);
+                running.add(session);
+                session.state = State.RUNNING;
+                start(session);
+            }
+        }
+    }
+
+    private int getRunningCount(String encoderName) {
+        int count = 0;
+        for (Session session : running) {
+            // the instances of an encoder share its hardware, whatever the mime type
+            if (encoderName == null ? session.encoderName == null : encoderName.equals(session.encoderName)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private void start(final Session session) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    session.encoder.run();
+                } finally {
+                    onFinished(session);
+                }
+            }
+        });
+    }
+
+    private synchronized void onFinished(Session session) {
+        running.remove(session);
+        session.state = State.FINISHED;
+        schedule();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "EncoderScheduler{running=" + running + ", queued=" + queued + "}";
+    }
+}
@@ -0,0 +1,91 @@
+package com.genymobile.scrcpy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Named sets of encoder parameters, applied on top of the codec options.
+ * <p>
+ * The {@link #INTERACTIVE} tuning requests the encoder to output every frame as soon as possible: some vendor encoders otherwise buffer
+ * several frames. Each key is only requested if the device supports it. A client requesting this tuning also receives the time each
+ * packet is output by the encoder (as a separate message after the packet), so that it can measure the capture-to-output latency of
+ * every frame. The frame meta of the other clients of the stream are unchanged.
+ */
+public final class EncoderTuning {
+
+    public static final byte DEFAULT = 0;
+    public static final byte INTERACTIVE = 1;
+
+    // the MediaFormat keys, some of them not available at compile time on old API levels
+    static final String KEY_BITRATE_MODE = "bitrate-mode"; // API 21
+    static final String KEY_PRIORITY = "priority"; // API 23
+    static final String KEY_MAX_B_FRAMES = "max-bframes"; // API 29
+    static final String KEY_LATENCY = "latency"; // API 30
+    static final String KEY_LOW_LATENCY = "low-latency"; // API 30
+
+    static final String FEATURE_LOW_LATENCY = "low-latency"; // API 30
+
+    static final int BITRATE_MODE_CBR = 2;
+    static final int PRIORITY_REALTIME = 0;
+
+    private static final int API_M = 23;
+    private static final int API_Q = 29;
+    private static final int API_R = 30;
+
+    private EncoderTuning() {
+        // not instantiable
+    }
+
+    public static String getName(int tuning) {
+        switch (tuning) {
+            case DEFAULT:
+                return "default";
+            case INTERACTIVE:
+                return "interactive";
+            default:
+                return "unknown(" + tuning + ")";
+        }
+    }
+
+    /**
+     * Return the codec options of a tuning.
+     *
+     * @param tuning              the tuning
+     * @param sdkInt              the API level of the device
+     * @param cbrSupported        whether the encoder supports the constant bitrate mode
+     * @param lowLatencySupported whether the encoder supports the low latency feature
+     * @return the options, in order
+     */
+    public static List<CodecOption> getOptions(int tuning, int sdkInt, boolean cbrSupported, boolean lowLatencySupported) {
+        List<CodecOption> options = new ArrayList<>();
+        if (tuning != INTERACTIVE) {
+            return options;
+        }
+        if (cbrSupported) {
+            // no bitrate peak (and no delay to absorb it) on a scene change
+            options.add(new CodecOption(KEY_BITRATE_MODE, BITRATE_MODE_CBR));
+        }
+        if (sdkInt >= API_M) {
+            options.add(new CodecOption(KEY_PRIORITY, PRIORITY_REALTIME));
+        }
+        if (sdkInt >= API_Q) {
+            // a B-frame is output after the next frame it references
+            options.add(new CodecOption(KEY_MAX_B_FRAMES, 0));
+        }
+        if (sdkInt >= API_R) {
+            // at most 1 frame queued in the encoder
+            options.add(new CodecOption(KEY_LATENCY, 1));
+            if (lowLatencySupported) {
+                options.add(new CodecOption(KEY_LOW_LATENCY, 1));
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Indicate whether a client requesting the tuning receives the output timestamps of the packets.
+     */
+    public static boolean hasFrameTimestamp(int tuning) {
+        return tuning == INTERACTIVE;
+    }
+}
@@ -7,11 +7,34 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.nio.channels.FileChannel;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+/**
+ * Write the files pushed by the WebSocket clients to {@value #PUSH_PATH}.
+ * <p>
+ * A push started by {@link ControlMessage#PUSH_STATE_START} acknowledges every chunk, so the client waits for a round trip per chunk. A
+ * push started by {@link ControlMessage#PUSH_STATE_START_STREAMING} is flow-controlled instead: the server acknowledges the cumulative
+ * offset written to the file, and the client may send up to {@link #PUSH_WINDOW} bytes beyond it (the window is advertised in every
+ * acknowledgment). The errors are reported the same way for both.
+ * <p>
+ * A push started by {@link ControlMessage#PUSH_STATE_START_RESUMABLE} is a streaming push identified by the SHA-256 of its content (see
+ * {@link ResumablePushStore}). The first acknowledgment gives the offset to resume from. If the connection is lost, the bytes written are
+ * kept for the next push of the same content. The hash is verified on FINISH. If the same content has already been pushed, the push
+ * succeeds immediately with {@link #PUSH_DEDUPLICATED}.
+ * <p>
+ * The pushes are handled out of the WebSocket threads, by a bounded pool of I/O threads: the messages of each file are handled in order,
+ * and the files take turns (see {@link SerialQueue}), so that many files are pushed in parallel without one starving the others. When
+ * the chunks waiting to be written exceed half of {@link #QUEUE_BUDGET}, the window advertised to the streaming clients shrinks.
+ */
 public final class FilePushHandler {
     private static final int NEW_PUSH_ID = 1;
+    // the same content has already been pushed: the file is in place, the push is over
+    private static final int PUSH_DEDUPLICATED = 2;
     private static final int NO_ERROR = 0;
     private static final int ERROR_INVALID_NAME = -1;
     private static final int ERROR_NO_SPACE = -2;
@@ -24,31 +47,119 @@ public final class FilePushHandler {
     private static final int ERROR_UNKNOWN_ID = -9;
     private static final int ERROR_NO_FREE_ID = -10;
     private static final int ERROR_INCORRECT_SIZE = -11;
+    private static final int ERROR_HASH_MISMATCH = -12;
 
     private static final String PUSH_PATH = "/data/local/tmp";
 
+    // the bytes a streaming client may send beyond the acknowledged offset, enough to fill a 30 ms link at ~100 MB/s
+    private static final int PUSH_WINDOW = 4 * 1024 * 1024;
+    // acknowledge often enough that the client never waits for a full window
+    private static final int MIN_PUSH_WINDOW = 256 * 1024;
+    // the bytes of the chunks received but not written yet, beyond which the clients are slowed down
+    private static final long QUEUE_BUDGET = 32 * 1024 * 1024;
+
+    private static final int IO_THREADS = 4;
+    // the messages of a file handled in a row, before the other files get a turn
+    private static final int MAX_BATCH = 4;
+    private static final ExecutorService IO_EXECUTOR = Executors.newFixedThreadPool(IO_THREADS);
+    // the lane of each push id
+    private static final ConcurrentHashMap<Short, Lane> LANES = new ConcurrentHashMap<>();
+    // queued in the lanes of a connection when it is closed
+    private static final ControlMessage DISCONNECTED = ControlMessage.createEmpty(ControlMessage.TYPE_PUSH_FILE);
+
+    private static final ResumablePushStore STORE = new ResumablePushStore(new File(PUSH_PATH, ".scrcpy_push"));
+    // the file names of the pushes being started, protected by itself
+    private static final Set<String> STARTING_NAMES = new HashSet<>();
+
+    private static final MetricsRegistry.Counter PUSHED_BYTES = MetricsRegistry.getInstance()
+            .counter("scrcpy_file_push_bytes_total", "Bytes written by file pushes");
+    private static final MetricsRegistry.Counter PUSHED_CHUNKS = MetricsRegistry.getInstance()
+            .counter("scrcpy_file_push_chunks_total", "Chunks written by file pushes");
+    private static final MetricsRegistry.Counter COMPLETED_PUSHES = MetricsRegistry.getInstance()
+            .counter("scrcpy_file_push_completed_total", "File pushes completed successfully");
+    private static final MetricsRegistry.Counter FAILED_PUSHES = MetricsRegistry.getInstance()
+            .counter("scrcpy_file_push_failed_total", "File pushes failed on a write error, an incorrect size or a hash mismatch");
+    private static final MetricsRegistry.Counter RESUMED_BYTES = MetricsRegistry.getInstance()
+            .counter("scrcpy_file_push_resumed_bytes_total", "Bytes not transferred again thanks to resumed pushes");
+    private static final MetricsRegistry.Counter DEDUPLICATED_PUSHES = MetricsRegistry.getInstance()
+            .counter("scrcpy_file_push_deduplicated_total", "File pushes completed without transfer, the same content being already pushed");
+    private static final MetricsRegistry.Gauge QUEUE_DEPTH = MetricsRegistry.getInstance()
+            .gauge("scrcpy_dispatch_queue_depth", "Control messages waiting to be handled", "lane=\"file_push\"");
+    private static final MetricsRegistry.Gauge QUEUED_BYTES = MetricsRegistry.getInstance()
+            .gauge("scrcpy_file_push_queued_bytes", "Bytes of file push chunks received but not written yet");
+    private static final MetricsRegistry.Histogram WRITE_LATENCY = MetricsRegistry.getInstance()
+            .histogram("scrcpy_file_push_write_latency_seconds", "Time to write a file push chunk");
+
     private FilePushHandler() {
     }
 
+    private static final class Lane implements SerialQueue.Handler<ControlMessage> {
+        private final short pushId;
+        private final WebSocket conn;
+        private final SerialQueue<ControlMessage> queue;
+
+        Lane(short pushId, WebSocket conn) {
+            this.pushId = pushId;
+            this.conn = conn;
+            queue = new SerialQueue<>(IO_EXECUTOR, this, QUEUE_DEPTH, MAX_BATCH);
+        }
+
+        @Override
+        public void handle(ControlMessage msg) {
+            try {
+                if (msg == DISCONNECTED) {
+                    suspend(pushId, conn);
+                } else {
+                    handlePush(conn, msg);
+                }
+            } finally {
+                QUEUED_BYTES.add(-msg.getPushChunkSize());
+                msg.releasePushChunk();
+            }
+            if (FilePush.getInstance(pushId) == null) {
+                // the push is over (or has never started), the next messages with this id will get a new lane
+                LANES.remove(pushId, this);
+            }
+        }
+    }
+
     private static final class FilePush {
-        private static final HashMap<String, FilePush> INSTANCES_BY_NAME = new HashMap<>();
-        private static final HashMap<Short, FilePush> INSTANCES_BY_ID = new HashMap<>();
+        // the pushes of different clients are handled concurrently (each client has its own lane)
+        private static final ConcurrentHashMap<String, FilePush> INSTANCES_BY_NAME = new ConcurrentHashMap<>();
+        private static final ConcurrentHashMap<Short, FilePush> INSTANCES_BY_ID = new ConcurrentHashMap<>();
         private static short nextPushId = 0;
 
-        private final FileOutputStream stream;
+        private final FileChannel channel; // null if resumable
+        private final ResumablePushStore.Upload upload; // null if not resumable
         private final WebSocket conn;
         private final short pushId;
         private final String fileName;
         private final long fileSize;
+        private final boolean streaming;
         private long processedBytes = 0;
+        private long ackedBytes = 0;
+        private int advertisedWindow = PUSH_WINDOW;
 
 
-        FilePush(short pushId, long fileSize, String fileName, FileOutputStream stream, WebSocket conn) {
+        FilePush(short pushId, long fileSize, String fileName, FileChannel channel, WebSocket conn, boolean streaming) {
+            this(pushId, fileSize, fileName, channel, null, conn, streaming);
+        }
+
+        FilePush(short pushId, String fileName, ResumablePushStore.Upload upload, WebSocket conn) {
+            this(pushId, upload.getSize(), fileName, null, upload, conn, true);
+            processedBytes = upload.getOffset();
+            ackedBytes = processedBytes;
+        }
+
+        private FilePush(short pushId, long fileSize, String fileName, FileChannel channel, ResumablePushStore.Upload upload, WebSocket conn,
+                boolean streaming) {
             this.pushId = pushId;
             this.fileSize = fileSize;
             this.fileName = fileName;
-            this.stream = stream;
+            this.channel = channel;
+            this.upload = upload;
             this.conn = conn;
+            this.streaming = streaming;
             INSTANCES_BY_ID.put(pushId, this);
             INSTANCES_BY_NAME.put(fileName, this);
         }
@@ -58,7 +169,7 @@ public final class FilePushHandler {
         public static FilePush getInstance(short id) {
             return INSTANCES_BY_ID.get(id);
         }
-        public static short getNextPushId() {
+        public static synchronized short getNextPushId() {
             short current = nextPushId;
             while (INSTANCES_BY_ID.containsKey(++nextPushId)) {
                 if (nextPushId == Short.MAX_VALUE) {
@@ -70,35 +181,93 @@ public final class FilePushHandler {
             }
             return nextPushId;
         }
-        public static void releaseByConnection(WebSocket conn) {
-            ArrayList<FilePush> related = new ArrayList<>();
-            for (FilePush filePush: INSTANCES_BY_ID.values()) {
-                if (filePush.conn.equals(conn)) {
-                    related.add(filePush);
-                }
+        public static long getReservedBytes() {
+            long reserved = 0;
+            for (FilePush filePush : INSTANCES_BY_ID.values()) {
+                reserved += filePush.getRemainingBytes();
             }
-            for (FilePush filePush: related) {
-                try {
-                    filePush.release();
-                } catch (IOException e) {
-                    Ln.w("Failed to release stream for file: \"" + filePush.getFileName() + "\"");
+            return reserved;
+        }
+        public synchronized void write(byte[] chunk, int len) throws IOException {
+            ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, len);
+            if (upload != null) {
+                upload.write(buffer);
+            } else {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
                 }
             }
-        }
-        public void write(byte[] chunk, int len) throws IOException {
             processedBytes += len;
-            stream.write(chunk, 0, len);
+        }
+        public boolean isResumable() {
+            return upload != null;
+        }
+        public boolean isStreaming() {
+            return streaming;
+        }
+        /**
+         * Return the offset to acknowledge to a streaming client, or -1 if an acknowledgment is not necessary yet.
+         * <p>
+         * The offset is acknowledged every quarter of the last advertised window, so that the client never waits for a full window.
+         */
+        public synchronized long takeAckOffset(int window) {
+            if (processedBytes - ackedBytes < advertisedWindow / 4 && processedBytes != fileSize) {
+                return -1;
+            }
+            ackedBytes = processedBytes;
+            advertisedWindow = window;
+            return processedBytes;
+        }
+        public synchronized long getRemainingBytes() {
+            return fileSize - processedBytes;
+        }
+        public WebSocket getConnection() {
+            return conn;
         }
         public String getFileName() {
             return fileName;
         }
-        public boolean isComplete() {
+        public synchronized boolean isComplete() {
             return processedBytes == fileSize;
         }
-        public void release() throws IOException {
-            INSTANCES_BY_ID.remove(pushId);
-            INSTANCES_BY_NAME.remove(fileName);
-            this.stream.close();
+        /**
+         * Abort the push (the bytes of a resumable push are deleted).
+         */
+        public synchronized void release() throws IOException {
+            unregister();
+            if (upload != null) {
+                STORE.discard(upload);
+            } else {
+                this.channel.close();
+            }
+        }
+        /**
+         * Stop the push, keeping the bytes of a resumable push.
+         */
+        public synchronized void suspend() throws IOException {
+            unregister();
+            if (upload != null) {
+                STORE.suspend(upload);
+            } else {
+                this.channel.close();
+            }
+        }
+        /**
+         * Terminate a complete push.
+         *
+         * @return {@code false} if the content of a resumable push does not match its hash
+         */
+        public synchronized boolean finish() throws IOException {
+            unregister();
+            if (upload != null) {
+                return STORE.complete(upload, new File(PUSH_PATH, fileName));
+            }
+            this.channel.close();
+            return true;
+        }
+        private void unregister() {
+            INSTANCES_BY_ID.remove(pushId, this);
+            INSTANCES_BY_NAME.remove(fileName, this);
         }
     }
 
@@ -108,6 +277,11 @@ public final class FilePushHandler {
         return WebSocketConnection.deviceMessageToByteBuffer(msg);
     }
 
+    private static ByteBuffer pushFilePushAck(short id, long offset, int window) {
+        DeviceMessage msg = DeviceMessage.createPushAck(id, offset, window);
+        return WebSocketConnection.deviceMessageToByteBuffer(msg);
+    }
+
     private static FilePush checkPushId(WebSocket conn, ControlMessage msg) {
         short pushId = msg.getPushId();
         FilePush filePush = FilePush.getInstance(pushId);
@@ -125,25 +299,56 @@ public final class FilePushHandler {
             conn.send(FilePushHandler.pushFilePushResponse(newPushId, NEW_PUSH_ID));
         }
     }
-    private static void handleStart(WebSocket conn, ControlMessage msg) {
+    /**
+     * Reserve the name of a file to push, so that two clients never start pushing the same file.
+     * <p>
+     * Only the reservation is locked: the file is created (or copied, or hashed) once reserved, without blocking the pushes of the other
+     * files. The messages of a push id are handled in order by its lane, so a push id is never started twice concurrently.
+     *
+     * @return {@code false} if the file is already being pushed
+     */
+    private static boolean reserveName(String fileName) {
+        synchronized (STARTING_NAMES) {
+            return FilePush.getInstance(fileName) == null && STARTING_NAMES.add(fileName);
+        }
+    }
+
+    /**
+     * Release the reservation of a file name, once the push is registered (or has failed to start).
+     */
+    private static void releaseName(String fileName) {
+        synchronized (STARTING_NAMES) {
+            STARTING_NAMES.remove(fileName);
+        }
+    }
+
+    private static void handleStart(WebSocket conn, ControlMessage msg, boolean streaming) {
         short pushId = msg.getPushId();
         String fileName = msg.getFileName();
-        int fileSize = msg.getFileSize();
-        if (FilePush.getInstance(fileName) != null) {
-            conn.send(pushFilePushResponse(pushId, ERROR_FILE_IS_BUSY));
-            return;
-        }
         if (fileName.contains("/")) {
             conn.send(pushFilePushResponse(pushId, ERROR_INVALID_NAME));
             return;
         }
-        File file = new File(PUSH_PATH, fileName);
+        if (!reserveName(fileName)) {
+            conn.send(pushFilePushResponse(pushId, ERROR_FILE_IS_BUSY));
+            return;
+        }
+        try {
+            startPush(conn, msg, streaming);
+        } finally {
+            releaseName(fileName);
+        }
+    }
 
-//        long freeSpace = file.getFreeSpace();
-//        if (freeSpace < fileSize) {
-//            sender.send(pushFilePushResponse(pushId, ERROR_NO_SPACE));
-//            return;
-//        }
+    private static void startPush(WebSocket conn, ControlMessage msg, boolean streaming) {
+        short pushId = msg.getPushId();
+        String fileName = msg.getFileName();
+        int fileSize = msg.getFileSize();
+        File file = new File(PUSH_PATH, fileName);
+        if (!hasSpaceFor(fileSize)) {
+            conn.send(pushFilePushResponse(pushId, ERROR_NO_SPACE));
+            return;
+        }
 
         try {
             if (!file.createNewFile()) {
@@ -165,9 +370,86 @@ public final class FilePushHandler {
             return;
         }
 
-        new FilePush(pushId, fileSize, fileName, stream, conn);
-        conn.send(pushFilePushResponse(pushId, NO_ERROR));
+        new FilePush(pushId, fileSize, fileName, stream.getChannel(), conn, streaming);
+        if (streaming) {
+            // open the window
+            conn.send(pushFilePushAck(pushId, 0, PUSH_WINDOW));
+        } else {
+            conn.send(pushFilePushResponse(pushId, NO_ERROR));
+        }
+
+    }
+    private static void handleStartResumable(WebSocket conn, ControlMessage msg) {
+        short pushId = msg.getPushId();
+        String fileName = msg.getFileName();
+        if (fileName.contains("/")) {
+            conn.send(pushFilePushResponse(pushId, ERROR_INVALID_NAME));
+            return;
+        }
+        if (!reserveName(fileName)) {
+            conn.send(pushFilePushResponse(pushId, ERROR_FILE_IS_BUSY));
+            return;
+        }
+        try {
+            startResumablePush(conn, msg);
+        } finally {
+            releaseName(fileName);
+        }
+    }
+
+    private static void startResumablePush(WebSocket conn, ControlMessage msg) {
+        short pushId = msg.getPushId();
+        String fileName = msg.getFileName();
+        int fileSize = msg.getFileSize();
+        byte[] hash = msg.getPushHash();
+        // the partial files of the pushes never resumed
+        STORE.cleanUpIfDue(System.currentTimeMillis());
+        File file = new File(PUSH_PATH, fileName);
 
+        File pushed = STORE.findCompleted(hash, fileSize);
+        if (pushed != null) {
+            try {
+                if (!pushed.equals(file)) {
+                    if (!hasSpaceFor(fileSize)) {
+                        conn.send(pushFilePushResponse(pushId, ERROR_NO_SPACE));
+                        return;
+                    }
+                    ResumablePushStore.copy(pushed, file);
+                    STORE.addCompleted(hash, file);
+                }
+                DEDUPLICATED_PUSHES.inc();
+                conn.send(pushFilePushResponse(pushId, PUSH_DEDUPLICATED));
+            } catch (IOException e) {
+                conn.send(pushFilePushResponse(pushId, ERROR_FAILED_TO_WRITE));
+            }
+            return;
+        }
+
+        ResumablePushStore.Upload upload;
+        try {
+            upload = STORE.open(hash, fileSize);
+        } catch (IOException e) {
+            conn.send(pushFilePushResponse(pushId, ERROR_FAILED_TO_CREATE));
+            return;
+        }
+        if (upload == null) {
+            // the same content is being pushed to another file
+            conn.send(pushFilePushResponse(pushId, ERROR_FILE_IS_BUSY));
+            return;
+        }
+        if (!hasSpaceFor(fileSize - upload.getOffset())) {
+            try {
+                STORE.suspend(upload);
+            } catch (IOException e) {
+                Ln.w("Failed to release stream for file: \"" + fileName + "\"");
+            }
+            conn.send(pushFilePushResponse(pushId, ERROR_NO_SPACE));
+            return;
+        }
+        RESUMED_BYTES.add(upload.getOffset());
+        new FilePush(pushId, fileName, upload, conn);
+        // the client resumes from this offset
+        conn.send(pushFilePushAck(pushId, upload.getOffset(), PUSH_WINDOW));
     }
     private static void handleAppend(WebSocket conn, ControlMessage msg) {
         FilePush filePush = checkPushId(conn, msg);
@@ -176,9 +458,23 @@ public final class FilePushHandler {
         }
         short pushId = msg.getPushId();
         try {
+            long start = System.nanoTime();
             filePush.write(msg.getPushChunk(), msg.getPushChunkSize());
-            conn.send(pushFilePushResponse(pushId, NO_ERROR));
+            WRITE_LATENCY.recordSince(start);
+            PUSHED_BYTES.add(msg.getPushChunkSize());
+            PUSHED_CHUNKS.inc();
+            if (filePush.isStreaming()) {
+                // cumulative, so that the client never waits for each chunk
+                int window = getWindow();
+                long ackOffset = filePush.takeAckOffset(window);
+                if (ackOffset != -1) {
+                    conn.send(pushFilePushAck(pushId, ackOffset, window));
+                }
+            } else {
+                conn.send(pushFilePushResponse(pushId, NO_ERROR));
+            }
         } catch (IOException e) {
+            FAILED_PUSHES.inc();
             conn.send(pushFilePushResponse(pushId, ERROR_FAILED_TO_WRITE));
             try {
                 filePush.release();
@@ -195,12 +491,19 @@ public final class FilePushHandler {
         short pushId = msg.getPushId();
         if (filePush.isComplete()) {
             try {
-                filePush.release();
-                conn.send(pushFilePushResponse(pushId, NO_ERROR));
+                if (filePush.finish()) {
+                    COMPLETED_PUSHES.inc();
+                    conn.send(pushFilePushResponse(pushId, NO_ERROR));
+                } else {
+                    FAILED_PUSHES.inc();
+                    conn.send(pushFilePushResponse(pushId, ERROR_HASH_MISMATCH));
+                }
             } catch (IOException e) {
+                FAILED_PUSHES.inc();
                 conn.send(pushFilePushResponse(pushId, ERROR_FAILED_TO_WRITE));
             }
         } else {
+            FAILED_PUSHES.inc();
             conn.send(pushFilePushResponse(pushId, ERROR_INCORRECT_SIZE));
         }
     }
@@ -218,11 +521,80 @@ public final class FilePushHandler {
         }
     }
 
+    /**
+     * Return the window to advertise to the streaming clients, shrunk when the chunks are received faster than they are written.
+     */
+    private static int getWindow() {
+        long free = QUEUE_BUDGET - QUEUED_BYTES.get();
+        if (free >= QUEUE_BUDGET / 2) {
+            return PUSH_WINDOW;
+        }
+        return (int) Math.max(MIN_PUSH_WINDOW, PUSH_WINDOW * free * 2 / QUEUE_BUDGET);
+    }
+
+    /**
+     * Whether the disk can store {@code size} more bytes, beyond the bytes still expected by the pushes in progress.
+     */
+    private static boolean hasSpaceFor(long size) {
+        long usable = new File(PUSH_PATH).getUsableSpace();
+        return usable - FilePush.getReservedBytes() >= size;
+    }
+
+    private static void suspend(short pushId, WebSocket conn) {
+        FilePush filePush = FilePush.getInstance(pushId);
+        if (filePush == null || !filePush.getConnection().equals(conn)) {
+            return;
+        }
+        try {
+            // a resumable push may be resumed by the next connection
+            filePush.suspend();
+        } catch (IOException e) {
+            Ln.w("Failed to release stream for file: \"" + filePush.getFileName() + "\"");
+        }
+    }
+
+    /**
+     * Queue a push message, to be handled by an I/O thread after the previous messages of the same push.
+     * <p>
+     * Called from the WebSocket thread. The chunk of the message is released once written.
+     */
+    public static void submit(WebSocket conn, ControlMessage msg) {
+        if (msg.getPushState() == ControlMessage.PUSH_STATE_NEW) {
+            // no I/O
+            handleNew(conn);
+            return;
+        }
+        short pushId = msg.getPushId();
+        Lane lane = LANES.get(pushId);
+        if (lane == null) {
+            Lane created = new Lane(pushId, conn);
+            lane = LANES.putIfAbsent(pushId, created);
+            if (lane == null) {
+                lane = created;
+            }
+        }
+        if (!lane.conn.equals(conn)) {
+            // the push id is used by another client
+            conn.send(pushFilePushResponse(pushId, ERROR_FILE_IS_BUSY));
+            msg.releasePushChunk();
+            return;
+        }
+        QUEUED_BYTES.add(msg.getPushChunkSize());
+        lane.queue.add(msg);
+    }
+
+    /**
+     * Stop the pushes of a closed connection, after the messages already queued (a resumable push keeps its bytes).
+     */
     public static void cancelAllForConnection(WebSocket conn) {
-        FilePush.releaseByConnection(conn);
+        for (Lane lane : LANES.values()) {
+            if (lane.conn.equals(conn)) {
+                lane.queue.add(DISCONNECTED);
+            }
+        }
     }
 
-    public static void handlePush(WebSocket conn, ControlMessage msg) {
+    private static void handlePush(WebSocket conn, ControlMessage msg) {
         int state = msg.getPushState();
         switch (state) {
             case ControlMessage.PUSH_STATE_NEW:
@@ -232,7 +604,13 @@ public final class FilePushHandler {
                 handleAppend(conn, msg);
                 break;
             case ControlMessage.PUSH_STATE_START:
-                handleStart(conn, msg);
+                handleStart(conn, msg, false);
+                break;
+            case ControlMessage.PUSH_STATE_START_STREAMING:
+                handleStart(conn, msg, true);
+                break;
+            case ControlMessage.PUSH_STATE_START_RESUMABLE:
+                handleStartResumable(conn, msg);
                 break;
             case ControlMessage.PUSH_STATE_FINISH:
                 handleFinish(conn, msg);
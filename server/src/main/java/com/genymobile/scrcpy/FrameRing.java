@@ -0,0 +1,188 @@
+package com.genymobile.scrcpy;
+
+import android.media.MediaCodec;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Single-producer/multi-consumer ring of preallocated direct buffers, to decouple the encoder from the network writes.
+ * <p>
+ * The encoder thread copies each packet (with its frame meta, if any) into the next free slot, so that the codec output buffer may be
+ * released immediately. Each {@link Consumer} drains the ring from its own thread.
+ * <p>
+ * The producer never waits: a slot is free once every consumer has moved past it. If the ring is full, packets are dropped until the next
+ * key frame.
+ */
+public final class FrameRing {
+
+    private static final int DEFAULT_SLOT_CAPACITY = 128 * 1024;
+
+    private final ByteBuffer[] slots;
+    private final int mask;
+
+    // sequence of the last published packet, written by the producer only
+    private volatile long published = -1;
+
+    private final CopyOnWriteArrayList<Consumer> consumers = new CopyOnWriteArrayList<>();
+
+    // producer state
+    private boolean waitingForKeyFrame;
+    private ByteBuffer pendingConfig;
+    private long droppedPackets;
+
+    public final class Consumer {
+        // sequence of the last packet released, the slots up to this sequence may be reused
+        private volatile long cursor;
+        private volatile Thread thread;
+        private boolean holding;
+
+        private Consumer(long cursor) {
+            this.cursor = cursor;
+        }
+
+        /**
+         * Release the previous packet, and wait for the next one.
+         * <p>
+         * The returned buffer remains valid until the next call to {@link #take()} or {@link #close()}.
+         *
+         * @return a view of the next packet
+         * @throws InterruptedException if the thread is interrupted while waiting
+         */
+        public ByteBuffer take() throws InterruptedException {
+            thread = Thread.currentThread();
+            if (holding) {
+                holding = false;
+                ++cursor;
+            }
+            long next = cursor + 1;
+            while (published < next) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                // unparked by the producer on publish, the timeout is just a safety net
+                LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+            }
+            holding = true;
+            return slots[(int) next & mask].duplicate();
+        }
+
+        public void close() {
+            consumers.remove(this);
+        }
+    }
+
+    public FrameRing(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of 2");
+        }
+        slots = new ByteBuffer[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < capacity; ++i) {
+            slots[i] = ByteBuffer.allocateDirect(DEFAULT_SLOT_CAPACITY);
+        }
+    }
+
+    public Consumer addConsumer() {
+        Consumer consumer = new Consumer(published);
+        consumers.add(consumer);
+        return consumer;
+    }
+
+    /**
+     * Copy a packet into the ring.
+     * <p>
+     * Must be called from a single (producer) thread.
+     *
+     * @param frameMeta the frame header, or {@code null}
+     * @param packet    the encoded packet
+     * @param flags     the {@code MediaCodec.BUFFER_FLAG_*} of the packet
+     * @return {@code true} if the packet has been published, {@code false} if it has been dropped
+     */
+    public boolean publish(ByteBuffer frameMeta, ByteBuffer packet, int flags) {
+        boolean config = (flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
+        boolean keyFrame = (flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0;
+
+        if (config) {
+            if (getFreeSlots() == 0) {
+                // the decoder could not recover without it, keep a copy to publish it before the next key frame
+                pendingConfig = copy(frameMeta, packet);
+                waitingForKeyFrame = true;
+                ++droppedPackets;
+                return false;
+            }
+            pendingConfig = null;
+        } else {
+            int required = pendingConfig != null ? 2 : 1;
+            if ((waitingForKeyFrame && !keyFrame) || getFreeSlots() < required) {
+                if (!waitingForKeyFrame) {
+                    Ln.d("Frame ring full, dropping packets until the next key frame");
+                    waitingForKeyFrame = true;
+                }
+                ++droppedPackets;
+                return false;
+            }
+            waitingForKeyFrame = false;
+            if (pendingConfig != null) {
+                write(null, pendingConfig);
+                pendingConfig = null;
+            }
+        }
+
+        write(frameMeta, packet);
+        return true;
+    }
+
+    private void write(ByteBuffer frameMeta, ByteBuffer packet) {
+        long seq = published + 1;
+        int index = (int) seq & mask;
+        int length = packet.remaining() + (frameMeta != null ? frameMeta.remaining() : 0);
+        ByteBuffer slot = slots[index];
+        if (slot.capacity() < length) {
+            // no consumer may access a free slot, it can be replaced safely
+            slot = ByteBuffer.allocateDirect(Integer.highestOneBit(length - 1) << 1);
+            slots[index] = slot;
+        }
+        slot.clear();
+        if (frameMeta != null) {
+            slot.put(frameMeta.duplicate());
+        }
+        slot.put(packet.duplicate());
+        slot.flip();
+
+        // publish (volatile write)
+        published = seq;
+        for (Consumer consumer : consumers) {
+            Thread thread = consumer.thread;
+            if (thread != null) {
+                LockSupport.unpark(thread);
+            }
+        }
+    }
+
+    private int getFreeSlots() {
+        long minCursor = published;
+        for (Consumer consumer : consumers) {
+            minCursor = Math.min(minCursor, consumer.cursor);
+        }
+        // the slots in (minCursor, published] are still readable by some consumer
+        return slots.length - (int) (published - minCursor);
+    }
+
+    private static ByteBuffer copy(ByteBuffer frameMeta, ByteBuffer packet) {
+        int length = packet.remaining() + (frameMeta != null ? frameMeta.remaining() : 0);
+        ByteBuffer copy = ByteBuffer.allocate(length);
+        if (frameMeta != null) {
+            copy.put(frameMeta.duplicate());
+        }
+        copy.put(packet.duplicate());
+        copy.flip();
+        return copy;
+    }
+
+    public long getDroppedPackets() {
+        return droppedPackets;
+    }
+}
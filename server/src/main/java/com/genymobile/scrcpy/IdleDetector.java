@@ -0,0 +1,129 @@
+package com.genymobile.scrcpy;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Detect a static screen, to stop forwarding the frames the encoder repeats while nothing changes.
+ * <p>
+ * When the screen does not change, the encoder repeats the previous frame after a fixed delay (see
+ * {@code MediaFormat.KEY_REPEAT_PREVIOUS_FRAME_AFTER}), with a timestamp exactly one delay after the previous one. These repeated frames
+ * are (nearly) empty. Once only repeated frames have been produced for the quiet period, the stream is idle: the frames are dropped, and
+ * a heartbeat is sent periodically instead. On the next real change, a key frame is requested, since the client missed the frames
+ * referenced by the next ones; the frames are dropped until it is produced.
+ * <p>
+ * A key frame explicitly {@link #requestKeyFrame() requested} (for example for a new client) is always forwarded.
+ * <p>
+ * Except {@link #requestKeyFrame()}, the methods must be called from the encoder thread.
+ */
+public final class IdleDetector {
+
+    public static final int FORWARD = 0;
+    public static final int DROP = 1;
+    /**
+     * Drop the frame, and send a heartbeat.
+     */
+    public static final int HEARTBEAT = 2;
+    /**
+     * Drop the frame, and request a key frame to resume the stream.
+     */
+    public static final int REQUEST_KEY_FRAME = 3;
+
+    // a repeated frame of a static screen only contains skipped blocks
+    private static final int MAX_REPEATED_FRAME_SIZE = 1024;
+    // timestamps in µs may be truncated from ns
+    private static final long REPEAT_TOLERANCE_US = 1;
+    private static final long NO_PTS = Long.MIN_VALUE;
+
+    private final long repeatIntervalUs;
+    private final long quietPeriodUs;
+    private final long heartbeatIntervalUs;
+
+    private final AtomicBoolean keyFrameRequested = new AtomicBoolean();
+
+    private long lastPts = NO_PTS;
+    private long lastChangePts;
+    private long lastHeartbeatPts;
+    private boolean idle;
+    private boolean waitingKeyFrame;
+
+    /**
+     * @param repeatIntervalUs    the delay after which the encoder repeats the previous frame
+     * @param quietPeriodUs       the duration without change after which the stream is idle
+     * @param heartbeatIntervalUs the interval between heartbeats while idle
+     */
+    public IdleDetector(long repeatIntervalUs, long quietPeriodUs, long heartbeatIntervalUs) {
+        this.repeatIntervalUs = repeatIntervalUs;
+        this.quietPeriodUs = quietPeriodUs;
+        this.heartbeatIntervalUs = heartbeatIntervalUs;
+    }
+
+    /**
+     * Forward the next key frame, even while idle.
+     * <p>
+     * May be called from any thread.
+     */
+    public void requestKeyFrame() {
+        keyFrameRequested.set(true);
+    }
+
+    /**
+     * Reset the state for a new codec, which starts with a key frame.
+     */
+    public void reset() {
+        lastPts = NO_PTS;
+        idle = false;
+        waitingKeyFrame = false;
+    }
+
+    public boolean isIdle() {
+        return idle;
+    }
+
+    /**
+     * Decide what to do with an encoded frame (not a codec config packet).
+     *
+     * @param ptsUs    the presentation timestamp of the frame
+     * @param size     the size of the packet
+     * @param keyFrame {@code true} if the frame is a key frame
+     * @return {@link #FORWARD}, {@link #DROP}, {@link #HEARTBEAT} or {@link #REQUEST_KEY_FRAME}
+     */
+    public int onFrame(long ptsUs, int size, boolean keyFrame) {
+        boolean repeated = lastPts != NO_PTS && Math.abs(ptsUs - lastPts - repeatIntervalUs) <= REPEAT_TOLERANCE_US
+                && (keyFrame || size <= MAX_REPEATED_FRAME_SIZE);
+        if (lastPts == NO_PTS || !repeated) {
+            lastChangePts = ptsUs;
+        }
+        lastPts = ptsUs;
+
+        if (keyFrame) {
+            boolean requested = keyFrameRequested.getAndSet(false);
+            if (requested || waitingKeyFrame) {
+                waitingKeyFrame = false;
+                return FORWARD;
+            }
+        }
+
+        if (idle) {
+            if (!repeated) {
+                idle = false;
+                waitingKeyFrame = true;
+                return REQUEST_KEY_FRAME;
+            }
+            if (ptsUs - lastHeartbeatPts >= heartbeatIntervalUs) {
+                lastHeartbeatPts = ptsUs;
+                return HEARTBEAT;
+            }
+            return DROP;
+        }
+
+        if (waitingKeyFrame) {
+            return DROP;
+        }
+        if (repeated && ptsUs - lastChangePts >= quietPeriodUs) {
+            idle = true;
+            lastHeartbeatPts = ptsUs;
+            return HEARTBEAT;
+        }
+        return FORWARD;
+    }
+}
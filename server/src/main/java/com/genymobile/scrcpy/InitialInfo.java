@@ -0,0 +1,195 @@
+package com.genymobile.scrcpy;
+
+import android.media.MediaCodecInfo;
+import android.os.SystemClock;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cached snapshot of the initial info, sent to every WebSocket client.
+ * <p>
+ * The snapshot is immutable and shared by all the clients: the client id is sent separately (see
+ * {@link DeviceMessage#createClientId(int)}). It is rebuilt only once {@link #invalidate() invalidated} (on join, leave, rotation or
+ * settings change). Since display hot-plug is not observed, it also expires after {@link #MAX_AGE_MILLIS}.
+ * <p>
+ * The layout is unchanged: the trailing client id field is kept for compatibility, and always contains {@link #NO_CLIENT_ID}. The encoder
+ * names list only contains the AVC encoders; every supported mime/encoder pair is appended after the client id, for the clients to
+ * negotiate the codec (see {@link CodecNegotiator}).
+ */
+public final class InitialInfo {
+
+    public static final class Snapshot {
+        private final long version;
+        private final ByteBuffer bytes;
+
+        private Snapshot(long version, ByteBuffer bytes) {
+            this.version = version;
+            this.bytes = bytes;
+        }
+
+        /**
+         * Return the version of the snapshot, incremented on every rebuild.
+         */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Return a new view of the shared bytes, with its own position, so that it can be sent concurrently to several clients.
+         */
+        public ByteBuffer newBuffer() {
+            return bytes.duplicate();
+        }
+    }
+
+    public static final int NO_CLIENT_ID = -1;
+
+    private static final long MAX_AGE_MILLIS = 5000;
+
+    private static final byte[] MAGIC_BYTES_INITIAL = "scrcpy_initial".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DEVICE_NAME_BYTES = Device.getDeviceName().getBytes(StandardCharsets.UTF_8);
+    private static final int DEVICE_NAME_FIELD_LENGTH = 64;
+
+    private static final MetricsRegistry.Counter REBUILDS = MetricsRegistry.getInstance()
+            .counter("scrcpy_initial_info_rebuilds_total", "Initial info snapshots built");
+
+    // the encoders do not change while the server is running
+    private static List<byte[]> encoderNames;
+    // mime type and encoder name, alternately
+    private static List<byte[]> encoderTypes;
+
+    private static Snapshot snapshot;
+    private static boolean valid;
+    private static long snapshotTime;
+
+    private InitialInfo() {
+        // not instantiable
+    }
+
+    /**
+     * Mark the current snapshot as outdated.
+     */
+    public static synchronized void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Return the current snapshot, rebuilt if necessary.
+     */
+    public static synchronized Snapshot getSnapshot() {
+        long now = SystemClock.uptimeMillis();
+        if (!valid || now - snapshotTime > MAX_AGE_MILLIS) {
+            long version = snapshot == null ? 1 : snapshot.getVersion() + 1;
+            snapshot = new Snapshot(version, build());
+            valid = true;
+            snapshotTime = now;
+            REBUILDS.inc();
+        }
+        return snapshot;
+    }
+
+    private static List<byte[]> getEncoderNames() {
+        if (encoderNames == null) {
+            List<byte[]> names = new ArrayList<>();
+            MediaCodecInfo[] encoders = ScreenEncoder.listEncoders();
+            if (encoders != null) {
+                for (MediaCodecInfo encoder : encoders) {
+                    names.add(encoder.getName().getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            encoderNames = names;
+        }
+        return encoderNames;
+    }
+
+    private static List<byte[]> getEncoderTypes() {
+        if (encoderTypes == null) {
+            List<byte[]> pairs = new ArrayList<>();
+            for (MediaCodecInfo encoder : ScreenEncoder.listVideoEncoders()) {
+                byte[] name = encoder.getName().getBytes(StandardCharsets.UTF_8);
+                for (String mimeType : ScreenEncoder.getVideoTypes(encoder)) {
+                    pairs.add(mimeType.getBytes(StandardCharsets.UTF_8));
+                    pairs.add(name);
+                }
+            }
+            encoderTypes = pairs;
+        }
+        return encoderTypes;
+    }
+
+    @SuppressWarnings("checkstyle:MagicNumber")
+    private static ByteBuffer build() {
+        int[] displayIds = Device.getDisplayIds();
+        List<byte[]> displays = new ArrayList<>(displayIds.length);
+        int length = MAGIC_BYTES_INITIAL.length + DEVICE_NAME_FIELD_LENGTH + 4; // displays count
+        for (int displayId : displayIds) {
+            byte[] display = buildDisplay(displayId);
+            displays.add(display);
+            length += display.length;
+        }
+        List<byte[]> encoders = getEncoderNames();
+        length += 4; // encoders count
+        for (byte[] name : encoders) {
+            length += 4 + name.length;
+        }
+        length += 4; // client id
+        List<byte[]> types = getEncoderTypes();
+        length += 4; // pairs count
+        for (byte[] value : types) {
+            length += 4 + value.length;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.put(MAGIC_BYTES_INITIAL);
+        buffer.put(DEVICE_NAME_BYTES, 0, Math.min(DEVICE_NAME_FIELD_LENGTH - 1, DEVICE_NAME_BYTES.length));
+        buffer.position(MAGIC_BYTES_INITIAL.length + DEVICE_NAME_FIELD_LENGTH);
+        buffer.putInt(displays.size());
+        for (byte[] display : displays) {
+            buffer.put(display);
+        }
+        buffer.putInt(encoders.size());
+        for (byte[] name : encoders) {
+            buffer.putInt(name.length);
+            buffer.put(name);
+        }
+        buffer.putInt(NO_CLIENT_ID);
+        buffer.putInt(types.size() / 2);
+        for (byte[] value : types) {
+            buffer.putInt(value.length);
+            buffer.put(value);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Serialize the info of a display: display info, viewers count, screen info and video settings (if streamed).
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    private static byte[] buildDisplay(int displayId) {
+        byte[] displayInfo = Device.getDisplayInfo(displayId).toByteArray();
+        byte[] screenInfo = new byte[0];
+        byte[] videoSettings = new byte[0];
+        int viewers = 0;
+        WebSocketConnection[] renditions = WSServer.getConnectionsForDisplay(displayId);
+        if (renditions.length != 0) {
+            for (WebSocketConnection rendition : renditions) {
+                viewers += rendition.getViewerCount();
+            }
+            WebSocketConnection connection = renditions[0];
+            screenInfo = connection.getDevice().getScreenInfo().toByteArray();
+            videoSettings = connection.getVideoSettings().toByteArray();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(displayInfo.length + 12 + screenInfo.length + videoSettings.length);
+        buffer.put(displayInfo);
+        buffer.putInt(viewers);
+        buffer.putInt(screenInfo.length);
+        buffer.put(screenInfo);
+        buffer.putInt(videoSettings.length);
+        buffer.put(videoSettings);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,165 @@
+package com.genymobile.scrcpy;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedule the injection of motion events, to coalesce the moves received faster than the display refresh rate.
+ * <p>
+ * The time is split into windows aligned on the frame period. The first move of a window is injected immediately (so that coalescing never
+ * delays an isolated move), the next ones are appended as historical samples (via {@code MotionEvent.addBatch()}) to a single event,
+ * injected at the end of the window. No sample is lost: the apps consume them as if the moves had been injected individually.
+ * <p>
+ * Any other event (down, up, scroll…) first flushes the pending moves, so that the order of the events is preserved.
+ *
+ * @param <E> the type of the events, {@code MotionEvent} on the device (see {@link MotionEventInjector})
+ */
+public final class InputScheduler<E> {
+
+    /**
+     * The operations on the events, and their injection.
+     */
+    public interface Injector<E> {
+        /**
+         * Return the time of the event, in the time base of the {@link Clock}, in milliseconds.
+         */
+        long getEventTime(E event);
+
+        /**
+         * Indicate whether an event may be appended to a batch (same pointers, same buttons…).
+         */
+        boolean canBatch(E batch, E event);
+
+        /**
+         * Append the samples of an event to a batch, as historical samples. The event is not recycled.
+         */
+        void appendBatch(E batch, E event);
+
+        /**
+         * Inject an event, then recycle it.
+         *
+         * @return {@code false} if the injection failed
+         */
+        boolean inject(E event);
+
+        void recycle(E event);
+    }
+
+    public interface Clock {
+        long uptimeMillis();
+    }
+
+    /**
+     * The time base of the {@code MotionEvent} times.
+     */
+    public static final Clock UPTIME_CLOCK = new Clock() {
+        @Override
+        public long uptimeMillis() {
+            return SystemClock.uptimeMillis();
+        }
+    };
+
+    // the device refresh rate is not exposed to the server, assume 60 Hz
+    static final long FRAME_PERIOD_MILLIS = 16;
+
+    private static final MetricsRegistry.Counter COALESCED_MOVES = MetricsRegistry.getInstance()
+            .counter("scrcpy_coalesced_moves_total", "Touch moves injected as historical samples of another event");
+
+    private final Injector<E> injector;
+    private final ScheduledExecutorService executor;
+    private final Clock clock;
+
+    // the moves not injected yet, or null
+    private E pending;
+    // the window of the last move injected immediately
+    private long lastMoveWindow = -1;
+    // the flush of the pending moves at the end of their window, or null
+    private ScheduledFuture<?> flushFuture;
+    // incremented on every flush, so that a flush task already running when cancelled does not flush the next moves too early
+    private int flushGeneration;
+
+    public InputScheduler(Injector<E> injector, ScheduledExecutorService executor, Clock clock) {
+        this.injector = injector;
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+    /**
+     * Inject a move, or batch it with the previous ones.
+     * <p>
+     * The event is owned (and recycled) by the scheduler.
+     *
+     * @param event the move event
+     * @return {@code false} if the injection failed (for a batched move, it will only be known on flush)
+     */
+    public synchronized boolean injectMove(E event) {
+        long eventTime = injector.getEventTime(event);
+        if (pending != null) {
+            if (injector.canBatch(pending, event)) {
+                injector.appendBatch(pending, event);
+                injector.recycle(event);
+                COALESCED_MOVES.inc();
+                return true;
+            }
+            // the pointers or the buttons changed, it must be a separate event
+            flush();
+        }
+
+        long window = eventTime / FRAME_PERIOD_MILLIS;
+        if (window != lastMoveWindow) {
+            lastMoveWindow = window;
+            return injector.inject(event);
+        }
+
+        // a move has already been injected during this window, wait for its end
+        pending = event;
+        long delay = Math.max(0, (window + 1) * FRAME_PERIOD_MILLIS - clock.uptimeMillis());
+        final int generation = flushGeneration;
+        flushFuture = executor.schedule(new Runnable() {
+            @Override
+            public void run() {
+                flushScheduled(generation);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+        return true;
+    }
+
+    /**
+     * Inject any event but a move, after the pending moves.
+     * <p>
+     * The event is owned (and recycled) by the scheduler.
+     */
+    public synchronized boolean inject(E event) {
+        flush();
+        return injector.inject(event);
+    }
+
+    /**
+     * Inject the pending moves, if any.
+     */
+    public synchronized void flush() {
+        if (pending != null) {
+            E event = pending;
+            pending = null;
+            ++flushGeneration;
+            if (flushFuture != null) {
+                flushFuture.cancel(false);
+                flushFuture = null;
+            }
+            lastMoveWindow = injector.getEventTime(event) / FRAME_PERIOD_MILLIS;
+            if (!injector.inject(event)) {
+                Ln.w("Could not inject coalesced moves");
+            }
+        }
+    }
+
+    private synchronized void flushScheduled(int generation) {
+        // otherwise, the moves this task was scheduled for have already been flushed
+        if (generation == flushGeneration) {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.genymobile.scrcpy;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Registry of the server metrics, rendered in the Prometheus text exposition format.
+ * <p>
+ * Recording a value is lock-free and does not allocate: the metrics are created once and kept by the instrumented code.
+ */
+public final class MetricsRegistry {
+
+    private static final String TYPE_COUNTER = "counter";
+    private static final String TYPE_GAUGE = "gauge";
+    private static final String TYPE_HISTOGRAM = "histogram";
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private interface Metric {
+        void render(StringBuilder builder, String name, String labels);
+    }
+
+    public static final class Counter implements Metric {
+        private final AtomicLong value = new AtomicLong();
+
+        public void inc() {
+            value.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+
+        @Override
+        public void render(StringBuilder builder, String name, String labels) {
+            appendSample(builder, name, labels, null, Long.toString(value.get()));
+        }
+    }
+
+    public static final class Gauge implements Metric {
+        private final AtomicLong value = new AtomicLong();
+
+        public void set(long newValue) {
+            value.set(newValue);
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+
+        @Override
+        public void render(StringBuilder builder, String name, String labels) {
+            appendSample(builder, name, labels, null, Long.toString(value.get()));
+        }
+    }
+
+    /**
+     * Latency histogram with log-linear buckets, in the spirit of HdrHistogram.
+     * <p>
+     * Values are recorded in microseconds. Each power of 2 is split into {@link #SUB_BUCKETS} linear buckets, so that the relative error is
+     * at most 25%, whatever the magnitude.
+     */
+    public static final class Histogram implements Metric {
+        private static final int SUB_BUCKET_BITS = 2;
+        private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+        private static final int MAX_EXPONENT = 40; // about 12 days in microseconds
+        private static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+        private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sum = new AtomicLong();
+
+        /**
+         * Return the bucket of a value, the one with the lowest upper bound greater than or equal to the value (as the {@code le} label of
+         * the rendered buckets means).
+         */
+        @SuppressWarnings("checkstyle:MagicNumber")
+        static int getBucketIndex(long micros) {
+            // the bounds are computed for exclusive upper bounds: (lower, upper] for the value is [lower, upper) for the value - 1
+            long value = Math.max(micros, 0) - 1;
+            if (value < SUB_BUCKETS) {
+                return (int) Math.max(0, value);
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            if (exponent > MAX_EXPONENT) {
+                return BUCKET_COUNT - 1;
+            }
+            int subBucket = (int) (value >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+            return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket;
+        }
+
+        /**
+         * Return the (inclusive) upper bound of the values recorded in a bucket.
+         */
+        static long getBucketUpperBound(int index) {
+            if (index < SUB_BUCKETS) {
+                return index + 1;
+            }
+            int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+            int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+            return (long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+        }
+
+        public void record(long micros) {
+            buckets.incrementAndGet(getBucketIndex(micros));
+            count.incrementAndGet();
+            sum.addAndGet(micros);
+        }
+
+        /**
+         * Record the time elapsed since {@code startNanos}, as returned by {@link System#nanoTime()}.
+         */
+        public void recordSince(long startNanos) {
+            record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        /**
+         * Return an upper bound of the given quantile of the recorded values, in microseconds.
+         *
+         * @param quantile the quantile, between 0 and 1
+         * @return the upper bound, or 0 if nothing has been recorded
+         */
+        public long getQuantileUpperBound(double quantile) {
+            long[] snapshot = snapshotBuckets();
+            long total = 0;
+            for (long bucket : snapshot) {
+                total += bucket;
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * total);
+            long cumulated = 0;
+            for (int i = 0; i < BUCKET_COUNT; ++i) {
+                cumulated += snapshot[i];
+                if (cumulated >= rank) {
+                    return getBucketUpperBound(i);
+                }
+            }
+            return getBucketUpperBound(BUCKET_COUNT - 1);
+        }
+
+        /**
+         * Read the buckets once, so that the counts derived from them are consistent while values are recorded concurrently.
+         */
+        private long[] snapshotBuckets() {
+            long[] snapshot = new long[BUCKET_COUNT];
+            for (int i = 0; i < BUCKET_COUNT; ++i) {
+                snapshot[i] = buckets.get(i);
+            }
+            return snapshot;
+        }
+
+        @Override
+        public void render(StringBuilder builder, String name, String labels) {
+            long[] snapshot = snapshotBuckets();
+            int last = BUCKET_COUNT - 1;
+            while (last > 0 && snapshot[last] == 0) {
+                --last;
+            }
+            long cumulated = 0;
+            for (int i = 0; i <= last; ++i) {
+                cumulated += snapshot[i];
+                String le = "le=\"" + toSeconds(getBucketUpperBound(i)) + "\"";
+                appendSample(builder, name + "_bucket", labels, le, Long.toString(cumulated));
+            }
+            // from the same snapshot as the buckets (not from count, incremented after the bucket), so that the output is monotonic
+            appendSample(builder, name + "_bucket", labels, "le=\"+Inf\"", Long.toString(cumulated));
+            appendSample(builder, name + "_sum", labels, null, toSeconds(sum.get()));
+            appendSample(builder, name + "_count", labels, null, Long.toString(cumulated));
+        }
+
+        @SuppressWarnings("checkstyle:MagicNumber")
+        private static String toSeconds(long micros) {
+            return Double.toString(micros / 1_000_000.0);
+        }
+    }
+
+    private static final class Family {
+        private final String help;
+        private final String type;
+        // by labels, "" for none
+        private final ConcurrentHashMap<String, Metric> series = new ConcurrentHashMap<>();
+
+        Family(String help, String type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private final ConcurrentHashMap<String, Family> families = new ConcurrentHashMap<>();
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public Counter counter(String name, String help) {
+        return counter(name, help, "");
+    }
+
+    /**
+     * Get or create a counter.
+     *
+     * @param name   the metric name
+     * @param help   the description of the metric
+     * @param labels the labels, in the Prometheus format without braces (e.g. {@code client="1"}), or "" for none
+     * @return the counter
+     */
+    public Counter counter(String name, String help, String labels) {
+        return (Counter) getOrCreate(name, help, TYPE_COUNTER, labels);
+    }
+
+    public Gauge gauge(String name, String help) {
+        return gauge(name, help, "");
+    }
+
+    public Gauge gauge(String name, String help, String labels) {
+        return (Gauge) getOrCreate(name, help, TYPE_GAUGE, labels);
+    }
+
+    public Histogram histogram(String name, String help) {
+        return (Histogram) getOrCreate(name, help, TYPE_HISTOGRAM, "");
+    }
+
+    /**
+     * Remove a labeled metric, for example when a client disconnects.
+     */
+    public void remove(String name, String labels) {
+        Family family = families.get(name);
+        if (family != null) {
+            family.series.remove(labels);
+        }
+    }
+
+    private Metric getOrCreate(String name, String help, String type, String labels) {
+        Family family = families.get(name);
+        if (family == null) {
+            Family newFamily = new Family(help, type);
+            family = families.putIfAbsent(name, newFamily);
+            if (family == null) {
+                family = newFamily;
+            }
+        }
+        if (!family.type.equals(type)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as a " + family.type);
+        }
+        Metric metric = family.series.get(labels);
+        if (metric == null) {
+            Metric newMetric = createMetric(type);
+            metric = family.series.putIfAbsent(labels, newMetric);
+            if (metric == null) {
+                metric = newMetric;
+            }
+        }
+        return metric;
+    }
+
+    private static Metric createMetric(String type) {
+        switch (type) {
+            case TYPE_COUNTER:
+                return new Counter();
+            case TYPE_GAUGE:
+                return new Gauge();
+            default:
+                return new Histogram();
+        }
+    }
+
+    /**
+     * Render all the metrics in the Prometheus text exposition format.
+     *
+     * @return the metrics, sorted by name
+     */
+    public String render() {
+        StringBuilder builder = new StringBuilder();
+        for (Map.Entry<String, Family> entry : new TreeMap<>(families).entrySet()) {
+            String name = entry.getKey();
+            Family family = entry.getValue();
+            builder.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+            builder.append("# TYPE ").append(name).append(' ').append(family.type).append('\n');
+            for (Map.Entry<String, Metric> series : new TreeMap<>(family.series).entrySet()) {
+                series.getValue().render(builder, name, series.getKey());
+            }
+        }
+        return builder.toString();
+    }
+
+    private static void appendSample(StringBuilder builder, String name, String labels, String extraLabel, String value) {
+        builder.append(name);
+        boolean hasLabels = !labels.isEmpty();
+        if (hasLabels || extraLabel != null) {
+            builder.append('{').append(labels);
+            if (extraLabel != null) {
+                if (hasLabels) {
+                    builder.append(',');
+                }
+                builder.append(extraLabel);
+            }
+            builder.append('}');
+        }
+        builder.append(' ').append(value).append('\n');
+    }
+}
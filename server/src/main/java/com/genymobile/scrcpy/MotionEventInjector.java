@@ -0,0 +1,71 @@
+package com.genymobile.scrcpy;
+
+import android.view.MotionEvent;
+
+/**
+ * Inject the motion events scheduled by an {@link InputScheduler}, batching the moves via
+ * {@link MotionEvent#addBatch(long, MotionEvent.PointerCoords[], int)}.
+ * <p>
+ * Only called with the lock of the scheduler held.
+ */
+public final class MotionEventInjector implements InputScheduler.Injector<MotionEvent> {
+
+    private final Device device;
+
+    // reused to copy the coordinates of the batched moves
+    private final MotionEvent.PointerCoords[] batchCoords = createPointerCoords();
+
+    public MotionEventInjector(Device device) {
+        this.device = device;
+    }
+
+    @Override
+    public long getEventTime(MotionEvent event) {
+        return event.getEventTime();
+    }
+
+    @Override
+    public boolean canBatch(MotionEvent batch, MotionEvent event) {
+        int pointerCount = event.getPointerCount();
+        if (batch.getPointerCount() != pointerCount || batch.getButtonState() != event.getButtonState() || batch.getSource() != event.getSource()) {
+            return false;
+        }
+        for (int i = 0; i < pointerCount; ++i) {
+            if (batch.getPointerId(i) != event.getPointerId(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void appendBatch(MotionEvent batch, MotionEvent event) {
+        int pointerCount = event.getPointerCount();
+        for (int i = 0; i < pointerCount; ++i) {
+            event.getPointerCoords(i, batchCoords[i]);
+        }
+        // only the first pointerCount items are read
+        batch.addBatch(event.getEventTime(), batchCoords, event.getMetaState());
+    }
+
+    @Override
+    public boolean inject(MotionEvent event) {
+        boolean ok = device.injectEvent(event);
+        // the event is copied by the injection
+        event.recycle();
+        return ok;
+    }
+
+    @Override
+    public void recycle(MotionEvent event) {
+        event.recycle();
+    }
+
+    private static MotionEvent.PointerCoords[] createPointerCoords() {
+        MotionEvent.PointerCoords[] coords = new MotionEvent.PointerCoords[PointersState.MAX_POINTERS];
+        for (int i = 0; i < coords.length; ++i) {
+            coords[i] = new MotionEvent.PointerCoords();
+        }
+        return coords;
+    }
+}
@@ -24,6 +24,8 @@ public class Options {
     private int serverType = TYPE_LOCAL_SOCKET;
     private int portNumber = 8886;
     private boolean listenOnAllInterfaces = true;
+    private boolean simulcast;
+    private int idleTimeout; // in ms, 0 to never stop forwarding the repeated frames
 
     public Ln.Level getLogLevel() {
         return logLevel;
@@ -171,6 +173,22 @@ public class Options {
         this.listenOnAllInterfaces = value;
     }
 
+    public boolean getSimulcast() {
+        return this.simulcast;
+    }
+
+    public void setSimulcast(boolean simulcast) {
+        this.simulcast = simulcast;
+    }
+
+    public int getIdleTimeout() {
+        return this.idleTimeout;
+    }
+
+    public void setIdleTimeout(int idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
     @Override
     public String toString() {
         return "Options{"
@@ -182,6 +200,8 @@ public class Options {
                 + ", sendFrameMeta=" + sendFrameMeta
                 + ", serverType=" + (serverType == TYPE_LOCAL_SOCKET ? "local" : "web")
                 + ", listenOnAllInterfaces=" + (this.listenOnAllInterfaces ? "true" : "false")
+                + ", simulcast=" + simulcast
+                + ", idleTimeout=" + idleTimeout
                 + '}';
     }
 }
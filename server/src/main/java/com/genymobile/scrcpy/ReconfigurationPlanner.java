@@ -0,0 +1,172 @@
+package com.genymobile.scrcpy;
+
+import android.graphics.Rect;
+
+import java.util.Objects;
+
+/**
+ * Classify a change of the stream configuration, to reconfigure the running encoder as little as possible.
+ * <p>
+ * Restarting the encoder (releasing the codec and the virtual display, and creating them again) takes hundreds of milliseconds. It is only
+ * necessary when the resolution or the codec configuration change.
+ * <p>
+ * In particular, moving the crop (the viewport of a region of interest) without changing the resulting video size only changes the
+ * projection of the virtual display.
+ */
+public final class ReconfigurationPlanner {
+
+    /**
+     * The encoder of a stream, as controlled by the planner.
+     */
+    public interface Encoder {
+        /**
+         * Change the bitrate and the max frame rate of the running codec.
+         */
+        void setParameters(int bitRate, int maxFps);
+
+        /**
+         * Request the running codec to produce a sync frame as soon as possible.
+         */
+        void requestSyncFrame();
+
+        /**
+         * Apply the current content rectangle of the device to the running virtual display, the video size being unchanged.
+         */
+        void updateViewport();
+
+        /**
+         * Release the codec and the virtual display, and create them again with the current settings.
+         */
+        void restart();
+    }
+
+    public static final int NONE = 0;
+    public static final int UPDATE_PARAMETERS = 1;
+    public static final int REQUEST_SYNC_FRAME = 1 << 1;
+    public static final int RESTART = 1 << 2;
+    public static final int UPDATE_VIEWPORT = 1 << 3;
+
+    private ReconfigurationPlanner() {
+        // not instantiable
+    }
+
+    /**
+     * Plan the reconfiguration to apply the requested settings.
+     *
+     * @param current   the settings of the running encoder
+     * @param requested the new settings
+     * @return a combination of {@code UPDATE_PARAMETERS}, {@code REQUEST_SYNC_FRAME}, {@code UPDATE_VIEWPORT} and {@code RESTART}, or
+     * {@code NONE}
+     */
+    public static int plan(VideoSettings current, VideoSettings requested) {
+        if (current.equals(requested)) {
+            return NONE;
+        }
+        if (requiresRestart(current, requested)) {
+            return RESTART;
+        }
+        int plan = NONE;
+        if (!Objects.equals(current.getCrop(), requested.getCrop())) {
+            plan |= UPDATE_VIEWPORT;
+        }
+        if (current.getBitRate() != requested.getBitRate() || current.getMaxFps() != requested.getMaxFps()) {
+            plan |= UPDATE_PARAMETERS;
+        }
+        if (current.getSendFrameMeta() != requested.getSendFrameMeta()) {
+            // the packets are framed differently from now on, the client must resynchronize
+            plan |= REQUEST_SYNC_FRAME;
+        }
+        return plan;
+    }
+
+    /**
+     * Plan the reconfiguration when a new client joins the stream.
+     * <p>
+     * The new client needs a sync frame to start decoding, even if the settings do not change.
+     *
+     * @param current   the settings of the running encoder
+     * @param requested the settings requested by the new client
+     * @return the plan
+     */
+    public static int planJoin(VideoSettings current, VideoSettings requested) {
+        int plan = plan(current, requested);
+        if ((plan & RESTART) == 0) {
+            plan |= REQUEST_SYNC_FRAME;
+        }
+        return plan;
+    }
+
+    /**
+     * Plan the reconfiguration on device rotation.
+     *
+     * @return the plan
+     */
+    public static int planRotation() {
+        // the video size changes
+        return RESTART;
+    }
+
+    private static boolean requiresRestart(VideoSettings current, VideoSettings requested) {
+        if (current.getMaxFps() > 0 && requested.getMaxFps() <= 0) {
+            // the max frame rate limit cannot be removed from a running codec
+            return true;
+        }
+        return !Objects.equals(current.getBounds(), requested.getBounds())
+                || !isViewportChangeOnly(current, requested)
+                || current.getLockedVideoOrientation() != requested.getLockedVideoOrientation()
+                || current.getDisplayId() != requested.getDisplayId()
+                || current.getIFrameInterval() != requested.getIFrameInterval()
+                || !Objects.equals(current.getEncoderName(), requested.getEncoderName())
+                || !Objects.equals(current.getMimeTypes(), requested.getMimeTypes())
+                || current.getProfile() != requested.getProfile()
+                || current.getLevel() != requested.getLevel()
+                || current.getTuning() != requested.getTuning()
+                || !Objects.equals(current.getCodecOptionsString(), requested.getCodecOptionsString());
+    }
+
+    /**
+     * Indicate whether the crop may change without changing the video size.
+     * <p>
+     * The video size is computed from the size of the crop (see {@link ScreenInfo#computeVideoSize(int, int, Size)}), not its position. A
+     * crop intersecting the screen edges is reduced, so the encoder must still check the actual video size.
+     */
+    private static boolean isViewportChangeOnly(VideoSettings current, VideoSettings requested) {
+        Rect currentCrop = current.getCrop();
+        Rect requestedCrop = requested.getCrop();
+        if (Objects.equals(currentCrop, requestedCrop)) {
+            return true;
+        }
+        if (currentCrop == null || requestedCrop == null) {
+            // the video size of the whole screen is not known here
+            return false;
+        }
+        Size bounds = requested.getBounds();
+        Size currentSize = ScreenInfo.computeVideoSize(currentCrop.width(), currentCrop.height(), bounds);
+        Size requestedSize = ScreenInfo.computeVideoSize(requestedCrop.width(), requestedCrop.height(), bounds);
+        return currentSize.equals(requestedSize);
+    }
+
+    /**
+     * Execute a plan.
+     *
+     * @param plan     the plan returned by {@link #plan(VideoSettings, VideoSettings)} or {@link #planJoin(VideoSettings, VideoSettings)}
+     * @param encoder  the encoder to reconfigure
+     * @param settings the new settings
+     */
+    public static void apply(int plan, Encoder encoder, VideoSettings settings) {
+        if ((plan & RESTART) != 0) {
+            // a new codec starts with a sync frame and the new parameters
+            encoder.restart();
+            return;
+        }
+        if ((plan & UPDATE_VIEWPORT) != 0) {
+            encoder.updateViewport();
+        }
+        if ((plan & UPDATE_PARAMETERS) != 0) {
+            encoder.setParameters(settings.getBitRate(), settings.getMaxFps());
+        }
+        if ((plan & REQUEST_SYNC_FRAME) != 0) {
+            encoder.requestSyncFrame();
+        }
+    }
+}
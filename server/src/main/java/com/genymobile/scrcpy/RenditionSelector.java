@@ -0,0 +1,63 @@
+package com.genymobile.scrcpy;
+
+import java.util.List;
+
+/**
+ * Select the rendition of a display a client subscribes to, in simulcast mode.
+ * <p>
+ * Each rendition is a separate encoder mirroring the same display, with its own video settings. A client joins the rendition matching its
+ * settings, so that it never changes the resolution, the bitrate or the viewport of the other clients: a client requesting a region of
+ * interest (a crop) gets its own virtual display, and may then move it without restarting the encoder. If none matches, a new rendition
+ * is created, up to a limit; beyond it, the client subscribes to the rendition with the closest resolution, as is.
+ */
+public final class RenditionSelector {
+
+    public static final int NEW_RENDITION = -1;
+
+    // the changes affecting the clients of a rendition
+    private static final int INCOMPATIBLE_CHANGES = ReconfigurationPlanner.RESTART | ReconfigurationPlanner.UPDATE_PARAMETERS
+            | ReconfigurationPlanner.UPDATE_VIEWPORT;
+
+    private RenditionSelector() {
+        // not instantiable
+    }
+
+    /**
+     * Select a rendition.
+     *
+     * @param renditions    the settings of the existing renditions of the display
+     * @param requested     the settings requested by the client
+     * @param maxRenditions the max number of renditions per display
+     * @return the index of the rendition to subscribe to, or {@link #NEW_RENDITION}
+     */
+    public static int select(List<VideoSettings> renditions, VideoSettings requested, int maxRenditions) {
+        for (int i = 0; i < renditions.size(); ++i) {
+            int plan = ReconfigurationPlanner.plan(renditions.get(i), requested);
+            if ((plan & INCOMPATIBLE_CHANGES) == 0) {
+                // at most a sync frame, which does not affect the other clients
+                return i;
+            }
+        }
+        if (renditions.size() < maxRenditions) {
+            return NEW_RENDITION;
+        }
+        int best = NEW_RENDITION;
+        long bestDistance = Long.MAX_VALUE;
+        long requestedArea = getArea(requested.getBounds());
+        for (int i = 0; i < renditions.size(); ++i) {
+            long distance = Math.abs(getArea(renditions.get(i).getBounds()) - requestedArea);
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    private static long getArea(Size size) {
+        if (size == null) {
+            return 0;
+        }
+        return (long) size.getWidth() * size.getHeight();
+    }
+}
@@ -0,0 +1,430 @@
+package com.genymobile.scrcpy;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Storage of the file pushes identified by the SHA-256 of their content.
+ * <p>
+ * The content is written to a partial file named after the hash, so that a push interrupted (for example by a connection loss) can be
+ * resumed from the bytes already written, possibly by another connection. The hash is computed while writing, and verified before the
+ * partial file is moved to its destination. The completed pushes are remembered, so that pushing the same content again succeeds without
+ * any transfer.
+ * <p>
+ * The partial files of the pushes never resumed would accumulate: the ones not modified for {@code maxPartialAgeMs} are deleted, then
+ * the oldest ones until they take less than {@code maxPartialBytes} (see {@link #cleanUp(long)}).
+ */
+public final class ResumablePushStore {
+
+    public static final int HASH_LENGTH = 32;
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final String PARTIAL_SUFFIX = ".part";
+    private static final int MAX_SUSPENDED = 64;
+    private static final int MAX_COMPLETED = 1024;
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+    public static final long DEFAULT_MAX_PARTIAL_AGE_MS = 24 * 60 * 60 * 1000L;
+    public static final long DEFAULT_MAX_PARTIAL_BYTES = 1024 * 1024 * 1024L;
+    // the partial files are listed at most once per interval
+    private static final long CLEAN_UP_INTERVAL_MS = 10 * 60 * 1000L;
+
+    /**
+     * A push being written.
+     */
+    public static final class Upload {
+        private final String key;
+        private final byte[] hash;
+        private final long size;
+        private final File partialFile;
+        private final FileChannel channel;
+        private final MessageDigest digest;
+        private long offset;
+
+        private Upload(String key, byte[] hash, long size, File partialFile, FileChannel channel, MessageDigest digest, long offset) {
+            this.key = key;
+            this.hash = hash;
+            this.size = size;
+            this.partialFile = partialFile;
+            this.channel = channel;
+            this.digest = digest;
+            this.offset = offset;
+        }
+
+        /**
+         * Return the number of bytes written so far, including the ones written before a resume.
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public void write(ByteBuffer buffer) throws IOException {
+            int len = buffer.remaining();
+            if (offset + len > size) {
+                throw new IOException("Push exceeds its declared size: " + (offset + len) + " > " + size);
+            }
+            ByteBuffer hashed = buffer.duplicate();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            digest.update(hashed);
+            offset += len;
+        }
+    }
+
+    private static final class Suspended {
+        private final long offset;
+        private final MessageDigest digest;
+
+        private Suspended(long offset, MessageDigest digest) {
+            this.offset = offset;
+            this.digest = digest;
+        }
+    }
+
+    private static final class Completed {
+        private final File file;
+        private final long length;
+        private final long lastModified;
+
+        private Completed(File file) {
+            this.file = file;
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+        }
+
+        boolean isUnchanged() {
+            return file.isFile() && file.length() == length && file.lastModified() == lastModified;
+        }
+    }
+
+    private final File directory;
+    private final long maxPartialAgeMs;
+    private final long maxPartialBytes;
+    private long lastCleanUpMs = Long.MIN_VALUE; // protected by this
+    private final Set<String> active = new HashSet<>();
+    // the hash state of the suspended uploads, to resume without reading the partial file again
+    private final Map<String, Suspended> suspended = new LinkedHashMap<String, Suspended>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Suspended> eldest) {
+            return size() > MAX_SUSPENDED;
+        }
+    };
+    private final Map<String, Completed> completed = new LinkedHashMap<String, Completed>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Completed> eldest) {
+            return size() > MAX_COMPLETED;
+        }
+    };
+
+    /**
+     * @param directory the directory of the partial files
+     */
+    public ResumablePushStore(File directory) {
+        this(directory, DEFAULT_MAX_PARTIAL_AGE_MS, DEFAULT_MAX_PARTIAL_BYTES);
+    }
+
+    /**
+     * @param directory       the directory of the partial files
+     * @param maxPartialAgeMs the time after which a partial file not modified is deleted
+     * @param maxPartialBytes the total size of the partial files beyond which the oldest ones are deleted
+     */
+    public ResumablePushStore(File directory, long maxPartialAgeMs, long maxPartialBytes) {
+        this.directory = directory;
+        this.maxPartialAgeMs = maxPartialAgeMs;
+        this.maxPartialBytes = maxPartialBytes;
+    }
+
+    /**
+     * Return a file already pushed with the same content, if it has not changed since.
+     *
+     * @return the file, or {@code null} if none
+     */
+    public synchronized File findCompleted(byte[] hash, long size) {
+        String key = toHex(hash);
+        Completed entry = completed.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!entry.isUnchanged() || entry.length != size) {
+            completed.remove(key);
+            return null;
+        }
+        return entry.file;
+    }
+
+    /**
+     * Start or resume an upload.
+     *
+     * @return the upload, or {@code null} if the same content is already being uploaded
+     */
+    public Upload open(byte[] hash, long size) throws IOException {
+        if (hash.length != HASH_LENGTH) {
+            throw new IllegalArgumentException("Invalid " + HASH_ALGORITHM + " length: " + hash.length);
+        }
+        String key = toHex(hash);
+        Suspended state;
+        synchronized (this) {
+            if (!active.add(key)) {
+                return null;
+            }
+            state = suspended.remove(key);
+        }
+        try {
+            return openPartial(key, hash, size, state);
+        } catch (IOException | RuntimeException e) {
+            release(key);
+            throw e;
+        }
+    }
+
+    private Upload openPartial(String key, byte[] hash, long size, Suspended state) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        File partialFile = new File(directory, key + PARTIAL_SUFFIX);
+        long length = partialFile.length();
+        if (length > size) {
+            // not the expected content, start again
+            if (!partialFile.delete()) {
+                throw new IOException("Could not delete " + partialFile);
+            }
+            length = 0;
+        }
+        MessageDigest digest;
+        if (state != null && state.offset == length) {
+            digest = state.digest;
+        } else {
+            // the server has been restarted, or the partial file has changed
+            digest = hashPrefix(partialFile, length);
+        }
+        FileChannel channel = new RandomAccessFile(partialFile, "rw").getChannel();
+        try {
+            channel.truncate(length);
+            channel.position(length);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new Upload(key, hash, size, partialFile, channel, digest, length);
+    }
+
+    /**
+     * Stop writing an upload, keeping the partial file to resume it later.
+     */
+    public void suspend(Upload upload) throws IOException {
+        try {
+            upload.channel.close();
+        } finally {
+            synchronized (this) {
+                active.remove(upload.key);
+                suspended.put(upload.key, new Suspended(upload.offset, upload.digest));
+            }
+        }
+    }
+
+    /**
+     * Abort an upload, deleting its partial file.
+     */
+    public void discard(Upload upload) throws IOException {
+        try {
+            upload.channel.close();
+        } finally {
+            if (upload.partialFile.exists() && !upload.partialFile.delete()) {
+                Ln.w("Could not delete " + upload.partialFile);
+            }
+            release(upload.key);
+        }
+    }
+
+    /**
+     * Verify an upload, and move it to its destination.
+     * <p>
+     * On a size or a hash mismatch, the upload is discarded.
+     *
+     * @return {@code false} if the content does not match the declared size and hash
+     */
+    public boolean complete(Upload upload, File target) throws IOException {
+        if (upload.offset != upload.size || !Arrays.equals(upload.digest.digest(), upload.hash)) {
+            discard(upload);
+            return false;
+        }
+        try {
+            upload.channel.close();
+            if (target.exists() && !target.delete()) {
+                throw new IOException("Could not delete " + target);
+            }
+            if (!upload.partialFile.renameTo(target)) {
+                throw new IOException("Could not move " + upload.partialFile + " to " + target);
+            }
+        } catch (IOException e) {
+            discard(upload);
+            throw e;
+        }
+        synchronized (this) {
+            active.remove(upload.key);
+            completed.put(upload.key, new Completed(target));
+        }
+        return true;
+    }
+
+    /**
+     * Delete the stale partial files, unless done recently.
+     *
+     * @param nowMs the current time, in the time base of {@link File#lastModified()}
+     */
+    public void cleanUpIfDue(long nowMs) {
+        synchronized (this) {
+            if (lastCleanUpMs != Long.MIN_VALUE && nowMs - lastCleanUpMs < CLEAN_UP_INTERVAL_MS) {
+                return;
+            }
+            lastCleanUpMs = nowMs;
+        }
+        cleanUp(nowMs);
+    }
+
+    /**
+     * Delete the partial files of the uploads not resumed for too long, then the oldest ones while they take too much space.
+     * <p>
+     * The partial files of the uploads being written are kept.
+     *
+     * @param nowMs the current time, in the time base of {@link File#lastModified()}
+     * @return the number of files deleted
+     */
+    public int cleanUp(long nowMs) {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        final long[] lastModified = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; ++i) {
+            lastModified[i] = files[i].lastModified();
+            order[i] = i;
+        }
+        // oldest first
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(lastModified[a], lastModified[b]);
+            }
+        });
+
+        long totalBytes = 0;
+        for (File file : files) {
+            if (file.getName().endsWith(PARTIAL_SUFFIX)) {
+                totalBytes += file.length();
+            }
+        }
+
+        int deleted = 0;
+        for (int i : order) {
+            File file = files[i];
+            String name = file.getName();
+            if (!name.endsWith(PARTIAL_SUFFIX)) {
+                continue;
+            }
+            if (nowMs - lastModified[i] < maxPartialAgeMs && totalBytes <= maxPartialBytes) {
+                // the next ones are more recent
+                break;
+            }
+            String key = name.substring(0, name.length() - PARTIAL_SUFFIX.length());
+            long length = file.length();
+            // under the lock, so that the upload cannot be opened concurrently
+            synchronized (this) {
+                if (active.contains(key)) {
+                    continue;
+                }
+                suspended.remove(key);
+                if (!file.delete()) {
+                    Ln.w("Could not delete " + file);
+                    continue;
+                }
+            }
+            totalBytes -= length;
+            ++deleted;
+        }
+        return deleted;
+    }
+
+    /**
+     * Copy a completed file to another destination.
+     */
+    public static void copy(File source, File target) throws IOException {
+        try (FileChannel in = new FileInputStream(source).getChannel(); FileChannel out = new RandomAccessFile(target, "rw").getChannel()) {
+            out.truncate(0);
+            long size = in.size();
+            long position = 0;
+            while (position < size) {
+                position += in.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    /**
+     * Record a file as completed (for example a copy of a completed file).
+     */
+    public synchronized void addCompleted(byte[] hash, File file) {
+        completed.put(toHex(hash), new Completed(file));
+    }
+
+    private synchronized void release(String key) {
+        active.remove(key);
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            // mandatory on every platform
+            throw new AssertionError(e);
+        }
+    }
+
+    private static MessageDigest hashPrefix(File file, long length) throws IOException {
+        MessageDigest digest = newDigest();
+        if (length == 0) {
+            return digest;
+        }
+        try (FileInputStream in = new FileInputStream(file)) {
+            byte[] buffer = new byte[READ_BUFFER_SIZE];
+            long remaining = length;
+            while (remaining > 0) {
+                int r = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (r == -1) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+                digest.update(buffer, 0, r);
+                remaining -= r;
+            }
+        }
+        return digest;
+    }
+
+    @SuppressWarnings("checkstyle:MagicNumber")
+    static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; ++i) {
+            chars[2 * i] = digits[(bytes[i] >> 4) & 0xf];
+            chars[2 * i + 1] = digits[bytes[i] & 0xf];
+        }
+        return new String(chars);
+    }
+}
@@ -8,6 +8,7 @@ import android.media.MediaCodecInfo;
 import android.media.MediaCodecList;
 import android.media.MediaFormat;
 import android.os.Build;
+import android.os.Bundle;
 import android.os.IBinder;
 import android.view.Surface;
 
@@ -15,41 +16,98 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 
-public class ScreenEncoder implements Connection.StreamInvalidateListener, Runnable {
+public class ScreenEncoder implements ReconfigurationPlanner.Encoder, Runnable {
 
     private static final int DEFAULT_I_FRAME_INTERVAL = 10; // seconds
     private static final int REPEAT_FRAME_DELAY_US = 100_000; // repeat after 100ms
+    private static final int IDLE_HEARTBEAT_INTERVAL_US = 1_000_000;
     private static final String KEY_MAX_FPS_TO_ENCODER = "max-fps-to-encoder";
+    // must be present to configure the encoder, but does not impact the actual frame rate, which is variable
+    private static final int DEFAULT_FRAME_RATE = 60;
 
     private static final int NO_PTS = -1;
 
+    private static final MetricsRegistry.Counter ENCODED_PACKETS = MetricsRegistry.getInstance()
+            .counter("scrcpy_encoder_packets_total", "Packets produced by the encoders");
+    private static final MetricsRegistry.Counter ENCODED_BYTES = MetricsRegistry.getInstance()
+            .counter("scrcpy_encoder_bytes_total", "Bytes produced by the encoders");
+    private static final MetricsRegistry.Histogram DEQUEUE_LATENCY = MetricsRegistry.getInstance()
+            .histogram("scrcpy_encoder_dequeue_latency_seconds", "Time waiting for an encoded packet from the codec");
+    private static final MetricsRegistry.Counter IDLE_DROPPED_PACKETS = MetricsRegistry.getInstance()
+            .counter("scrcpy_encoder_idle_dropped_packets_total", "Repeated packets not forwarded while the screen is static");
+    private static final MetricsRegistry.Histogram CAPTURE_TO_OUTPUT_LATENCY = MetricsRegistry.getInstance()
+            .histogram("scrcpy_encoder_capture_to_output_latency_seconds", "Time between the capture of a frame and the output of its packet");
+
     private final AtomicBoolean streamIsInvalide = new AtomicBoolean();
+    // pts and packet size
     private final ByteBuffer headerBuffer = ByteBuffer.allocate(12);
+    // output timestamp, only sent to the clients which requested it
+    private final ByteBuffer timestampBuffer = ByteBuffer.allocate(8);
     private Thread selectorThread;
 
     private long ptsOrigin;
     private Device device;
     private Connection connection;
-    private VideoSettings videoSettings;
-    private MediaFormat format;
-    private int timeout = -1;
+    // shared with the connection, which changes it under its own lock: only read via snapshotSettings()
+    private final VideoSettings videoSettings;
+    private volatile String mimeType; // read by the connection to announce the codec
+    private volatile long dequeueTimeoutUs; // follows the max fps of the running codec
+    private IdleDetector idleDetector; // null if idle detection is disabled
+
+    private final Object codecLock = new Object();
+    private MediaCodec activeCodec; // the codec currently encoding, protected by codecLock
+    private IBinder activeDisplay; // the virtual display of the active codec, protected by codecLock
+    private Size activeVideoSize; // the video size of the active codec, protected by codecLock
+    private int adaptiveBitRate; // 0 if not adapted, protected by codecLock
+    private EncoderCapabilities capabilities; // of the active codec, protected by codecLock
+
+    // the encoders do not change while the server is running
+    private static MediaCodecInfo[] videoEncoders;
 
     public ScreenEncoder(VideoSettings videoSettings) {
         this.videoSettings = videoSettings;
-        updateFormat();
+        mimeType = selectMimeType(snapshotSettings());
     }
 
-    private void updateFormat() {
-        format = createFormat(videoSettings);
-        int maxFps = videoSettings.getMaxFps();
-        if (maxFps > 0) {
-            timeout = 1_000_000 / maxFps;
-        } else {
-            timeout = -1;
+    /**
+     * Return a copy of the current settings, consistent even if the connection changes them concurrently.
+     */
+    private VideoSettings snapshotSettings() {
+        VideoSettings snapshot = new VideoSettings();
+        synchronized (videoSettings) {
+            snapshot.merge(videoSettings);
         }
+        return snapshot;
+    }
+
+    private static long getDequeueTimeoutUs(int maxFps) {
+        return maxFps > 0 ? 1_000_000 / maxFps : -1;
+    }
+
+    /**
+     * Return the mime type negotiated for the current settings.
+     */
+    public String getMimeType() {
+        return mimeType;
+    }
+
+    /**
+     * Return the name of the encoder used for the current settings: the requested one, or else the default one for the mime type (null if
+     * there is none).
+     */
+    public String getEncoderName() {
+        String encoderName = snapshotSettings().getEncoderName();
+        if (encoderName != null) {
+            return encoderName;
+        }
+        // the first encoder of the type is the one created by default
+        MediaCodecInfo[] encoders = listEncoders(mimeType);
+        return encoders.length > 0 ? encoders[0].getName() : null;
     }
 
     public void setConnection(Connection connection) {
@@ -60,11 +118,131 @@ public class ScreenEncoder implements Connection.StreamInvalidateListener, Runna
         this.device = device;
     }
 
+    /**
+     * Stop forwarding the repeated frames once the screen has not changed for a while, and send heartbeats instead.
+     * <p>
+     * Must be called before the encoder is started.
+     *
+     * @param idleTimeoutMs the duration without change, 0 to disable
+     */
+    public void setIdleTimeout(int idleTimeoutMs) {
+        if (idleTimeoutMs > 0) {
+            idleDetector = new IdleDetector(REPEAT_FRAME_DELAY_US, idleTimeoutMs * 1000L, IDLE_HEARTBEAT_INTERVAL_US);
+        } else {
+            idleDetector = null;
+        }
+    }
+
     @Override
-    public void onStreamInvalidate() {
+    public void restart() {
         Ln.d("invalidate stream");
+        // the encoder thread creates the next codec from the current settings
         streamIsInvalide.set(true);
-        updateFormat();
+    }
+
+    /**
+     * Change the bitrate of the running encoder, without restarting it.
+     * <p>
+     * The bitrate also applies to the next codec instances, bounded by the bitrate of the video settings.
+     *
+     * @param bitRate the new bitrate
+     */
+    public void setBitRate(int bitRate) {
+        synchronized (codecLock) {
+            adaptiveBitRate = bitRate;
+            if (activeCodec != null) {
+                Bundle params = new Bundle();
+                params.putInt(MediaCodec.PARAMETER_KEY_VIDEO_BITRATE, clampBitRate(bitRate));
+                try {
+                    activeCodec.setParameters(params);
+                } catch (IllegalStateException e) {
+                    Ln.w("Could not change the encoder bitrate: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void setParameters(int bitRate, int maxFps) {
+        Ln.d("update encoder parameters: bitRate=" + bitRate + ", maxFps=" + maxFps);
+        // the next codec instances read the new values from the settings, only the running codec is changed here
+        dequeueTimeoutUs = getDequeueTimeoutUs(maxFps);
+        synchronized (codecLock) {
+            if (activeCodec != null) {
+                Bundle params = new Bundle();
+                int appliedBitRate = adaptiveBitRate > 0 ? Math.min(adaptiveBitRate, bitRate) : bitRate;
+                params.putInt(MediaCodec.PARAMETER_KEY_VIDEO_BITRATE, clampBitRate(appliedBitRate));
+                if (maxFps > 0) {
+                    params.putFloat(KEY_MAX_FPS_TO_ENCODER, maxFps);
+                }
+                try {
+                    activeCodec.setParameters(params);
+                } catch (IllegalStateException e) {
+                    Ln.w("Could not change the encoder parameters: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void requestSyncFrame() {
+        if (idleDetector != null) {
+            // even while idle, the client requesting a sync frame must receive it
+            idleDetector.requestKeyFrame();
+        }
+        synchronized (codecLock) {
+            // if no codec is running, the next one will start with a sync frame anyway
+            if (activeCodec != null) {
+                Bundle params = new Bundle();
+                params.putInt(MediaCodec.PARAMETER_KEY_REQUEST_SYNC_FRAME, 0);
+                try {
+                    activeCodec.setParameters(params);
+                } catch (IllegalStateException e) {
+                    Ln.w("Could not request a sync frame: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void updateViewport() {
+        ScreenInfo screenInfo = device.getScreenInfo();
+        synchronized (codecLock) {
+            if (activeDisplay == null) {
+                // the next codec will use the new screen info anyway
+                return;
+            }
+            if (!screenInfo.getVideoSize().equals(activeVideoSize)) {
+                // for example, the crop has been reduced to fit the screen
+                Ln.d("Video size changed from " + activeVideoSize + " to " + screenInfo.getVideoSize() + ", restart the encoder");
+                restart();
+                return;
+            }
+            Ln.d("update viewport: " + screenInfo.getContentRect());
+            // the projection of the running virtual display, atomically, without touching the codec
+            SurfaceControl.openTransaction();
+            try {
+                SurfaceControl.setDisplayProjection(activeDisplay, screenInfo.getVideoRotation(), screenInfo.getContentRect(),
+                        screenInfo.getUnlockedVideoSize().toRect());
+            } finally {
+                SurfaceControl.closeTransaction();
+            }
+        }
+    }
+
+    // must be called with codecLock held
+    private int clampBitRate(int bitRate) {
+        return capabilities == null ? bitRate : capabilities.clampBitRate(bitRate);
+    }
+
+    /**
+     * Do not request a frame rate the encoder cannot achieve at the video size: some encoders fail to configure.
+     */
+    private static void applyFrameRateLimits(MediaFormat format, EncoderCapabilities capabilities, int maxFps, int width, int height) {
+        format.setInteger(MediaFormat.KEY_FRAME_RATE, capabilities.clampFrameRate(DEFAULT_FRAME_RATE, width, height));
+        if (maxFps > 0) {
+            format.setFloat(KEY_MAX_FPS_TO_ENCODER, capabilities.clampFrameRate(maxFps, width, height));
+        }
     }
 
     public boolean consumeStreamInvalidation() {
@@ -91,12 +269,20 @@ public class ScreenEncoder implements Connection.StreamInvalidateListener, Runna
     }
 
     private void internalStreamScreen() throws IOException {
-        updateFormat();
-        connection.setStreamInvalidateListener(this);
+        connection.setEncoder(this);
         boolean alive;
         try {
             do {
-                MediaCodec codec = createCodec(videoSettings.getEncoderName());
+                // the format of each codec instance is built on this thread, from settings which do not change while it is configured
+                VideoSettings settings = snapshotSettings();
+                String codecMimeType = selectMimeType(settings);
+                Ln.d("Selected codec: " + codecMimeType);
+                mimeType = codecMimeType;
+                dequeueTimeoutUs = getDequeueTimeoutUs(settings.getMaxFps());
+                MediaFormat format = createFormat(settings, codecMimeType);
+                MediaCodec codec = createCodec(settings.getEncoderName(), codecMimeType);
+                setProfileLevel(codec, format, settings, codecMimeType);
+                applyTuning(codec, format, settings.getTuning(), codecMimeType);
                 IBinder display = createDisplay();
                 ScreenInfo screenInfo = device.getScreenInfo();
                 Rect contentRect = screenInfo.getContentRect();
@@ -108,31 +294,61 @@ public class ScreenEncoder implements Connection.StreamInvalidateListener, Runna
                 int layerStack = device.getLayerStack();
 
                 setSize(format, videoRect.width(), videoRect.height());
+                EncoderCapabilities codecCapabilities = EncoderProber.probe(settings.getEncoderName(), codecMimeType);
+                synchronized (codecLock) {
+                    capabilities = codecCapabilities;
+                    int bitRate = settings.getBitRate();
+                    if (adaptiveBitRate > 0) {
+                        bitRate = Math.min(adaptiveBitRate, bitRate);
+                    }
+                    format.setInteger(MediaFormat.KEY_BIT_RATE, clampBitRate(bitRate));
+                }
+                if (codecCapabilities != null) {
+                    applyFrameRateLimits(format, codecCapabilities, settings.getMaxFps(), videoRect.width(), videoRect.height());
+                }
                 configure(codec, format);
                 Surface surface = codec.createInputSurface();
                 setDisplaySurface(display, surface, videoRotation, contentRect, unlockedVideoRect, layerStack);
                 codec.start();
+                synchronized (codecLock) {
+                    activeCodec = codec;
+                    activeDisplay = display;
+                    activeVideoSize = screenInfo.getVideoSize();
+                }
+                if (device.getScreenInfo() != screenInfo) {
+                    // changed while the codec was starting
+                    updateViewport();
+                }
+                if (idleDetector != null) {
+                    idleDetector.reset();
+                }
                 try {
-                    alive = encode(codec);
+                    alive = encode(codec, settings.getSendFrameMeta());
                     // do not call stop() on exception, it would trigger an IllegalStateException
                     codec.stop();
                 } finally {
+                    synchronized (codecLock) {
+                        activeCodec = null;
+                        activeDisplay = null;
+                        activeVideoSize = null;
+                    }
                     destroyDisplay(display);
                     codec.release();
                     surface.release();
                 }
             } while (alive);
         } finally {
-            connection.setStreamInvalidateListener(null);
+            connection.setEncoder(null);
         }
     }
 
-    private boolean encode(MediaCodec codec) throws IOException {
+    private boolean encode(MediaCodec codec, boolean sendFrameMeta) throws IOException {
         boolean eof = false;
         MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
 
         while (!consumeStreamInvalidation() && !eof && connection.hasConnections()) {
-            int outputBufferId = codec.dequeueOutputBuffer(bufferInfo, timeout);
+            long dequeueStart = System.nanoTime();
+            int outputBufferId = codec.dequeueOutputBuffer(bufferInfo, dequeueTimeoutUs);
             eof = (bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
             try {
                 if (consumeStreamInvalidation()) {
@@ -140,13 +356,29 @@ public class ScreenEncoder implements Connection.StreamInvalidateListener, Runna
                     break;
                 }
                 if (outputBufferId >= 0) {
+                    DEQUEUE_LATENCY.recordSince(dequeueStart);
                     ByteBuffer codecBuffer = codec.getOutputBuffer(outputBufferId);
+                    ENCODED_PACKETS.inc();
+                    ENCODED_BYTES.add(codecBuffer.remaining());
+
+                    if (!filterIdle(bufferInfo, codecBuffer.remaining())) {
+                        continue;
+                    }
 
-                    if (videoSettings.getSendFrameMeta()) {
-                        writeFrameMeta(bufferInfo, codecBuffer.remaining());
+                    // the pts of the surface frames is the capture time, in the time base of System.nanoTime()
+                    long outputTimeUs = System.nanoTime() / 1000;
+                    if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0 && outputTimeUs >= bufferInfo.presentationTimeUs) {
+                        CAPTURE_TO_OUTPUT_LATENCY.record(outputTimeUs - bufferInfo.presentationTimeUs);
                     }
 
-                    connection.send(codecBuffer);
+                    ByteBuffer frameMeta = null;
+                    ByteBuffer frameTimestamp = null;
+                    if (sendFrameMeta) {
+                        frameMeta = writeFrameMeta(bufferInfo, codecBuffer.remaining());
+                        frameTimestamp = writeFrameTimestamp(outputTimeUs);
+                    }
+
+                    connection.sendVideoPacket(frameMeta, codecBuffer, frameTimestamp, bufferInfo.flags);
                 }
             } finally {
                 if (outputBufferId >= 0) {
@@ -158,7 +390,32 @@ public class ScreenEncoder implements Connection.StreamInvalidateListener, Runna
         return !eof && connection.hasConnections();
     }
 
-    private void writeFrameMeta(MediaCodec.BufferInfo bufferInfo, int packetSize) throws IOException {
+    /**
+     * Apply the idle detection to an encoded packet.
+     *
+     * @return {@code true} if the packet must be forwarded
+     */
+    private boolean filterIdle(MediaCodec.BufferInfo bufferInfo, int packetSize) throws IOException {
+        if (idleDetector == null || (bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+            return true;
+        }
+        boolean keyFrame = (bufferInfo.flags & MediaCodec.BUFFER_FLAG_KEY_FRAME) != 0;
+        int action = idleDetector.onFrame(bufferInfo.presentationTimeUs, packetSize, keyFrame);
+        if (action == IdleDetector.FORWARD) {
+            return true;
+        }
+        IDLE_DROPPED_PACKETS.inc();
+        if (action == IdleDetector.HEARTBEAT) {
+            long pts = ptsOrigin == 0 ? 0 : bufferInfo.presentationTimeUs - ptsOrigin;
+            connection.sendDeviceMessage(DeviceMessage.createHeartbeat(pts));
+        } else if (action == IdleDetector.REQUEST_KEY_FRAME) {
+            Ln.d("Screen changed, resume the stream with a key frame");
+            requestSyncFrame();
+        }
+        return false;
+    }
+
+    private ByteBuffer writeFrameMeta(MediaCodec.BufferInfo bufferInfo, int packetSize) {
         headerBuffer.clear();
 
         long pts;
@@ -174,35 +431,134 @@ public class ScreenEncoder implements Connection.StreamInvalidateListener, Runna
         headerBuffer.putLong(pts);
         headerBuffer.putInt(packetSize);
         headerBuffer.flip();
-        connection.send(headerBuffer);
+        return headerBuffer;
+    }
+
+    private ByteBuffer writeFrameTimestamp(long outputTimeUs) {
+        timestampBuffer.clear();
+        // in the time base of the pts, so that the client computes the capture-to-output latency of the frame
+        timestampBuffer.putLong(ptsOrigin == 0 ? 0 : outputTimeUs - ptsOrigin);
+        timestampBuffer.flip();
+        return timestampBuffer;
     }
 
     public static MediaCodecInfo[] listEncoders() {
+        return listEncoders(CodecNegotiator.DEFAULT_MIME_TYPE);
+    }
+
+    public static MediaCodecInfo[] listEncoders(String mimeType) {
         List<MediaCodecInfo> result = new ArrayList<>();
-        MediaCodecList list = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
-        for (MediaCodecInfo codecInfo : list.getCodecInfos()) {
-            if (codecInfo.isEncoder() && Arrays.asList(codecInfo.getSupportedTypes()).contains(MediaFormat.MIMETYPE_VIDEO_AVC)) {
+        for (MediaCodecInfo codecInfo : listVideoEncoders()) {
+            if (Arrays.asList(codecInfo.getSupportedTypes()).contains(mimeType)) {
                 result.add(codecInfo);
             }
         }
         return result.toArray(new MediaCodecInfo[result.size()]);
     }
 
-    private static MediaCodec createCodec(String encoderName) throws IOException {
+    /**
+     * Return the encoders supporting at least one video mime type, whatever the codec.
+     */
+    public static synchronized MediaCodecInfo[] listVideoEncoders() {
+        if (videoEncoders == null) {
+            List<MediaCodecInfo> result = new ArrayList<>();
+            MediaCodecList list = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+            for (MediaCodecInfo codecInfo : list.getCodecInfos()) {
+                if (codecInfo.isEncoder() && !getVideoTypes(codecInfo).isEmpty()) {
+                    result.add(codecInfo);
+                }
+            }
+            videoEncoders = result.toArray(new MediaCodecInfo[result.size()]);
+        }
+        return videoEncoders.clone();
+    }
+
+    public static List<String> getVideoTypes(MediaCodecInfo codecInfo) {
+        List<String> result = new ArrayList<>();
+        for (String type : codecInfo.getSupportedTypes()) {
+            if (type.startsWith("video/")) {
+                result.add(type);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Negotiate the mime type of the stream, among the ones supported by the requested encoder (or by any encoder if none is requested).
+     */
+    static String selectMimeType(VideoSettings videoSettings) {
+        String encoderName = videoSettings.getEncoderName();
+        Set<String> supported = new HashSet<>();
+        for (MediaCodecInfo codecInfo : listVideoEncoders()) {
+            if (encoderName == null || encoderName.equals(codecInfo.getName())) {
+                supported.addAll(getVideoTypes(codecInfo));
+            }
+        }
+        return CodecNegotiator.negotiate(videoSettings.getMimeTypes(), supported);
+    }
+
+    private static MediaCodec createCodec(String encoderName, String mimeType) throws IOException {
         if (encoderName != null) {
             Ln.d("Creating encoder by name: '" + encoderName + "'");
             try {
                 return MediaCodec.createByCodecName(encoderName);
             } catch (IllegalArgumentException e) {
-                MediaCodecInfo[] encoders = listEncoders();
+                MediaCodecInfo[] encoders = listEncoders(mimeType);
                 throw new InvalidEncoderException(encoderName, encoders);
             }
         }
-        MediaCodec codec = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_VIDEO_AVC);
+        MediaCodec codec = MediaCodec.createEncoderByType(mimeType);
         Ln.d("Using encoder: '" + codec.getName() + "'");
         return codec;
     }
 
+    /**
+     * Request the profile and level of the video settings, if they apply to the negotiated codec and the encoder supports them.
+     * <p>
+     * The profile and level constants are specific to a codec: they are ignored if the stream falls back to another codec than the
+     * preferred one.
+     */
+    private static void setProfileLevel(MediaCodec codec, MediaFormat format, VideoSettings videoSettings, String mimeType) {
+        int profile = videoSettings.getProfile();
+        if (profile <= 0 || !mimeType.equals(CodecNegotiator.getPreferred(videoSettings.getMimeTypes()))) {
+            return;
+        }
+        int level = videoSettings.getLevel();
+        MediaCodecInfo.CodecCapabilities capabilities = codec.getCodecInfo().getCapabilitiesForType(mimeType);
+        for (MediaCodecInfo.CodecProfileLevel profileLevel : capabilities.profileLevels) {
+            if (profileLevel.profile == profile && profileLevel.level >= level) {
+                format.setInteger(MediaFormat.KEY_PROFILE, profile);
+                if (level > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                    format.setInteger(MediaFormat.KEY_LEVEL, level);
+                }
+                return;
+            }
+        }
+        Ln.w("Profile " + profile + " (level " + level + ") not supported by the encoder '" + codec.getName() + "', ignored");
+    }
+
+    /**
+     * Request the encoder parameters of a tuning, among the ones supported by the encoder.
+     * <p>
+     * The parameters set explicitly by the codec options take precedence.
+     */
+    private static void applyTuning(MediaCodec codec, MediaFormat format, int tuning, String mimeType) {
+        if (tuning == EncoderTuning.DEFAULT) {
+            return;
+        }
+        MediaCodecInfo.CodecCapabilities capabilities = codec.getCodecInfo().getCapabilitiesForType(mimeType);
+        boolean cbrSupported = capabilities.getEncoderCapabilities()
+                .isBitrateModeSupported(MediaCodecInfo.EncoderCapabilities.BITRATE_MODE_CBR);
+        boolean lowLatencySupported = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                && capabilities.isFeatureSupported(EncoderTuning.FEATURE_LOW_LATENCY);
+        Ln.d("Applying the " + EncoderTuning.getName(tuning) + " tuning");
+        for (CodecOption option : EncoderTuning.getOptions(tuning, Build.VERSION.SDK_INT, cbrSupported, lowLatencySupported)) {
+            if (!format.containsKey(option.getKey())) {
+                setCodecOption(format, option);
+            }
+        }
+    }
+
     private static void setCodecOption(MediaFormat format, CodecOption codecOption) {
         String key = codecOption.getKey();
         Object value = codecOption.getValue();
@@ -220,16 +576,15 @@ public class ScreenEncoder implements Connection.StreamInvalidateListener, Runna
         Ln.d("Codec option set: " + key + " (" + value.getClass().getSimpleName() + ") = " + value);
     }
 
-    private static MediaFormat createFormat(VideoSettings videoSettings) {
+    private static MediaFormat createFormat(VideoSettings videoSettings, String mimeType) {
         int bitRate =  videoSettings.getBitRate();
         int maxFps = videoSettings.getMaxFps();
         int iFrameInterval = videoSettings.getIFrameInterval();
         List<CodecOption> codecOptions = videoSettings.getCodecOptions();
         MediaFormat format = new MediaFormat();
-        format.setString(MediaFormat.KEY_MIME, MediaFormat.MIMETYPE_VIDEO_AVC);
+        format.setString(MediaFormat.KEY_MIME, mimeType);
         format.setInteger(MediaFormat.KEY_BIT_RATE, bitRate);
-        // must be present to configure the encoder, but does not impact the actual frame rate, which is variable
-        format.setInteger(MediaFormat.KEY_FRAME_RATE, 60);
+        format.setInteger(MediaFormat.KEY_FRAME_RATE, DEFAULT_FRAME_RATE);
         format.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
         format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, iFrameInterval);
         // display the very first frame, and recover from bad quality when no new frames
@@ -296,13 +651,4 @@ public class ScreenEncoder implements Connection.StreamInvalidateListener, Runna
             Ln.e("Failed to start screen recorder", e);
         }
     }
-
-    public void start(Device device, Connection connection) {
-        this.device = device;
-        this.connection = connection;
-        if (selectorThread != null && selectorThread.isAlive()) {
-            throw new IllegalStateException(getClass().getName() + " can only be started once.");
-        }
-        new Thread(this).start();
-    }
 }
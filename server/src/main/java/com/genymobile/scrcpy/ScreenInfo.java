@@ -82,7 +82,15 @@ public final class ScreenInfo {
         return new ScreenInfo(newContentRect, newUnlockedVideoSize, newDeviceRotation, lockedVideoOrientation);
     }
 
-    public static ScreenInfo computeScreenInfo(DisplayInfo displayInfo, VideoSettings videoSettings) {
+    /**
+     * Compute the screen info of a display.
+     *
+     * @param displayInfo   the display
+     * @param videoSettings the video settings
+     * @param capabilities  the capabilities of the encoder, to reduce the video size if it is not supported, or {@code null} if unknown
+     * @return the screen info
+     */
+    public static ScreenInfo computeScreenInfo(DisplayInfo displayInfo, VideoSettings videoSettings, EncoderCapabilities capabilities) {
         int lockedVideoOrientation = videoSettings.getLockedVideoOrientation();
         Rect crop = videoSettings.getCrop();
         int rotation = displayInfo.getRotation();
@@ -108,14 +116,29 @@ public final class ScreenInfo {
 
         Size bounds = videoSettings.getBounds();
         Size videoSize = computeVideoSize(contentRect.width(), contentRect.height(), bounds);
-        return new ScreenInfo(contentRect, videoSize, rotation, lockedVideoOrientation);
+        ScreenInfo screenInfo = new ScreenInfo(contentRect, videoSize, rotation, lockedVideoOrientation);
+        if (capabilities != null) {
+            // the encoder receives the video size with the locked video orientation
+            boolean rotated = screenInfo.getVideoRotation() % 2 != 0;
+            Size fitted = capabilities.fitSize(rotated ? videoSize.rotate() : videoSize);
+            if (fitted == null) {
+                Ln.w("No video size supported by the encoder for " + videoSize + ", " + capabilities);
+            } else {
+                fitted = rotated ? fitted.rotate() : fitted;
+                if (!fitted.equals(videoSize)) {
+                    Ln.i("Video size reduced from " + videoSize + " to " + fitted + " to fit the encoder capabilities");
+                    screenInfo = new ScreenInfo(contentRect, fitted, rotation, lockedVideoOrientation);
+                }
+            }
+        }
+        return screenInfo;
     }
 
     private static String formatCrop(Rect rect) {
         return rect.width() + ":" + rect.height() + ":" + rect.left + ":" + rect.top;
     }
 
-    private static Size computeVideoSize(int w, int h, Size bounds) {
+    static Size computeVideoSize(int w, int h, Size bounds) {
         if (bounds == null) {
             w &= ~15; // in case it's not a multiple of 16
             h &= ~15;
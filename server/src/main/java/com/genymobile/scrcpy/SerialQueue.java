@@ -0,0 +1,109 @@
+package com.genymobile.scrcpy;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * Queue of items handled in order, one at a time, by a task running on a shared executor.
+ * <p>
+ * Unlike a single-thread executor per queue, an idle queue does not hold any thread. Unlike {@link Executor#execute(Runnable)}, adding an
+ * item does not allocate (once the queue has grown to its steady size).
+ * <p>
+ * To share a bounded executor fairly between many queues, the number of items handled in a row may be limited: the drain task then
+ * yields the thread by submitting itself again behind the tasks of the other queues.
+ *
+ * @param <T> the type of the items
+ */
+public final class SerialQueue<T> {
+
+    public interface Handler<T> {
+        void handle(T item);
+    }
+
+    private final Executor executor;
+    private final Handler<T> handler;
+    private final MetricsRegistry.Gauge depth;
+    private final int maxBatch;
+
+    private final ArrayDeque<T> queue = new ArrayDeque<>();
+    // whether the drain task is submitted or running
+    private boolean draining;
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * @param executor the executor running the handler
+     * @param handler  the handler of the items
+     * @param depth    the gauge tracking the number of items queued (it may be shared by several queues)
+     */
+    public SerialQueue(Executor executor, Handler<T> handler, MetricsRegistry.Gauge depth) {
+        this(executor, handler, depth, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param executor the executor running the handler
+     * @param handler  the handler of the items
+     * @param depth    the gauge tracking the number of items queued (it may be shared by several queues)
+     * @param maxBatch the max number of items handled before yielding the thread
+     */
+    public SerialQueue(Executor executor, Handler<T> handler, MetricsRegistry.Gauge depth, int maxBatch) {
+        if (maxBatch <= 0) {
+            throw new IllegalArgumentException("maxBatch must be positive");
+        }
+        this.executor = executor;
+        this.handler = handler;
+        this.depth = depth;
+        this.maxBatch = maxBatch;
+    }
+
+    public void add(T item) {
+        boolean startDrain;
+        synchronized (queue) {
+            queue.add(item);
+            startDrain = !draining;
+            draining = true;
+        }
+        depth.add(1);
+        if (startDrain) {
+            executor.execute(drainTask);
+        }
+    }
+
+    public int size() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    private void drain() {
+        int handled = 0;
+        while (true) {
+            T item;
+            synchronized (queue) {
+                if (queue.isEmpty()) {
+                    draining = false;
+                    return;
+                }
+                if (handled == maxBatch) {
+                    // still draining, continue after the other queues
+                    break;
+                }
+                item = queue.poll();
+            }
+            depth.add(-1);
+            try {
+                handler.handle(item);
+            } catch (RuntimeException e) {
+                // do not stop handling the next items
+                Ln.e("Could not handle queued item", e);
+            }
+            ++handled;
+        }
+        executor.execute(drainTask);
+    }
+}
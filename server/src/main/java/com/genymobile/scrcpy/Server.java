@@ -39,6 +39,14 @@ public final class Server {
                 boolean listenOnAllInterfaces = Boolean.parseBoolean(args[4]);
                 options.setListenOnAllInterfaces(listenOnAllInterfaces);
             }
+            if (args.length > 5) {
+                boolean simulcast = Boolean.parseBoolean(args[5]);
+                options.setSimulcast(simulcast);
+            }
+            if (args.length > 6) {
+                int idleTimeout = Integer.parseInt(args[6]);
+                options.setIdleTimeout(idleTimeout);
+            }
             return;
         }
 
@@ -113,6 +121,23 @@ public final class Server {
         return new Rect(x, y, x + width, y + height);
     }
 
+    /**
+     * Return the max size (the -m option) to fit the main display in the video sizes supported by the default encoder.
+     */
+    private static int getSupportedMaxSize() {
+        final int fallbackMaxSize = 1024;
+        EncoderCapabilities capabilities = EncoderProber.probe(null, CodecNegotiator.DEFAULT_MIME_TYPE);
+        DisplayInfo displayInfo = Device.getDisplayInfo(0);
+        if (capabilities == null || displayInfo == null) {
+            return fallbackMaxSize;
+        }
+        Size size = capabilities.fitSize(displayInfo.getSize());
+        if (size == null) {
+            return fallbackMaxSize;
+        }
+        return Math.max(size.getWidth(), size.getHeight());
+    }
+
     private static void suggestFix(Throwable e) {
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
             if (e instanceof MediaCodec.CodecException) {
@@ -120,7 +145,7 @@ public final class Server {
                 if (mce.getErrorCode() == 0xfffffc0e) {
                     Ln.e("The hardware encoder is not able to encode at the given definition.");
                     Ln.e("Try with a lower definition:");
-                    Ln.e("    scrcpy -m 1024");
+                    Ln.e("    scrcpy -m " + getSupportedMaxSize());
                 }
             }
         }
@@ -158,6 +183,8 @@ public final class Server {
         VideoSettings videoSettings = new VideoSettings();
         parseArguments(options, videoSettings, args);
         Ln.initLogLevel(options.getLogLevel());
+        // resolve the reflective methods once, rather than on the first encoder start or input event
+        Device.resolveHiddenApi();
         if (options.getServerType() == Options.TYPE_LOCAL_SOCKET) {
             new DesktopConnection(options, videoSettings);
         } else if (options.getServerType() == Options.TYPE_WEB_SOCKET) {
@@ -0,0 +1,94 @@
+package com.genymobile.scrcpy;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the WebSocket sessions: the client ids in use, and the renditions streamed for each display.
+ * <p>
+ * It is accessed from the WebSocket threads, the encoder threads and the binder threads (rotation). The lookups of renditions are
+ * lock-free. The renditions of a display are changed under the {@link #getDisplayLock(int) lock of the display}, so that the clients of
+ * different displays never contend (see {@link StreamSessions}).
+ *
+ * @param <C> the type of the renditions
+ */
+public final class SessionRegistry<C> {
+
+    public static final int NO_CLIENT_ID = ClientIdAllocator.NO_ID;
+
+    private final ClientIdAllocator clientIds;
+    // the entries are never removed, so that the lock of a display is always the same object
+    private final ConcurrentHashMap<Integer, SubscriberList<C>> renditionsByDisplayId = new ConcurrentHashMap<>();
+    private final C[] empty;
+
+    /**
+     * @param empty an empty array, giving the runtime type of the renditions snapshots
+     */
+    public SessionRegistry(C[] empty) {
+        this(empty, new ClientIdAllocator());
+    }
+
+    /**
+     * @param empty     an empty array, giving the runtime type of the renditions snapshots
+     * @param clientIds the allocator of the client ids
+     */
+    public SessionRegistry(C[] empty, ClientIdAllocator clientIds) {
+        this.empty = empty;
+        this.clientIds = clientIds;
+    }
+
+    /**
+     * Reserve a client id, not used recently.
+     *
+     * @return the id, or {@link #NO_CLIENT_ID} if all the ids are in use
+     */
+    public int reserveClientId() {
+        return clientIds.acquire();
+    }
+
+    public void releaseClientId(int id) {
+        clientIds.release(id);
+    }
+
+    public int getClientCount() {
+        return clientIds.getUsedCount();
+    }
+
+    /**
+     * Return the lock to hold while selecting, adding or removing a rendition of a display, so that the decision is consistent with the
+     * change.
+     */
+    public Object getDisplayLock(int displayId) {
+        return getRenditionList(displayId);
+    }
+
+    /**
+     * Return the current renditions of a display, a single one unless simulcast is enabled.
+     * <p>
+     * The array is shared: it must not be modified.
+     */
+    public C[] getRenditions(int displayId) {
+        SubscriberList<C> renditions = renditionsByDisplayId.get(displayId);
+        return renditions == null ? empty : renditions.snapshot();
+    }
+
+    public void addRendition(int displayId, C rendition) {
+        getRenditionList(displayId).add(rendition);
+    }
+
+    public boolean removeRendition(int displayId, C rendition) {
+        SubscriberList<C> renditions = renditionsByDisplayId.get(displayId);
+        return renditions != null && renditions.remove(rendition);
+    }
+
+    private SubscriberList<C> getRenditionList(int displayId) {
+        SubscriberList<C> renditions = renditionsByDisplayId.get(displayId);
+        if (renditions == null) {
+            SubscriberList<C> created = new SubscriberList<>(empty);
+            renditions = renditionsByDisplayId.putIfAbsent(displayId, created);
+            if (renditions == null) {
+                renditions = created;
+            }
+        }
+        return renditions;
+    }
+}
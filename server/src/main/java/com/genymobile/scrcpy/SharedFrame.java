@@ -0,0 +1,183 @@
+package com.genymobile.scrcpy;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Encoded video packet, framed once as WebSocket binary message(s), shared by all the clients of a stream.
+ * <p>
+ * Every client receives a read-only view of the same buffer, so the cost of a packet does not depend on the number of clients. The buffer
+ * returns to its {@link Pool} once the last reference is released.
+ * <p>
+ * The output timestamp of the packet, if any, is framed as a separate message after the packet: the views of the clients which did not
+ * request it simply end before it, so the framing of the frame meta does not depend on the clients.
+ */
+public final class SharedFrame {
+
+    private static final byte OPCODE_BINARY_FIN = (byte) 0x82;
+
+    private final Pool pool;
+    private final AtomicInteger refCount = new AtomicInteger();
+    private final ByteBuffer buffer;
+    private int flags;
+    private int timestampOffset; // the end of the data without the output timestamp
+
+    private SharedFrame(Pool pool, ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public int getLength() {
+        return buffer.limit();
+    }
+
+    public int getLength(boolean withTimestamp) {
+        return withTimestamp ? buffer.limit() : timestampOffset;
+    }
+
+    /**
+     * Return a new read-only view of the framed data, with its own position.
+     *
+     * @return the view
+     */
+    public ByteBuffer view() {
+        return buffer.asReadOnlyBuffer();
+    }
+
+    /**
+     * Return a new read-only view of the framed data, with or without the output timestamp.
+     *
+     * @param withTimestamp whether the client requested the output timestamps
+     * @return the view
+     */
+    public ByteBuffer view(boolean withTimestamp) {
+        ByteBuffer view = buffer.asReadOnlyBuffer();
+        view.limit(getLength(withTimestamp));
+        return view;
+    }
+
+    public void retain() {
+        refCount.incrementAndGet();
+    }
+
+    public void release() {
+        int count = refCount.decrementAndGet();
+        if (count == 0) {
+            pool.recycle(this);
+        } else if (count < 0) {
+            throw new IllegalStateException("SharedFrame released too many times");
+        }
+    }
+
+    @SuppressWarnings("checkstyle:MagicNumber")
+    static int getHeaderLength(int payloadLength) {
+        if (payloadLength <= 125) {
+            return 2;
+        }
+        if (payloadLength <= 0xffff) {
+            return 4;
+        }
+        return 10;
+    }
+
+    /**
+     * Write a server-to-client (unmasked) WebSocket binary frame header.
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    static void putHeader(ByteBuffer buffer, int payloadLength) {
+        buffer.put(OPCODE_BINARY_FIN);
+        if (payloadLength <= 125) {
+            buffer.put((byte) payloadLength);
+        } else if (payloadLength <= 0xffff) {
+            buffer.put((byte) 126);
+            buffer.putShort((short) payloadLength);
+        } else {
+            buffer.put((byte) 127);
+            buffer.putLong(payloadLength);
+        }
+    }
+
+    public static final class Pool {
+        private static final int MIN_CAPACITY = 64 * 1024;
+        private static final int MAX_POOLED = 16;
+
+        private final ArrayDeque<SharedFrame> free = new ArrayDeque<>();
+
+        /**
+         * Frame the packet (and its frame meta, if any) into a pooled buffer.
+         * <p>
+         * The caller owns one reference on the returned frame, and must release it.
+         *
+         * @param frameMeta the frame header, or {@code null}
+         * @param packet    the encoded packet
+         * @param flags     the {@code MediaCodec.BUFFER_FLAG_*} of the packet
+         * @return the shared frame
+         */
+        public SharedFrame acquire(ByteBuffer frameMeta, ByteBuffer packet, int flags) {
+            return acquire(frameMeta, packet, null, flags);
+        }
+
+        /**
+         * Frame the packet (and its frame meta and output timestamp, if any) into a pooled buffer.
+         * <p>
+         * The caller owns one reference on the returned frame, and must release it.
+         *
+         * @param frameMeta      the frame header, or {@code null}
+         * @param packet         the encoded packet
+         * @param frameTimestamp the output timestamp, framed after the packet, or {@code null}
+         * @param flags          the {@code MediaCodec.BUFFER_FLAG_*} of the packet
+         * @return the shared frame
+         */
+        public SharedFrame acquire(ByteBuffer frameMeta, ByteBuffer packet, ByteBuffer frameTimestamp, int flags) {
+            int length = getHeaderLength(packet.remaining()) + packet.remaining();
+            if (frameMeta != null) {
+                length += getHeaderLength(frameMeta.remaining()) + frameMeta.remaining();
+            }
+            if (frameTimestamp != null) {
+                length += getHeaderLength(frameTimestamp.remaining()) + frameTimestamp.remaining();
+            }
+            SharedFrame frame = take(length);
+            ByteBuffer buffer = frame.buffer;
+            buffer.clear();
+            if (frameMeta != null) {
+                putHeader(buffer, frameMeta.remaining());
+                buffer.put(frameMeta.duplicate());
+            }
+            putHeader(buffer, packet.remaining());
+            buffer.put(packet.duplicate());
+            frame.timestampOffset = buffer.position();
+            if (frameTimestamp != null) {
+                putHeader(buffer, frameTimestamp.remaining());
+                buffer.put(frameTimestamp.duplicate());
+            }
+            buffer.flip();
+            frame.flags = flags;
+            frame.refCount.set(1);
+            return frame;
+        }
+
+        private synchronized SharedFrame take(int length) {
+            for (int i = free.size(); i > 0; --i) {
+                SharedFrame frame = free.poll();
+                if (frame.buffer.capacity() >= length) {
+                    return frame;
+                }
+                // too small for this packet, keep it for the next ones
+                free.offer(frame);
+            }
+            int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(length - 1) << 1);
+            return new SharedFrame(this, ByteBuffer.allocateDirect(capacity));
+        }
+
+        private synchronized void recycle(SharedFrame frame) {
+            if (free.size() < MAX_POOLED) {
+                free.offer(frame);
+            }
+        }
+    }
+}
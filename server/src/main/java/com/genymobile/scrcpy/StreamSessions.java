@@ -0,0 +1,166 @@
+package com.genymobile.scrcpy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Join and leave the renditions of the displays.
+ * <p>
+ * The selection of the rendition of a client and the change of its viewers are atomic, under the {@link SessionRegistry#getDisplayLock(int)
+ * lock of the display}: the last client of a rendition may not leave while another one joins it, and the viewer counts reported to the
+ * encoders are updated in the same order as the viewers. Only the release of a rendition, once its last client has left, is done without
+ * the lock.
+ * <p>
+ * Without simulcast, all the clients of a display share a single rendition: the codec of a rendition which already has viewers stays
+ * decodable by all of them (see {@link CodecNegotiator#negotiateJoin(VideoSettings, VideoSettings, String)}). With simulcast, a client joins the
+ * rendition selected by the {@link RenditionSelector}, and may only change the settings of a rendition it does not share.
+ * <p>
+ * The join and the leave of a client must be called from a single thread at a time (the WebSocket thread of the client).
+ *
+ * @param <S> the type of the clients
+ * @param <R> the type of the renditions
+ */
+public final class StreamSessions<S, R extends StreamSessions.Rendition<S>> {
+
+    /**
+     * A stream of a display, shared by its viewers.
+     */
+    public interface Rendition<S> {
+        /**
+         * Return the current settings of the stream, of which the display id never changes.
+         */
+        VideoSettings getVideoSettings();
+
+        int getViewerCount();
+
+        /**
+         * Return the mime type of the running codec, or {@code null} if unknown.
+         */
+        String getMimeType();
+
+        /**
+         * Add a viewer, and apply its settings to the stream, with the lock of the display held.
+         */
+        void join(S client, VideoSettings videoSettings);
+
+        /**
+         * Remove a viewer, with the lock of the display held.
+         *
+         * @return {@code false} if the client was not a viewer
+         */
+        boolean removeViewer(S client);
+
+        /**
+         * Notify that a viewer has left, without the lock of the display.
+         *
+         * @param last {@code true} if it was the last viewer: the rendition has been unregistered, and must be released
+         */
+        void onLeft(boolean last);
+    }
+
+    public interface Factory<R> {
+        R create(VideoSettings videoSettings);
+    }
+
+    private final SessionRegistry<R> registry;
+    private final Factory<R> factory;
+    private final boolean simulcast;
+    private final int maxRenditionsPerDisplay;
+
+    public StreamSessions(SessionRegistry<R> registry, Factory<R> factory, boolean simulcast, int maxRenditionsPerDisplay) {
+        this.registry = registry;
+        this.factory = factory;
+        this.simulcast = simulcast;
+        this.maxRenditionsPerDisplay = maxRenditionsPerDisplay;
+    }
+
+    /**
+     * Join a rendition of a display, or change the settings of the current one.
+     *
+     * @param client    the client
+     * @param current   the rendition the client currently views, or {@code null}
+     * @param requested the settings requested by the client, possibly modified
+     * @return the rendition the client now views
+     */
+    public R join(S client, R current, VideoSettings requested) {
+        int displayId = requested.getDisplayId();
+        if (current != null && current.getVideoSettings().getDisplayId() != displayId) {
+            // not under the lock of the new display, the locks of two displays are never held at once
+            leave(client, current);
+            current = null;
+        }
+
+        boolean leftShared = false;
+        R rendition;
+        synchronized (registry.getDisplayLock(displayId)) {
+            // the rendition the client still views
+            R member = current;
+            if (member != null && simulcast && member.getViewerCount() > 1) {
+                // only the single client of a rendition may change its settings, it must select a rendition again (it is not the last
+                // client, the rendition remains)
+                member.removeViewer(client);
+                leftShared = true;
+                member = null;
+            }
+            rendition = member != null ? member : select(displayId, requested);
+
+            VideoSettings joinSettings = requested;
+            if (simulcast) {
+                if (rendition != null && rendition != member) {
+                    // subscribe to the rendition as is
+                    joinSettings = rendition.getVideoSettings();
+                }
+            } else if (rendition != null && rendition.getViewerCount() > (rendition == member ? 1 : 0)) {
+                // the stream is shared: its codec must stay decodable by the other viewers (renegotiated if the client cannot decode it)
+                CodecNegotiator.negotiateJoin(joinSettings, rendition.getVideoSettings(), rendition.getMimeType());
+            }
+            if (rendition == null) {
+                rendition = factory.create(requested);
+                registry.addRendition(displayId, rendition);
+            }
+            rendition.join(client, joinSettings);
+        }
+        if (leftShared) {
+            current.onLeft(false);
+        }
+        return rendition;
+    }
+
+    /**
+     * Return the rendition to join, with the lock of the display held.
+     *
+     * @return the rendition, or {@code null} if a new one must be created
+     */
+    private R select(int displayId, VideoSettings requested) {
+        R[] renditions = registry.getRenditions(displayId);
+        if (!simulcast) {
+            return renditions.length == 0 ? null : renditions[0];
+        }
+        List<VideoSettings> renditionSettings = new ArrayList<>(renditions.length);
+        for (R rendition : renditions) {
+            renditionSettings.add(rendition.getVideoSettings());
+        }
+        int index = RenditionSelector.select(renditionSettings, requested, maxRenditionsPerDisplay);
+        return index == RenditionSelector.NEW_RENDITION ? null : renditions[index];
+    }
+
+    /**
+     * Leave a rendition.
+     * <p>
+     * The last client of a rendition unregisters it, so that no client may join it anymore.
+     */
+    public void leave(S client, R rendition) {
+        int displayId = rendition.getVideoSettings().getDisplayId();
+        boolean last;
+        synchronized (registry.getDisplayLock(displayId)) {
+            if (!rendition.removeViewer(client)) {
+                return;
+            }
+            last = rendition.getViewerCount() == 0;
+            if (last) {
+                registry.removeRendition(displayId, rendition);
+            }
+        }
+        rendition.onLeft(last);
+    }
+}
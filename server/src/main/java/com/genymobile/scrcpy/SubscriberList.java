@@ -0,0 +1,90 @@
+package com.genymobile.scrcpy;
+
+import java.util.Arrays;
+
+/**
+ * Copy-on-write set of subscribers, for the loops sending to every subscriber.
+ * <p>
+ * Changes copy the array under a lock, so they are expected to be rare (a client joining or leaving). Reading a {@link #snapshot()}
+ * neither locks nor allocates, and is never affected by a concurrent change.
+ *
+ * @param <T> the type of the subscribers
+ */
+public final class SubscriberList<T> {
+
+    private final Object lock = new Object();
+    private volatile T[] items;
+
+    /**
+     * @param empty an empty array, giving the runtime type of the snapshots
+     */
+    public SubscriberList(T[] empty) {
+        if (empty.length != 0) {
+            throw new IllegalArgumentException("The initial array must be empty");
+        }
+        items = empty;
+    }
+
+    /**
+     * @return {@code false} if the subscriber is already in the list
+     */
+    public boolean add(T item) {
+        synchronized (lock) {
+            T[] current = items;
+            if (indexOf(current, item) != -1) {
+                return false;
+            }
+            T[] copy = Arrays.copyOf(current, current.length + 1);
+            copy[current.length] = item;
+            items = copy;
+            return true;
+        }
+    }
+
+    /**
+     * @return {@code false} if the subscriber is not in the list
+     */
+    public boolean remove(T item) {
+        synchronized (lock) {
+            T[] current = items;
+            int index = indexOf(current, item);
+            if (index == -1) {
+                return false;
+            }
+            T[] copy = Arrays.copyOf(current, current.length - 1);
+            System.arraycopy(current, index + 1, copy, index, current.length - index - 1);
+            items = copy;
+            return true;
+        }
+    }
+
+    /**
+     * Return the current subscribers.
+     * <p>
+     * The array is shared: it must not be modified.
+     */
+    public T[] snapshot() {
+        return items;
+    }
+
+    public boolean contains(T item) {
+        return indexOf(items, item) != -1;
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    public boolean isEmpty() {
+        return items.length == 0;
+    }
+
+    private static int indexOf(Object[] array, Object item) {
+        for (int i = 0; i < array.length; ++i) {
+            if (array[i].equals(item)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
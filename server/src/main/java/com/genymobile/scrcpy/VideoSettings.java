@@ -23,6 +23,10 @@ public class VideoSettings {
     private String codecOptionsString;
     private List<CodecOption> codecOptions;
     private String encoderName;
+    private String mimeTypes; // in order of preference, separated by commas, null for the default
+    private int profile; // 0 for the default of the encoder
+    private int level; // 0 for the default of the encoder
+    private byte tuning; // see EncoderTuning
 
     public int getBitRate() {
         return bitRate;
@@ -96,6 +100,10 @@ public class VideoSettings {
         return codecOptions;
     }
 
+    public String getCodecOptionsString() {
+        return codecOptionsString;
+    }
+
     public void setCodecOptions(String codecOptionsString) {
         this.codecOptions = CodecOption.parse(codecOptionsString);
         if (codecOptionsString.equals("-")) {
@@ -117,9 +125,45 @@ public class VideoSettings {
         }
     }
 
+    public String getMimeTypes() {
+        return mimeTypes;
+    }
+
+    public void setMimeTypes(String mimeTypes) {
+        if (mimeTypes != null && (mimeTypes.isEmpty() || mimeTypes.equals("-"))) {
+            this.mimeTypes = null;
+        } else {
+            this.mimeTypes = mimeTypes;
+        }
+    }
+
+    public int getProfile() {
+        return profile;
+    }
+
+    public void setProfile(int profile) {
+        this.profile = profile;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    public void setLevel(int level) {
+        this.level = level;
+    }
+
+    public byte getTuning() {
+        return tuning;
+    }
+
+    public void setTuning(byte tuning) {
+        this.tuning = tuning;
+    }
+
     public byte[] toByteArray() {
-        // 35 bytes without codec options and encoder name
-        int baseLength = 35;
+        // 48 bytes without codec options, encoder name and mime types
+        int baseLength = 48;
         int additionalLength = 0;
         byte[] codeOptionsBytes = new byte[]{};
         if (this.codecOptionsString != null) {
@@ -131,6 +175,11 @@ public class VideoSettings {
             encoderNameBytes = this.encoderName.getBytes(StandardCharsets.UTF_8);
             additionalLength += encoderNameBytes.length;
         }
+        byte[] mimeTypesBytes = new byte[]{};
+        if (this.mimeTypes != null) {
+            mimeTypesBytes = this.mimeTypes.getBytes(StandardCharsets.UTF_8);
+            additionalLength += mimeTypesBytes.length;
+        }
         ByteBuffer temp = ByteBuffer.allocate(baseLength + additionalLength);
         temp.putInt(bitRate);
         temp.putInt(maxFps);
@@ -168,6 +217,13 @@ public class VideoSettings {
         if (encoderNameBytes.length != 0) {
             temp.put(encoderNameBytes);
         }
+        temp.putInt(mimeTypesBytes.length);
+        if (mimeTypesBytes.length != 0) {
+            temp.put(mimeTypesBytes);
+        }
+        temp.putInt(profile);
+        temp.putInt(level);
+        temp.put(tuning);
         return temp.array();
     }
 
@@ -175,6 +231,10 @@ public class VideoSettings {
         codecOptions = source.codecOptions;
         codecOptionsString = source.codecOptionsString;
         encoderName = source.encoderName;
+        mimeTypes = source.mimeTypes;
+        profile = source.profile;
+        level = source.level;
+        tuning = source.tuning;
         bitRate = source.bitRate;
         maxFps = source.maxFps;
         iFrameInterval = source.iFrameInterval;
@@ -227,6 +287,21 @@ public class VideoSettings {
                 }
             }
         }
+        if (data.remaining() > 0) {
+            int mimeTypesLength = data.getInt();
+            if (mimeTypesLength > 0) {
+                byte[] textBuffer = new byte[mimeTypesLength];
+                data.get(textBuffer, 0, mimeTypesLength);
+                videoSettings.setMimeTypes(new String(textBuffer, 0, mimeTypesLength, StandardCharsets.UTF_8));
+            }
+        }
+        if (data.remaining() > 0) {
+            videoSettings.setProfile(data.getInt());
+            videoSettings.setLevel(data.getInt());
+        }
+        if (data.remaining() > 0) {
+            videoSettings.setTuning(data.get());
+        }
         videoSettings.setBitRate(bitRate);
         videoSettings.setMaxFps(maxFps);
         videoSettings.setIFrameInterval(iFrameInterval);
@@ -254,10 +329,12 @@ public class VideoSettings {
 
         VideoSettings s = (VideoSettings) o;
         if (bitRate != s.bitRate || maxFps != s.maxFps || lockedVideoOrientation != s.lockedVideoOrientation || iFrameInterval != s.iFrameInterval
-                || sendFrameMeta != s.sendFrameMeta || displayId != s.displayId) {
+                || sendFrameMeta != s.sendFrameMeta || displayId != s.displayId || profile != s.profile || level != s.level
+                || tuning != s.tuning) {
             return false;
         }
         if (!Objects.equals(codecOptionsString, s.codecOptionsString) || !Objects.equals(encoderName, s.encoderName)
+                || !Objects.equals(mimeTypes, s.mimeTypes)
                 || !Objects.equals(bounds, s.bounds) || !Objects.equals(crop, s.crop)) {
             return false;
         }
@@ -268,7 +345,7 @@ public class VideoSettings {
     public int hashCode() {
         return Objects.hash(bitRate, maxFps, lockedVideoOrientation, iFrameInterval, sendFrameMeta,
                 displayId, Objects.hashCode(codecOptionsString), Objects.hashCode(encoderName),
-                Objects.hashCode(bounds), Objects.hashCode(crop));
+                Objects.hashCode(bounds), Objects.hashCode(crop), Objects.hashCode(mimeTypes), profile, level, tuning);
     }
 
     @Override
@@ -284,6 +361,10 @@ public class VideoSettings {
                 + ", displayId=" + displayId
                 + ", codecOptions=" + (this.codecOptionsString == null ? "-" : this.codecOptionsString)
                 + ", encoderName=" + (this.encoderName == null ? "-" : this.encoderName)
+                + ", mimeTypes=" + (this.mimeTypes == null ? "-" : this.mimeTypes)
+                + ", profile=" + profile
+                + ", level=" + level
+                + ", tuning=" + tuning
                 + "}";
     }
 
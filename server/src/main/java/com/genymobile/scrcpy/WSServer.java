@@ -2,6 +2,7 @@ package com.genymobile.scrcpy;
 
 import org.java_websocket.WebSocket;
 import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.framing.Framedata;
 import org.java_websocket.handshake.ClientHandshake;
 import org.java_websocket.server.WebSocketServer;
 
@@ -13,35 +14,59 @@ import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
 
 public class WSServer extends WebSocketServer {
     private static final String PID_FILE_PATH = "/data/local/tmp/ws_scrcpy.pid";
+    private static final String METRICS_REQUEST = "metrics";
+    private static final String METRIC_SENT_BYTES = "scrcpy_client_sent_bytes_total";
+    private static final String METRIC_DROPPED_FRAMES = "scrcpy_client_dropped_packets_total";
     public static final class SocketInfo {
-        private static final HashSet<Short> INSTANCES_BY_ID = new HashSet<>();
-        private final short id;
-        private WebSocketConnection connection;
+        private final int id;
+        private final ClientSendQueue sendQueue;
+        private final String metricsLabels;
+        private final MetricsRegistry.Counter sentBytes;
+        private final MetricsRegistry.Counter droppedFrames;
+        private final ControlDispatcher dispatcher;
+        private volatile WebSocketConnection connection;
+        private long initialInfoVersion; // the version of the last initial info sent, 0 if none
 
-        SocketInfo(short id) {
+        SocketInfo(int id, WebSocket webSocket, WebSocketServer server) {
             this.id = id;
-            INSTANCES_BY_ID.add(id);
-        }
-
-        public static short getNextClientId() {
-            short nextClientId = 0;
-            while (INSTANCES_BY_ID.contains(++nextClientId)) {
-                if (nextClientId == Short.MAX_VALUE) {
-                    return -1;
+            this.sendQueue = new ClientSendQueue(webSocket, server);
+            metricsLabels = "client=\"" + id + "\"";
+            MetricsRegistry registry = MetricsRegistry.getInstance();
+            sentBytes = registry.counter(METRIC_SENT_BYTES, "Bytes queued for sending to each client", metricsLabels);
+            droppedFrames = registry.counter(METRIC_DROPPED_FRAMES, "Video packets dropped for each client", metricsLabels);
+            // per client, so that the slow operations of a client never delay the input of the others
+            dispatcher = new ControlDispatcher(new ControlDispatcher.ControllerProvider() {
+                @Override
+                public Controller getController() {
+                    WebSocketConnection current = connection;
+                    return current != null ? current.getController() : null;
                 }
-            }
-            return nextClientId;
+            });
         }
 
-        public short getId() {
+        public int getId() {
             return id;
         }
 
+        public ClientSendQueue getSendQueue() {
+            return sendQueue;
+        }
+
+        public MetricsRegistry.Counter getSentBytes() {
+            return sentBytes;
+        }
+
+        public MetricsRegistry.Counter getDroppedFrames() {
+            return droppedFrames;
+        }
+
+        public ControlDispatcher getDispatcher() {
+            return dispatcher;
+        }
+
         public WebSocketConnection getConnection() {
             return this.connection;
         }
@@ -50,32 +75,59 @@ public class WSServer extends WebSocketServer {
             this.connection = connection;
         }
 
+        /**
+         * Record that a snapshot of the initial info is sent.
+         *
+         * @return {@code false} if this version has already been sent to this client
+         */
+        public synchronized boolean markInitialInfoSent(long version) {
+            if (initialInfoVersion == version) {
+                return false;
+            }
+            initialInfoVersion = version;
+            return true;
+        }
+
         public void release() {
-            INSTANCES_BY_ID.remove(id);
+            sendQueue.release();
+            MetricsRegistry registry = MetricsRegistry.getInstance();
+            registry.remove(METRIC_SENT_BYTES, metricsLabels);
+            registry.remove(METRIC_DROPPED_FRAMES, metricsLabels);
+            SESSIONS.releaseClientId(id);
         }
     }
 
-    protected final ControlMessageReader reader = new ControlMessageReader();
+    // input events are decoded without allocation, and recycled once handled
+    protected final ControlMessageReader reader = new ControlMessageReader(new ControlMessage.Pool());
     private final Options options;
-    private static final HashMap<Integer, WebSocketConnection> STREAM_BY_DISPLAY_ID = new HashMap<>();
+    private static final int MAX_RENDITIONS_PER_DISPLAY = 3;
+    private static final SessionRegistry<WebSocketConnection> SESSIONS = new SessionRegistry<>(new WebSocketConnection[0]);
+    private final StreamSessions<WebSocket, WebSocketConnection> streams;
 
-    public WSServer(Options options) {
+    public WSServer(final Options options) {
         super(new InetSocketAddress(options.getListenOnAllInterfaces() ? "0.0.0.0" : "127.0.0.1", options.getPortNumber()));
         this.options = options;
+        streams = new StreamSessions<>(SESSIONS, new StreamSessions.Factory<WebSocketConnection>() {
+            @Override
+            public WebSocketConnection create(VideoSettings videoSettings) {
+                return new WebSocketConnection(options, videoSettings, WSServer.this);
+            }
+        }, options.getSimulcast(), MAX_RENDITIONS_PER_DISPLAY);
         unlinkPidFile();
     }
 
     @Override
     public void onOpen(WebSocket webSocket, ClientHandshake handshake) {
         if (webSocket.isOpen()) {
-            short clientId = SocketInfo.getNextClientId();
-            if (clientId == -1) {
+            int clientId = SESSIONS.reserveClientId();
+            if (clientId == SessionRegistry.NO_CLIENT_ID) {
                 webSocket.close(CloseFrame.TRY_AGAIN_LATER);
                 return;
             }
-            SocketInfo info = new SocketInfo(clientId);
+            SocketInfo info = new SocketInfo(clientId, webSocket, this);
             webSocket.setAttachment(info);
-            WebSocketConnection.sendInitialInfo(WebSocketConnection.getInitialInfo(), webSocket, clientId);
+            sendInitialInfo(webSocket, info, InitialInfo.getSnapshot());
+            webSocket.send(WebSocketConnection.deviceMessageToByteBuffer(DeviceMessage.createClientId(clientId)));
             Ln.d("Client entered the room!");
         }
     }
@@ -83,12 +135,13 @@ public class WSServer extends WebSocketServer {
     @Override
     public void onClose(WebSocket webSocket, int code, String reason, boolean remote) {
         Ln.d("Client has left the room!");
-        FilePushHandler.cancelAllForConnection(webSocket);
         SocketInfo socketInfo = webSocket.getAttachment();
         if (socketInfo != null) {
+            // after the push messages already queued
+            FilePushHandler.cancelAllForConnection(webSocket);
             WebSocketConnection connection = socketInfo.getConnection();
             if (connection != null) {
-                connection.leave(webSocket);
+                streams.leave(webSocket, connection);
             }
             socketInfo.release();
         }
@@ -96,6 +149,10 @@ public class WSServer extends WebSocketServer {
 
     @Override
     public void onMessage(WebSocket webSocket, String message) {
+        if (METRICS_REQUEST.equals(message)) {
+            webSocket.send(MetricsRegistry.getInstance().render());
+            return;
+        }
         String address = webSocket.getRemoteSocketAddress().getAddress().getHostAddress();
         Ln.w("?  Client from " + address + " says: \"" + message + "\"");
     }
@@ -108,33 +165,36 @@ public class WSServer extends WebSocketServer {
             return;
         }
         WebSocketConnection connection = socketInfo.getConnection();
-        String address = webSocket.getRemoteSocketAddress().getAddress().getHostAddress();
         ControlMessage controlMessage = reader.parseEvent(message);
         if (controlMessage != null) {
             if (controlMessage.getType() == ControlMessage.TYPE_PUSH_FILE) {
-                FilePushHandler.handlePush(webSocket, controlMessage);
+                FilePushHandler.submit(webSocket, controlMessage);
                 return;
             }
             if (controlMessage.getType() == ControlMessage.TYPE_CHANGE_STREAM_PARAMETERS) {
-                VideoSettings videoSettings = controlMessage.getVideoSettings();
-                int displayId = videoSettings.getDisplayId();
-                if (connection != null) {
-                    if (connection.getVideoSettings().getDisplayId() != displayId) {
-                        connection.leave(webSocket);
-                    }
-                }
-                joinStreamForDisplayId(webSocket, videoSettings, options, displayId, this);
+                joinStreamForDisplayId(webSocket, controlMessage.getVideoSettings());
                 return;
             }
             if (connection != null) {
-                Controller controller = connection.getController();
-                controller.handleEvent(controlMessage);
+                // handled (then recycled) out of this thread, so that a blocking call does not stall the other clients
+                socketInfo.getDispatcher().dispatch(controlMessage);
+            } else {
+                controlMessage.recycle();
             }
         } else {
+            String address = webSocket.getRemoteSocketAddress().getAddress().getHostAddress();
             Ln.w("?  Client from " + address + " sends bytes: " + message);
         }
     }
 
+    @Override
+    public void onWebsocketPong(WebSocket webSocket, Framedata frame) {
+        SocketInfo socketInfo = webSocket.getAttachment();
+        if (socketInfo != null) {
+            socketInfo.getSendQueue().onPong();
+        }
+    }
+
     @Override
     public void onError(WebSocket webSocket, Exception ex) {
         Ln.e("WebSocket error", ex);
@@ -155,16 +215,11 @@ public class WSServer extends WebSocketServer {
         writePidFile();
     }
 
-    private static void joinStreamForDisplayId(
-            WebSocket webSocket, VideoSettings videoSettings, Options options, int displayId, WSServer wsServer) {
+    private void joinStreamForDisplayId(WebSocket webSocket, VideoSettings videoSettings) {
         SocketInfo socketInfo = webSocket.getAttachment();
-        WebSocketConnection connection = STREAM_BY_DISPLAY_ID.get(displayId);
-        if (connection == null) {
-            connection = new WebSocketConnection(options, videoSettings, wsServer);
-            STREAM_BY_DISPLAY_ID.put(displayId, connection);
-        }
-        socketInfo.setConnection(connection);
-        connection.join(webSocket, videoSettings);
+        // whatever the tuning of the stream, only the clients requesting it receive the output timestamps
+        socketInfo.getSendQueue().setFrameTimestamps(EncoderTuning.hasFrameTimestamp(videoSettings.getTuning()));
+        socketInfo.setConnection(streams.join(webSocket, socketInfo.getConnection(), videoSettings));
     }
 
     private static void unlinkPidFile() {
@@ -192,26 +247,37 @@ public class WSServer extends WebSocketServer {
         }
     }
 
-    public static WebSocketConnection getConnectionForDisplay(int displayId) {
-        return STREAM_BY_DISPLAY_ID.get(displayId);
-    }
-
-    public static void releaseConnectionForDisplay(int displayId) {
-        STREAM_BY_DISPLAY_ID.remove(displayId);
+    /**
+     * Return the renditions of a display, a single one unless simulcast is enabled.
+     * <p>
+     * The array is shared: it must not be modified.
+     */
+    public static WebSocketConnection[] getConnectionsForDisplay(int displayId) {
+        return SESSIONS.getRenditions(displayId);
     }
 
+    /**
+     * Send the current initial info to the clients which have not received it yet.
+     */
     public void sendInitialInfoToAll() {
         Collection<WebSocket> webSockets = this.getConnections();
         if (webSockets.isEmpty()) {
             return;
         }
-        ByteBuffer initialInfo = WebSocketConnection.getInitialInfo();
+        InitialInfo.Snapshot snapshot = InitialInfo.getSnapshot();
         for (WebSocket webSocket : webSockets) {
             SocketInfo socketInfo = webSocket.getAttachment();
             if (socketInfo == null) {
                 continue;
             }
-            WebSocketConnection.sendInitialInfo(initialInfo, webSocket, socketInfo.getId());
+            sendInitialInfo(webSocket, socketInfo, snapshot);
+        }
+    }
+
+    private static void sendInitialInfo(WebSocket webSocket, SocketInfo socketInfo, InitialInfo.Snapshot snapshot) {
+        if (socketInfo.markInitialInfoSent(snapshot.getVersion())) {
+            // the bytes are shared, only the view is created for each client
+            webSocket.send(snapshot.newBuffer());
         }
     }
 }
@@ -1,56 +1,105 @@
 package com.genymobile.scrcpy;
 
-import android.media.MediaCodecInfo;
+import android.media.MediaCodec;
 
 import org.java_websocket.WebSocket;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 
-public class WebSocketConnection extends Connection {
-    private static final byte[] MAGIC_BYTES_INITIAL = "scrcpy_initial".getBytes(StandardCharsets.UTF_8);
+public class WebSocketConnection extends Connection implements BitrateController.StatsProvider, StreamSessions.Rendition<WebSocket> {
     private static final byte[] MAGIC_BYTES_MESSAGE = "scrcpy_message".getBytes(StandardCharsets.UTF_8);
-    private static final byte[] DEVICE_NAME_BYTES = Device.getDeviceName().getBytes(StandardCharsets.UTF_8);
     private final WSServer wsServer;
-    private final HashSet<WebSocket> sockets = new HashSet<>();
+    // iterated without lock for every packet
+    private final SubscriberList<WebSocket> sockets = new SubscriberList<>(new WebSocket[0]);
+    private final SharedFrame.Pool framePool = new SharedFrame.Pool();
+    // protects codecConfig, so that a joining client receives either the cached codec config or the next one
+    private final Object codecConfigLock = new Object();
+    private SharedFrame codecConfig; // the last codec config packet of the running encoder
     private ScreenEncoder screenEncoder;
+    private EncoderScheduler.Session encoderSession;
+    private BitrateController bitrateController;
 
     public WebSocketConnection(Options options, VideoSettings videoSettings, WSServer wsServer) {
         super(options, videoSettings);
         this.wsServer = wsServer;
     }
 
+    /**
+     * Add a client, with the lock of the display held (see {@link StreamSessions}).
+     */
+    @Override
     public void join(WebSocket webSocket, VideoSettings videoSettings) {
-        sockets.add(webSocket);
-        boolean changed = setVideoSettings(videoSettings);
+        boolean restart = (ReconfigurationPlanner.planJoin(this.videoSettings, videoSettings) & ReconfigurationPlanner.RESTART) != 0;
+        if (restart) {
+            synchronized (codecConfigLock) {
+                // the config of the codec about to be replaced must not be sent to anyone anymore, the new codec will produce its own
+                clearCodecConfig();
+            }
+        } else {
+            // the newcomer will start decoding on the sync frame requested by the plan
+            addSocket(webSocket);
+        }
+        setVideoSettings(videoSettings, true);
+        if (restart) {
+            // if the new codec has already produced its config, it is cached
+            addSocket(webSocket);
+        }
+        // the viewers count changed
+        InitialInfo.invalidate();
         wsServer.sendInitialInfoToAll();
         if (!Device.isScreenOn()) {
             controller.turnScreenOn();
         }
-        if (screenEncoder == null || !screenEncoder.isAlive()) {
+        EncoderScheduler scheduler = EncoderScheduler.getInstance();
+        if (encoderSession == null || encoderSession.getState() == EncoderScheduler.State.FINISHED) {
             Ln.d("First connection. Start new encoder.");
+            clearCodecConfig();
             device.setRotationListener(this);
-            screenEncoder = new ScreenEncoder(videoSettings);
-            screenEncoder.start(device, this);
-        } else {
-            if (!changed) {
-                if (this.streamInvalidateListener != null) {
-                    streamInvalidateListener.onStreamInvalidate();
-                }
+            // the encoder must follow the settings of the connection, updated by the next clients
+            screenEncoder = new ScreenEncoder(this.videoSettings);
+            screenEncoder.setDevice(device);
+            screenEncoder.setConnection(this);
+            screenEncoder.setIdleTimeout(options.getIdleTimeout());
+            encoderSession = scheduler.submit(this.videoSettings.getDisplayId(), screenEncoder.getEncoderName(), screenEncoder.getMimeType(),
+                    screenEncoder, sockets.size());
+            if (encoderSession.getState() == EncoderScheduler.State.QUEUED) {
+                Ln.i("No encoder instance available for display " + this.videoSettings.getDisplayId() + ", stream queued: " + scheduler);
             }
+            if (bitrateController != null) {
+                bitrateController.stop();
+            }
+            bitrateController = new BitrateController(screenEncoder, this.videoSettings, this, new AimdBitratePolicy());
+            bitrateController.start();
+        } else {
+            scheduler.setViewers(encoderSession, sockets.size());
         }
     }
 
-    public void leave(WebSocket webSocket) {
-        sockets.remove(webSocket);
-        if (sockets.isEmpty()) {
+    /**
+     * Remove a client, with the lock of the display held (see {@link StreamSessions}).
+     */
+    @Override
+    public boolean removeViewer(WebSocket webSocket) {
+        if (!sockets.remove(webSocket)) {
+            return false;
+        }
+        // in the same order as the joins, under the same lock
+        if (encoderSession != null) {
+            EncoderScheduler.getInstance().setViewers(encoderSession, sockets.size());
+        }
+        return true;
+    }
+
+    @Override
+    public void onLeft(boolean last) {
+        if (last) {
             Ln.d("Last client has left");
             this.release();
         }
+        InitialInfo.invalidate();
         wsServer.sendInitialInfoToAll();
     }
 
@@ -63,25 +112,102 @@ public class WebSocketConnection extends Connection {
 
     @Override
     void send(ByteBuffer data) {
+        for (WebSocket webSocket : sockets.snapshot()) {
+            WSServer.SocketInfo info = webSocket.getAttachment();
+            if (!webSocket.isOpen() || info == null) {
+                continue;
+            }
+            info.getSentBytes().add(data.remaining());
+            // each client reads its own view of the data
+            webSocket.send(data.duplicate());
+        }
+    }
+
+    private void addSocket(WebSocket webSocket) {
+        synchronized (codecConfigLock) {
+            sockets.add(webSocket);
+            // the newcomer can initialize its decoder right away
+            WSServer.SocketInfo info = webSocket.getAttachment();
+            if (codecConfig != null && info != null) {
+                webSocket.send(createVideoCodecMessage());
+                info.getSendQueue().offer(codecConfig);
+            }
+        }
+    }
+
+    @Override
+    void sendVideoPacket(ByteBuffer frameMeta, ByteBuffer packet, ByteBuffer frameTimestamp, int flags) {
         if (sockets.isEmpty()) {
             return;
         }
-        synchronized (sockets) {
-            for (WebSocket webSocket : sockets) {
-                WSServer.SocketInfo info = webSocket.getAttachment();
-                if (!webSocket.isOpen() || info == null) {
-                    continue;
+        // framed once, whatever the number of clients
+        SharedFrame frame = framePool.acquire(frameMeta, packet, frameTimestamp, flags);
+        try {
+            if ((flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0) {
+                // rare, lock so that no client joins between the update of the cache and the broadcast
+                synchronized (codecConfigLock) {
+                    clearCodecConfig();
+                    frame.retain();
+                    codecConfig = frame;
+                    // the clients need not guess the codec negotiated from their requests
+                    send(createVideoCodecMessage());
+                    offer(frame);
                 }
-                webSocket.send(data);
+            } else {
+                offer(frame);
             }
+        } finally {
+            frame.release();
         }
     }
 
-    public static void sendInitialInfo(ByteBuffer initialInfo, WebSocket webSocket, int clientId) {
-        initialInfo.position(initialInfo.capacity() - 4);
-        initialInfo.putInt(clientId);
-        initialInfo.rewind();
-        webSocket.send(initialInfo);
+    @Override
+    public String getMimeType() {
+        ScreenEncoder encoder = screenEncoder;
+        return encoder != null ? encoder.getMimeType() : null;
+    }
+
+    private ByteBuffer createVideoCodecMessage() {
+        return deviceMessageToByteBuffer(DeviceMessage.createVideoCodec(screenEncoder.getMimeType()));
+    }
+
+    private void offer(SharedFrame frame) {
+        for (WebSocket webSocket : sockets.snapshot()) {
+            WSServer.SocketInfo info = webSocket.getAttachment();
+            if (!webSocket.isOpen() || info == null) {
+                continue;
+            }
+            ClientSendQueue sendQueue = info.getSendQueue();
+            if (sendQueue.offer(frame)) {
+                info.getSentBytes().add(frame.getLength(sendQueue.getFrameTimestamps()));
+            } else {
+                info.getDroppedFrames().inc();
+            }
+        }
+    }
+
+    private void clearCodecConfig() {
+        synchronized (codecConfigLock) {
+            if (codecConfig != null) {
+                codecConfig.release();
+                codecConfig = null;
+            }
+        }
+    }
+
+    @Override
+    public List<BitratePolicy.ClientStats> sampleClientStats() {
+        List<BitratePolicy.ClientStats> stats = new ArrayList<>();
+        for (WebSocket webSocket : sockets.snapshot()) {
+            WSServer.SocketInfo info = webSocket.getAttachment();
+            if (!webSocket.isOpen() || info == null) {
+                continue;
+            }
+            ClientSendQueue sendQueue = info.getSendQueue();
+            stats.add(sendQueue.sampleStats());
+            sendQueue.sendPing();
+        }
+        return stats;
     }
 
     public void sendDeviceMessage(DeviceMessage msg) {
@@ -89,9 +215,14 @@ public class WebSocketConnection extends Connection {
         send(buffer);
     }
 
+    @Override
+    public int getViewerCount() {
+        return sockets.size();
+    }
+
     @Override
     public boolean hasConnections() {
-        return sockets.size() > 0;
+        return !sockets.isEmpty();
     }
 
     @Override
@@ -99,6 +230,7 @@ public class WebSocketConnection extends Connection {
 //        wsServer.stop();
     }
 
+    @Override
     public VideoSettings getVideoSettings() {
         return videoSettings;
     }
@@ -111,99 +243,22 @@ public class WebSocketConnection extends Connection {
         return device;
     }
 
-    @SuppressWarnings("checkstyle:MagicNumber")
-    public static ByteBuffer getInitialInfo() {
-        int baseLength = MAGIC_BYTES_INITIAL.length
-                + DEVICE_NAME_FIELD_LENGTH
-                + 4                          // displays count
-                + 4;                         // client id
-        int additionalLength = 0;
-        int[] displayIds = Device.getDisplayIds();
-        HashMap<Integer, DisplayInfo> displayInfoHashMap = new HashMap<>();
-        HashMap<Integer, Integer> connectionsCount = new HashMap<>();
-        HashMap<Integer, byte[]> displayInfoMap = new HashMap<>();
-        HashMap<Integer, byte[]> videoSettingsBytesMap = new HashMap<>();
-        HashMap<Integer, byte[]> screenInfoBytesMap = new HashMap<>();
-
-        for (int displayId : displayIds) {
-            DisplayInfo displayInfo = Device.getDisplayInfo(displayId);
-            displayInfoHashMap.put(displayId, displayInfo);
-            byte[] displayInfoBytes = displayInfo.toByteArray();
-            additionalLength += displayInfoBytes.length;
-            displayInfoMap.put(displayId, displayInfoBytes);
-            WebSocketConnection connection = WSServer.getConnectionForDisplay(displayId);
-            additionalLength += 4; // for connection.connections.size()
-            additionalLength += 4; // for screenInfoBytes.length
-            additionalLength += 4; // for videoSettingsBytes.length
-            if (connection != null) {
-                connectionsCount.put(displayId, connection.sockets.size());
-                byte[] screenInfoBytes = connection.getDevice().getScreenInfo().toByteArray();
-                additionalLength += screenInfoBytes.length;
-                screenInfoBytesMap.put(displayId, screenInfoBytes);
-                byte[] videoSettingsBytes = connection.getVideoSettings().toByteArray();
-                additionalLength += videoSettingsBytes.length;
-                videoSettingsBytesMap.put(displayId, videoSettingsBytes);
-            }
-        }
-
-        MediaCodecInfo[] encoders = ScreenEncoder.listEncoders();
-        List<byte[]> encodersNames = new ArrayList<>();
-        if (encoders != null && encoders.length > 0) {
-            additionalLength += 4;
-            for (MediaCodecInfo encoder : encoders) {
-                byte[] nameBytes = encoder.getName().getBytes(StandardCharsets.UTF_8);
-                additionalLength += 4 + nameBytes.length;
-                encodersNames.add(nameBytes);
-            }
-        }
-
-        byte[] fullBytes = new byte[baseLength + additionalLength];
-        ByteBuffer initialInfo = ByteBuffer.wrap(fullBytes);
-        initialInfo.put(MAGIC_BYTES_INITIAL);
-        initialInfo.put(DEVICE_NAME_BYTES, 0, Math.min(DEVICE_NAME_FIELD_LENGTH - 1, DEVICE_NAME_BYTES.length));
-        initialInfo.position(MAGIC_BYTES_INITIAL.length + DEVICE_NAME_FIELD_LENGTH);
-        initialInfo.putInt(displayIds.length);
-        for (DisplayInfo displayInfo : displayInfoHashMap.values()) {
-            int displayId = displayInfo.getDisplayId();
-            if (displayInfoMap.containsKey(displayId)) {
-                initialInfo.put(displayInfoMap.get(displayId));
-            }
-            int count = 0;
-            if (connectionsCount.containsKey(displayId)) {
-                count = connectionsCount.get(displayId);
-            }
-            initialInfo.putInt(count);
-            if (screenInfoBytesMap.containsKey(displayId)) {
-                byte[] screenInfo = screenInfoBytesMap.get(displayId);
-                initialInfo.putInt(screenInfo.length);
-                initialInfo.put(screenInfo);
-            } else {
-                initialInfo.putInt(0);
-            }
-            if (videoSettingsBytesMap.containsKey(displayId)) {
-                byte[] videoSettings = videoSettingsBytesMap.get(displayId);
-                initialInfo.putInt(videoSettings.length);
-                initialInfo.put(videoSettings);
-            } else {
-                initialInfo.putInt(0);
-            }
-        }
-        initialInfo.putInt(encodersNames.size());
-        for (byte[] encoderNameBytes : encodersNames) {
-            initialInfo.putInt(encoderNameBytes.length);
-            initialInfo.put(encoderNameBytes);
-        }
-
-        return initialInfo;
-    }
-
     public void onRotationChanged(int rotation) {
+        // the cached codec config does not match the new video size
+        clearCodecConfig();
         super.onRotationChanged(rotation);
+        InitialInfo.invalidate();
         wsServer.sendInitialInfoToAll();
     }
 
     private void release() {
-        WSServer.releaseConnectionForDisplay(this.videoSettings.getDisplayId());
+        if (bitrateController != null) {
+            bitrateController.stop();
+        }
+        clearCodecConfig();
+        if (encoderSession != null) {
+            EncoderScheduler.getInstance().cancel(encoderSession);
+        }
         // encoder will stop itself after checking .hasConnections()
     }
 }
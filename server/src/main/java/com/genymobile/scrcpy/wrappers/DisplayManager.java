@@ -5,26 +5,51 @@ import com.genymobile.scrcpy.Size;
 
 import android.os.IInterface;
 
+import java.lang.reflect.Field;
+
 public final class DisplayManager {
     private final IInterface manager;
+    private final HiddenApi.MethodRef getDisplayInfoMethod;
+    private final HiddenApi.MethodRef getDisplayIdsMethod;
+
+    // fields of android.view.DisplayInfo, resolved on first call
+    private Field logicalWidthField;
+    private Field logicalHeightField;
+    private Field rotationField;
+    private Field layerStackField;
+    private Field flagsField;
 
     public DisplayManager(IInterface manager) {
         this.manager = manager;
+        Class<?> cls = manager.getClass();
+        getDisplayInfoMethod = HiddenApi.method(cls, "getDisplayInfo", int.class);
+        getDisplayIdsMethod = HiddenApi.method(cls, "getDisplayIds");
+    }
+
+    private synchronized void resolveDisplayInfoFields(Class<?> cls) throws NoSuchFieldException {
+        if (flagsField == null) {
+            logicalWidthField = cls.getDeclaredField("logicalWidth");
+            logicalHeightField = cls.getDeclaredField("logicalHeight");
+            rotationField = cls.getDeclaredField("rotation");
+            layerStackField = cls.getDeclaredField("layerStack");
+            // assigned last, it marks the fields as resolved
+            flagsField = cls.getDeclaredField("flags");
+        }
     }
 
     public DisplayInfo getDisplayInfo(int displayId) {
         try {
-            Object displayInfo = manager.getClass().getMethod("getDisplayInfo", int.class).invoke(manager, displayId);
+            Object displayInfo = getDisplayInfoMethod.get().invoke(manager, displayId);
             if (displayInfo == null) {
                 return null;
             }
-            Class<?> cls = displayInfo.getClass();
+            resolveDisplayInfoFields(displayInfo.getClass());
             // width and height already take the rotation into account
-            int width = cls.getDeclaredField("logicalWidth").getInt(displayInfo);
-            int height = cls.getDeclaredField("logicalHeight").getInt(displayInfo);
-            int rotation = cls.getDeclaredField("rotation").getInt(displayInfo);
-            int layerStack = cls.getDeclaredField("layerStack").getInt(displayInfo);
-            int flags = cls.getDeclaredField("flags").getInt(displayInfo);
+            int width = logicalWidthField.getInt(displayInfo);
+            int height = logicalHeightField.getInt(displayInfo);
+            int rotation = rotationField.getInt(displayInfo);
+            int layerStack = layerStackField.getInt(displayInfo);
+            int flags = flagsField.getInt(displayInfo);
             return new DisplayInfo(displayId, new Size(width, height), rotation, layerStack, flags);
         } catch (Exception e) {
             throw new AssertionError(e);
@@ -33,7 +58,7 @@ public final class DisplayManager {
 
     public int[] getDisplayIds() {
         try {
-            return (int[]) manager.getClass().getMethod("getDisplayIds").invoke(manager);
+            return (int[]) getDisplayIdsMethod.get().invoke(manager);
         } catch (Exception e) {
             throw new AssertionError(e);
         }
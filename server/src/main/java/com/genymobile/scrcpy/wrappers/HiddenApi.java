@@ -0,0 +1,202 @@
+package com.genymobile.scrcpy.wrappers;
+
+import com.genymobile.scrcpy.MetricsRegistry;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reflection layer for the hidden API.
+ * <p>
+ * Each hidden method is declared once as a {@link MethodRef}, resolved on first use (or at startup by {@link #resolveAll()}), and cached
+ * whether it is found or not. Every declared signature is recorded, so that the methods available on the device can be reported.
+ * <p>
+ * The signatures of a method on the several Android versions are declared as {@link #alternatives(MethodRef...) alternatives}: only one
+ * of them is expected to exist on a given device, so the method is reported missing only if none of them is available.
+ */
+public final class HiddenApi {
+
+    private static final MetricsRegistry.Histogram RESOLVE_LATENCY = MetricsRegistry.getInstance()
+            .histogram("scrcpy_hidden_api_resolve_latency_seconds", "Time to resolve a hidden API method by reflection");
+    private static final MetricsRegistry.Gauge MISSING_METHODS = MetricsRegistry.getInstance()
+            .gauge("scrcpy_hidden_api_missing_methods", "Resolved hidden API methods of which no signature is available on the device");
+
+    private static final List<MethodRef> REFS = new ArrayList<>();
+
+    /**
+     * The alternative signatures of a method.
+     */
+    private static final class Group {
+        private final int size;
+        private int missing; // the signatures resolved and not found
+
+        Group(int size) {
+            this.size = size;
+        }
+
+        synchronized void onMissing() {
+            ++missing;
+            if (missing == size) {
+                MISSING_METHODS.add(1);
+            }
+        }
+
+        synchronized boolean isMissing() {
+            return missing == size;
+        }
+    }
+
+    public static final class MethodRef {
+        private final Class<?> cls;
+        private final String name;
+        private final Class<?>[] parameterTypes;
+        private volatile Group group = new Group(1);
+
+        private volatile boolean resolved;
+        private Method method;
+        private NoSuchMethodException error;
+
+        private MethodRef(Class<?> cls, String name, Class<?>[] parameterTypes) {
+            this.cls = cls;
+            this.name = name;
+            this.parameterTypes = parameterTypes;
+        }
+
+        /**
+         * Return the method, resolved on first call.
+         *
+         * @throws NoSuchMethodException if the method does not exist on this device (the same exception is thrown on every call)
+         */
+        public Method get() throws NoSuchMethodException {
+            if (!resolved) {
+                resolve();
+            }
+            if (method == null) {
+                throw error;
+            }
+            return method;
+        }
+
+        public boolean isAvailable() {
+            if (!resolved) {
+                resolve();
+            }
+            return method != null;
+        }
+
+        private synchronized void resolve() {
+            if (resolved) {
+                return;
+            }
+            long start = System.nanoTime();
+            try {
+                method = cls.getMethod(name, parameterTypes);
+            } catch (NoSuchMethodException e) {
+                error = e;
+                group.onMissing();
+            }
+            RESOLVE_LATENCY.recordSince(start);
+            resolved = true;
+        }
+
+        public String getSignature() {
+            StringBuilder builder = new StringBuilder(cls.getName()).append('.').append(name).append('(');
+            for (int i = 0; i < parameterTypes.length; ++i) {
+                if (i != 0) {
+                    builder.append(", ");
+                }
+                builder.append(parameterTypes[i].getName());
+            }
+            return builder.append(')').toString();
+        }
+    }
+
+    private HiddenApi() {
+        // not instantiable
+    }
+
+    /**
+     * Declare a hidden method.
+     * <p>
+     * It is not resolved immediately, so that declaring the alternative signatures of the several Android versions is cheap.
+     */
+    public static MethodRef method(Class<?> cls, String name, Class<?>... parameterTypes) {
+        MethodRef ref = new MethodRef(cls, name, parameterTypes);
+        synchronized (REFS) {
+            REFS.add(ref);
+        }
+        return ref;
+    }
+
+    /**
+     * Declare the signatures of a same method on the several Android versions, before they are resolved.
+     * <p>
+     * A signature not available on the device is then only reported missing if none of the alternatives is available.
+     */
+    public static void alternatives(MethodRef... refs) {
+        Group group = new Group(refs.length);
+        for (MethodRef ref : refs) {
+            ref.group = group;
+        }
+    }
+
+    /**
+     * Return the first available method among alternative signatures.
+     *
+     * @throws NoSuchMethodException if none is available
+     */
+    public static Method firstAvailable(MethodRef... refs) throws NoSuchMethodException {
+        for (MethodRef ref : refs) {
+            if (ref.isAvailable()) {
+                return ref.get();
+            }
+        }
+        throw new NoSuchMethodException(refs[refs.length - 1].getSignature());
+    }
+
+    /**
+     * Resolve all the methods declared so far, so that no resolution happens later on a critical path.
+     */
+    public static void resolveAll() {
+        for (MethodRef ref : getRefs()) {
+            ref.isAvailable();
+        }
+    }
+
+    /**
+     * Report the availability of the methods declared so far (resolving them if necessary).
+     *
+     * @return one line per signature, "unused" for the signatures replaced by an available alternative
+     */
+    public static String getReport() {
+        List<MethodRef> refs = getRefs();
+        for (MethodRef ref : refs) {
+            // so that the availability of all the alternatives is known
+            ref.isAvailable();
+        }
+        StringBuilder builder = new StringBuilder();
+        for (MethodRef ref : refs) {
+            String status;
+            if (ref.isAvailable()) {
+                status = "available ";
+            } else if (ref.group.isMissing()) {
+                status = "missing   ";
+            } else {
+                status = "unused    ";
+            }
+            builder.append(status).append(ref.getSignature()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    static long getMissingMethodCount() {
+        return MISSING_METHODS.get();
+    }
+
+    private static List<MethodRef> getRefs() {
+        synchronized (REFS) {
+            return new ArrayList<>(REFS);
+        }
+    }
+}
@@ -14,25 +14,19 @@ public final class InputManager {
     public static final int INJECT_INPUT_EVENT_MODE_WAIT_FOR_RESULT = 1;
     public static final int INJECT_INPUT_EVENT_MODE_WAIT_FOR_FINISH = 2;
 
-    private final IInterface manager;
-    private Method injectInputEventMethod;
+    private static final HiddenApi.MethodRef SET_DISPLAY_ID_METHOD = HiddenApi.method(InputEvent.class, "setDisplayId", int.class);
 
-    private static Method setDisplayIdMethod;
+    private final IInterface manager;
+    private final HiddenApi.MethodRef injectInputEventMethod;
 
     public InputManager(IInterface manager) {
         this.manager = manager;
-    }
-
-    private Method getInjectInputEventMethod() throws NoSuchMethodException {
-        if (injectInputEventMethod == null) {
-            injectInputEventMethod = manager.getClass().getMethod("injectInputEvent", InputEvent.class, int.class);
-        }
-        return injectInputEventMethod;
+        injectInputEventMethod = HiddenApi.method(manager.getClass(), "injectInputEvent", InputEvent.class, int.class);
     }
 
     public boolean injectInputEvent(InputEvent inputEvent, int mode) {
         try {
-            Method method = getInjectInputEventMethod();
+            Method method = injectInputEventMethod.get();
             return (boolean) method.invoke(manager, inputEvent, mode);
         } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
             Ln.e("Could not invoke method", e);
@@ -40,16 +34,9 @@ public final class InputManager {
         }
     }
 
-    private static Method getSetDisplayIdMethod() throws NoSuchMethodException {
-        if (setDisplayIdMethod == null) {
-            setDisplayIdMethod = InputEvent.class.getMethod("setDisplayId", int.class);
-        }
-        return setDisplayIdMethod;
-    }
-
     public static boolean setDisplayId(InputEvent inputEvent, int displayId) {
         try {
-            Method method = getSetDisplayIdMethod();
+            Method method = SET_DISPLAY_ID_METHOD.get();
             method.invoke(inputEvent, displayId);
             return true;
         } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
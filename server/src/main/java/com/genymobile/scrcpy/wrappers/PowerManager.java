@@ -11,24 +11,18 @@ import java.lang.reflect.Method;
 
 public final class PowerManager {
     private final IInterface manager;
-    private Method isScreenOnMethod;
+    private final HiddenApi.MethodRef isScreenOnMethod;
 
     public PowerManager(IInterface manager) {
         this.manager = manager;
-    }
-
-    private Method getIsScreenOnMethod() throws NoSuchMethodException {
-        if (isScreenOnMethod == null) {
-            @SuppressLint("ObsoleteSdkInt") // we may lower minSdkVersion in the future
-                    String methodName = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT_WATCH ? "isInteractive" : "isScreenOn";
-            isScreenOnMethod = manager.getClass().getMethod(methodName);
-        }
-        return isScreenOnMethod;
+        @SuppressLint("ObsoleteSdkInt") // we may lower minSdkVersion in the future
+                String methodName = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT_WATCH ? "isInteractive" : "isScreenOn";
+        isScreenOnMethod = HiddenApi.method(manager.getClass(), methodName);
     }
 
     public boolean isScreenOn() {
         try {
-            Method method = getIsScreenOnMethod();
+            Method method = isScreenOnMethod.get();
             return (boolean) method.invoke(manager);
         } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
             Ln.e("Could not invoke method", e);
@@ -40,42 +40,42 @@ public final class ServiceManager {
         }
     }
 
-    public WindowManager getWindowManager() {
+    public synchronized WindowManager getWindowManager() {
         if (windowManager == null) {
             windowManager = new WindowManager(getService("window", "android.view.IWindowManager"));
         }
         return windowManager;
     }
 
-    public DisplayManager getDisplayManager() {
+    public synchronized DisplayManager getDisplayManager() {
         if (displayManager == null) {
             displayManager = new DisplayManager(getService("display", "android.hardware.display.IDisplayManager"));
         }
         return displayManager;
     }
 
-    public InputManager getInputManager() {
+    public synchronized InputManager getInputManager() {
         if (inputManager == null) {
             inputManager = new InputManager(getService("input", "android.hardware.input.IInputManager"));
         }
         return inputManager;
     }
 
-    public PowerManager getPowerManager() {
+    public synchronized PowerManager getPowerManager() {
         if (powerManager == null) {
             powerManager = new PowerManager(getService("power", "android.os.IPowerManager"));
         }
         return powerManager;
     }
 
-    public StatusBarManager getStatusBarManager() {
+    public synchronized StatusBarManager getStatusBarManager() {
         if (statusBarManager == null) {
             statusBarManager = new StatusBarManager(getService("statusbar", "com.android.internal.statusbar.IStatusBarService"));
         }
         return statusBarManager;
     }
 
-    public ClipboardManager getClipboardManager() {
+    public synchronized ClipboardManager getClipboardManager() {
         if (clipboardManager == null) {
             IInterface clipboard = getService("clipboard", "android.content.IClipboard");
             if (clipboard == null) {
@@ -89,7 +89,7 @@ public final class ServiceManager {
         return clipboardManager;
     }
 
-    public ActivityManager getActivityManager() {
+    public synchronized ActivityManager getActivityManager() {
         if (activityManager == null) {
             try {
                 // On old Android versions, the ActivityManager is not exposed via AIDL,
@@ -10,46 +10,26 @@ import java.lang.reflect.Method;
 public class StatusBarManager {
 
     private final IInterface manager;
-    private Method expandNotificationsPanelMethod;
-    private Method expandSettingsPanelMethod;
-    private boolean expandSettingsPanelMethodNewVersion = true;
-    private Method collapsePanelsMethod;
+    private final HiddenApi.MethodRef expandNotificationsPanelMethod;
+    // Since Android 7: https://android.googlesource.com/platform/frameworks/base.git/+/a9927325eda025504d59bb6594fee8e240d95b01%5E%21/
+    private final HiddenApi.MethodRef expandSettingsPanelWithStringMethod;
+    // old version
+    private final HiddenApi.MethodRef expandSettingsPanelMethod;
+    private final HiddenApi.MethodRef collapsePanelsMethod;
 
     public StatusBarManager(IInterface manager) {
         this.manager = manager;
-    }
-
-    private Method getExpandNotificationsPanelMethod() throws NoSuchMethodException {
-        if (expandNotificationsPanelMethod == null) {
-            expandNotificationsPanelMethod = manager.getClass().getMethod("expandNotificationsPanel");
-        }
-        return expandNotificationsPanelMethod;
-    }
-
-    private Method getExpandSettingsPanel() throws NoSuchMethodException {
-        if (expandSettingsPanelMethod == null) {
-            try {
-                // Since Android 7: https://android.googlesource.com/platform/frameworks/base.git/+/a9927325eda025504d59bb6594fee8e240d95b01%5E%21/
-                expandSettingsPanelMethod = manager.getClass().getMethod("expandSettingsPanel", String.class);
-            } catch (NoSuchMethodException e) {
-                // old version
-                expandSettingsPanelMethod = manager.getClass().getMethod("expandSettingsPanel");
-                expandSettingsPanelMethodNewVersion = false;
-            }
-        }
-        return expandSettingsPanelMethod;
-    }
-
-    private Method getCollapsePanelsMethod() throws NoSuchMethodException {
-        if (collapsePanelsMethod == null) {
-            collapsePanelsMethod = manager.getClass().getMethod("collapsePanels");
-        }
-        return collapsePanelsMethod;
+        Class<?> cls = manager.getClass();
+        expandNotificationsPanelMethod = HiddenApi.method(cls, "expandNotificationsPanel");
+        expandSettingsPanelWithStringMethod = HiddenApi.method(cls, "expandSettingsPanel", String.class);
+        expandSettingsPanelMethod = HiddenApi.method(cls, "expandSettingsPanel");
+        HiddenApi.alternatives(expandSettingsPanelWithStringMethod, expandSettingsPanelMethod);
+        collapsePanelsMethod = HiddenApi.method(cls, "collapsePanels");
     }
 
     public void expandNotificationsPanel() {
         try {
-            Method method = getExpandNotificationsPanelMethod();
+            Method method = expandNotificationsPanelMethod.get();
             method.invoke(manager);
         } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
             Ln.e("Could not invoke method", e);
@@ -58,13 +38,12 @@ public class StatusBarManager {
 
     public void expandSettingsPanel() {
         try {
-            Method method = getExpandSettingsPanel();
-            if (expandSettingsPanelMethodNewVersion) {
+            if (expandSettingsPanelWithStringMethod.isAvailable()) {
                 // new version
-                method.invoke(manager, (Object) null);
+                expandSettingsPanelWithStringMethod.get().invoke(manager, (Object) null);
             } else {
                 // old version
-                method.invoke(manager);
+                expandSettingsPanelMethod.get().invoke(manager);
             }
         } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
             Ln.e("Could not invoke method", e);
@@ -73,7 +52,7 @@ public class StatusBarManager {
 
     public void collapsePanels() {
         try {
-            Method method = getCollapsePanelsMethod();
+            Method method = collapsePanelsMethod.get();
             method.invoke(manager);
         } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
             Ln.e("Could not invoke method", e);
@@ -28,16 +28,35 @@ public final class SurfaceControl {
         }
     }
 
-    private static Method getBuiltInDisplayMethod;
-    private static Method setDisplayPowerModeMethod;
+    private static final HiddenApi.MethodRef OPEN_TRANSACTION = HiddenApi.method(CLASS, "openTransaction");
+    private static final HiddenApi.MethodRef CLOSE_TRANSACTION = HiddenApi.method(CLASS, "closeTransaction");
+    private static final HiddenApi.MethodRef SET_DISPLAY_PROJECTION = HiddenApi
+            .method(CLASS, "setDisplayProjection", IBinder.class, int.class, Rect.class, Rect.class);
+    private static final HiddenApi.MethodRef SET_DISPLAY_LAYER_STACK = HiddenApi.method(CLASS, "setDisplayLayerStack", IBinder.class, int.class);
+    private static final HiddenApi.MethodRef SET_DISPLAY_SURFACE = HiddenApi.method(CLASS, "setDisplaySurface", IBinder.class, Surface.class);
+    private static final HiddenApi.MethodRef CREATE_DISPLAY = HiddenApi.method(CLASS, "createDisplay", String.class, boolean.class);
+    private static final HiddenApi.MethodRef DESTROY_DISPLAY = HiddenApi.method(CLASS, "destroyDisplay", IBinder.class);
+    // the method signature has changed in Android Q
+    // <https://github.com/Genymobile/scrcpy/issues/586>
+    private static final HiddenApi.MethodRef GET_BUILT_IN_DISPLAY = Build.VERSION.SDK_INT < Build.VERSION_CODES.Q
+            ? HiddenApi.method(CLASS, "getBuiltInDisplay", int.class)
+            : HiddenApi.method(CLASS, "getInternalDisplayToken");
+    private static final HiddenApi.MethodRef SET_DISPLAY_POWER_MODE = HiddenApi.method(CLASS, "setDisplayPowerMode", IBinder.class, int.class);
 
     private SurfaceControl() {
         // only static methods
     }
 
+    /**
+     * Load this class, so that its methods are declared before {@link HiddenApi#resolveAll()}.
+     */
+    public static void init() {
+        // the methods are declared by the static initializer
+    }
+
     public static void openTransaction() {
         try {
-            CLASS.getMethod("openTransaction").invoke(null);
+            OPEN_TRANSACTION.get().invoke(null);
         } catch (Exception e) {
             throw new AssertionError(e);
         }
@@ -45,7 +64,7 @@ public final class SurfaceControl {
 
     public static void closeTransaction() {
         try {
-            CLASS.getMethod("closeTransaction").invoke(null);
+            CLOSE_TRANSACTION.get().invoke(null);
         } catch (Exception e) {
             throw new AssertionError(e);
         }
@@ -53,8 +72,7 @@ public final class SurfaceControl {
 
     public static void setDisplayProjection(IBinder displayToken, int orientation, Rect layerStackRect, Rect displayRect) {
         try {
-            CLASS.getMethod("setDisplayProjection", IBinder.class, int.class, Rect.class, Rect.class)
-                    .invoke(null, displayToken, orientation, layerStackRect, displayRect);
+            SET_DISPLAY_PROJECTION.get().invoke(null, displayToken, orientation, layerStackRect, displayRect);
         } catch (Exception e) {
             throw new AssertionError(e);
         }
@@ -62,7 +80,7 @@ public final class SurfaceControl {
 
     public static void setDisplayLayerStack(IBinder displayToken, int layerStack) {
         try {
-            CLASS.getMethod("setDisplayLayerStack", IBinder.class, int.class).invoke(null, displayToken, layerStack);
+            SET_DISPLAY_LAYER_STACK.get().invoke(null, displayToken, layerStack);
         } catch (Exception e) {
             throw new AssertionError(e);
         }
@@ -70,7 +88,7 @@ public final class SurfaceControl {
 
     public static void setDisplaySurface(IBinder displayToken, Surface surface) {
         try {
-            CLASS.getMethod("setDisplaySurface", IBinder.class, Surface.class).invoke(null, displayToken, surface);
+            SET_DISPLAY_SURFACE.get().invoke(null, displayToken, surface);
         } catch (Exception e) {
             throw new AssertionError(e);
         }
@@ -78,29 +96,16 @@ public final class SurfaceControl {
 
     public static IBinder createDisplay(String name, boolean secure) {
         try {
-            return (IBinder) CLASS.getMethod("createDisplay", String.class, boolean.class).invoke(null, name, secure);
+            return (IBinder) CREATE_DISPLAY.get().invoke(null, name, secure);
         } catch (Exception e) {
             throw new AssertionError(e);
         }
     }
 
-    private static Method getGetBuiltInDisplayMethod() throws NoSuchMethodException {
-        if (getBuiltInDisplayMethod == null) {
-            // the method signature has changed in Android Q
-            // <https://github.com/Genymobile/scrcpy/issues/586>
-            if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
-                getBuiltInDisplayMethod = CLASS.getMethod("getBuiltInDisplay", int.class);
-            } else {
-                getBuiltInDisplayMethod = CLASS.getMethod("getInternalDisplayToken");
-            }
-        }
-        return getBuiltInDisplayMethod;
-    }
-
     public static IBinder getBuiltInDisplay() {
 
         try {
-            Method method = getGetBuiltInDisplayMethod();
+            Method method = GET_BUILT_IN_DISPLAY.get();
             if (Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
                 // call getBuiltInDisplay(0)
                 return (IBinder) method.invoke(null, 0);
@@ -114,16 +119,9 @@ public final class SurfaceControl {
         }
     }
 
-    private static Method getSetDisplayPowerModeMethod() throws NoSuchMethodException {
-        if (setDisplayPowerModeMethod == null) {
-            setDisplayPowerModeMethod = CLASS.getMethod("setDisplayPowerMode", IBinder.class, int.class);
-        }
-        return setDisplayPowerModeMethod;
-    }
-
     public static boolean setDisplayPowerMode(IBinder displayToken, int mode) {
         try {
-            Method method = getSetDisplayPowerModeMethod();
+            Method method = SET_DISPLAY_POWER_MODE.get();
             method.invoke(null, displayToken, mode);
             return true;
         } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
@@ -134,7 +132,7 @@ public final class SurfaceControl {
 
     public static void destroyDisplay(IBinder displayToken) {
         try {
-            CLASS.getMethod("destroyDisplay", IBinder.class).invoke(null, displayToken);
+            DESTROY_DISPLAY.get().invoke(null, displayToken);
         } catch (Exception e) {
             throw new AssertionError(e);
         }
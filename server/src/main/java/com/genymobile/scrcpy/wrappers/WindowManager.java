@@ -10,62 +10,39 @@ import java.lang.reflect.Method;
 
 public final class WindowManager {
     private final IInterface manager;
-    private Method getRotationMethod;
-    private Method freezeRotationMethod;
-    private Method isRotationFrozenMethod;
-    private Method thawRotationMethod;
-    private Method removeRotationWatcherMethod;
+    // method changed since this commit:
+    // https://android.googlesource.com/platform/frameworks/base/+/8ee7285128c3843401d4c4d0412cd66e86ba49e3%5E%21/#F2
+    private final HiddenApi.MethodRef getDefaultDisplayRotationMethod;
+    // old version
+    private final HiddenApi.MethodRef getRotationMethod;
+    private final HiddenApi.MethodRef freezeRotationMethod;
+    private final HiddenApi.MethodRef isRotationFrozenMethod;
+    private final HiddenApi.MethodRef thawRotationMethod;
+    // display parameter added since this commit:
+    // https://android.googlesource.com/platform/frameworks/base/+/35fa3c26adcb5f6577849fd0df5228b1f67cf2c6%5E%21/#F1
+    private final HiddenApi.MethodRef watchRotationWithDisplayMethod;
+    // old version
+    private final HiddenApi.MethodRef watchRotationMethod;
+    private final HiddenApi.MethodRef removeRotationWatcherMethod;
 
     public WindowManager(IInterface manager) {
         this.manager = manager;
-    }
-
-    private Method getGetRotationMethod() throws NoSuchMethodException {
-        if (getRotationMethod == null) {
-            Class<?> cls = manager.getClass();
-            try {
-                // method changed since this commit:
-                // https://android.googlesource.com/platform/frameworks/base/+/8ee7285128c3843401d4c4d0412cd66e86ba49e3%5E%21/#F2
-                getRotationMethod = cls.getMethod("getDefaultDisplayRotation");
-            } catch (NoSuchMethodException e) {
-                // old version
-                getRotationMethod = cls.getMethod("getRotation");
-            }
-        }
-        return getRotationMethod;
-    }
-
-    private Method getFreezeRotationMethod() throws NoSuchMethodException {
-        if (freezeRotationMethod == null) {
-            freezeRotationMethod = manager.getClass().getMethod("freezeRotation", int.class);
-        }
-        return freezeRotationMethod;
-    }
-
-    private Method getIsRotationFrozenMethod() throws NoSuchMethodException {
-        if (isRotationFrozenMethod == null) {
-            isRotationFrozenMethod = manager.getClass().getMethod("isRotationFrozen");
-        }
-        return isRotationFrozenMethod;
-    }
-
-    private Method getThawRotationMethod() throws NoSuchMethodException {
-        if (thawRotationMethod == null) {
-            thawRotationMethod = manager.getClass().getMethod("thawRotation");
-        }
-        return thawRotationMethod;
-    }
-
-    private Method getRemoveRotationWatcherMethod() throws NoSuchMethodException {
-        if (removeRotationWatcherMethod == null) {
-            removeRotationWatcherMethod = manager.getClass().getMethod("removeRotationWatcher");
-        }
-        return removeRotationWatcherMethod;
+        Class<?> cls = manager.getClass();
+        getDefaultDisplayRotationMethod = HiddenApi.method(cls, "getDefaultDisplayRotation");
+        getRotationMethod = HiddenApi.method(cls, "getRotation");
+        freezeRotationMethod = HiddenApi.method(cls, "freezeRotation", int.class);
+        isRotationFrozenMethod = HiddenApi.method(cls, "isRotationFrozen");
+        thawRotationMethod = HiddenApi.method(cls, "thawRotation");
+        watchRotationWithDisplayMethod = HiddenApi.method(cls, "watchRotation", IRotationWatcher.class, int.class);
+        watchRotationMethod = HiddenApi.method(cls, "watchRotation", IRotationWatcher.class);
+        HiddenApi.alternatives(getDefaultDisplayRotationMethod, getRotationMethod);
+        HiddenApi.alternatives(watchRotationWithDisplayMethod, watchRotationMethod);
+        removeRotationWatcherMethod = HiddenApi.method(cls, "removeRotationWatcher", IRotationWatcher.class);
     }
 
     public int getRotation() {
         try {
-            Method method = getGetRotationMethod();
+            Method method = HiddenApi.firstAvailable(getDefaultDisplayRotationMethod, getRotationMethod);
             return (int) method.invoke(manager);
         } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
             Ln.e("Could not invoke method", e);
@@ -75,7 +52,7 @@ public final class WindowManager {
 
     public void freezeRotation(int rotation) {
         try {
-            Method method = getFreezeRotationMethod();
+            Method method = freezeRotationMethod.get();
             method.invoke(manager, rotation);
         } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
             Ln.e("Could not invoke method", e);
@@ -84,7 +61,7 @@ public final class WindowManager {
 
     public boolean isRotationFrozen() {
         try {
-            Method method = getIsRotationFrozenMethod();
+            Method method = isRotationFrozenMethod.get();
             return (boolean) method.invoke(manager);
         } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
             Ln.e("Could not invoke method", e);
@@ -94,7 +71,7 @@ public final class WindowManager {
 
     public void thawRotation() {
         try {
-            Method method = getThawRotationMethod();
+            Method method = thawRotationMethod.get();
             method.invoke(manager);
         } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
             Ln.e("Could not invoke method", e);
@@ -103,14 +80,10 @@ public final class WindowManager {
 
     public void registerRotationWatcher(IRotationWatcher rotationWatcher, int displayId) {
         try {
-            Class<?> cls = manager.getClass();
-            try {
-                // display parameter added since this commit:
-                // https://android.googlesource.com/platform/frameworks/base/+/35fa3c26adcb5f6577849fd0df5228b1f67cf2c6%5E%21/#F1
-                cls.getMethod("watchRotation", IRotationWatcher.class, int.class).invoke(manager, rotationWatcher, displayId);
-            } catch (NoSuchMethodException e) {
-                // old version
-                cls.getMethod("watchRotation", IRotationWatcher.class).invoke(manager, rotationWatcher);
+            if (watchRotationWithDisplayMethod.isAvailable()) {
+                watchRotationWithDisplayMethod.get().invoke(manager, rotationWatcher, displayId);
+            } else {
+                watchRotationMethod.get().invoke(manager, rotationWatcher);
             }
         } catch (Exception e) {
             throw new AssertionError(e);
@@ -119,7 +92,7 @@ public final class WindowManager {
 
     public void unregisterRotationWatcher(IRotationWatcher rotationWatcher) {
         try {
-            Method method = getRemoveRotationWatcherMethod();
+            Method method = removeRotationWatcherMethod.get();
             method.invoke(manager, rotationWatcher);
         } catch (InvocationTargetException | IllegalAccessException | NoSuchMethodException e) {
             Ln.e("Could not invoke method", e);
@@ -0,0 +1,79 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class AimdBitratePolicyTest {
+
+    private static final int MAX_BIT_RATE = 8_000_000;
+
+    private static BitratePolicy.ClientStats idle() {
+        return new BitratePolicy.ClientStats(0, 0, 0, 20, 20);
+    }
+
+    private static BitratePolicy.ClientStats backlogged() {
+        return new BitratePolicy.ClientStats(1_000_000, 10, 0, 20, 20);
+    }
+
+    @Test
+    public void testIncreaseWhenIdle() {
+        BitratePolicy policy = new AimdBitratePolicy();
+        int bitRate = policy.computeBitRate(4_000_000, MAX_BIT_RATE, Collections.singletonList(idle()));
+        Assert.assertEquals(4_400_000, bitRate);
+    }
+
+    @Test
+    public void testNeverExceedMax() {
+        BitratePolicy policy = new AimdBitratePolicy();
+        int bitRate = policy.computeBitRate(MAX_BIT_RATE, MAX_BIT_RATE, Collections.singletonList(idle()));
+        Assert.assertEquals(MAX_BIT_RATE, bitRate);
+    }
+
+    @Test
+    public void testDecreaseOnBacklog() {
+        BitratePolicy policy = new AimdBitratePolicy();
+        int bitRate = policy.computeBitRate(MAX_BIT_RATE, MAX_BIT_RATE, Collections.singletonList(backlogged()));
+        Assert.assertEquals(6_000_000, bitRate);
+    }
+
+    @Test
+    public void testDecreaseOnDroppedFrames() {
+        BitratePolicy policy = new AimdBitratePolicy();
+        BitratePolicy.ClientStats stats = new BitratePolicy.ClientStats(0, 0, 3, 20, 20);
+        int bitRate = policy.computeBitRate(MAX_BIT_RATE, MAX_BIT_RATE, Collections.singletonList(stats));
+        Assert.assertEquals(6_000_000, bitRate);
+    }
+
+    @Test
+    public void testDecreaseOnRttIncrease() {
+        BitratePolicy policy = new AimdBitratePolicy();
+        BitratePolicy.ClientStats stats = new BitratePolicy.ClientStats(0, 0, 0, 400, 20);
+        int bitRate = policy.computeBitRate(MAX_BIT_RATE, MAX_BIT_RATE, Collections.singletonList(stats));
+        Assert.assertEquals(6_000_000, bitRate);
+    }
+
+    @Test
+    public void testMinorityOfSlowClients() {
+        BitratePolicy policy = new AimdBitratePolicy();
+        List<BitratePolicy.ClientStats> stats = Arrays.asList(idle(), idle(), backlogged());
+        int bitRate = policy.computeBitRate(MAX_BIT_RATE, MAX_BIT_RATE, stats);
+        Assert.assertEquals(MAX_BIT_RATE, bitRate);
+    }
+
+    @Test
+    public void testMinBitRate() {
+        BitratePolicy policy = new AimdBitratePolicy();
+        List<BitratePolicy.ClientStats> stats = new ArrayList<>();
+        stats.add(backlogged());
+        int bitRate = MAX_BIT_RATE;
+        for (int i = 0; i < 100; ++i) {
+            bitRate = policy.computeBitRate(bitRate, MAX_BIT_RATE, stats);
+        }
+        Assert.assertEquals(250_000, bitRate);
+    }
+}
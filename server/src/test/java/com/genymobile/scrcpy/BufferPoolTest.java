@@ -0,0 +1,62 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testSizeClasses() {
+        BufferPool pool = new BufferPool(1024, 8192, 4);
+        Assert.assertEquals(1024, pool.acquire(1).length);
+        Assert.assertEquals(1024, pool.acquire(1024).length);
+        Assert.assertEquals(2048, pool.acquire(1025).length);
+        Assert.assertEquals(8192, pool.acquire(8192).length);
+        // too big to be pooled
+        Assert.assertEquals(8193, pool.acquire(8193).length);
+    }
+
+    @Test
+    public void testReuse() {
+        BufferPool pool = new BufferPool(1024, 8192, 4);
+        byte[] array = pool.acquire(3000);
+        Assert.assertEquals(0, pool.getPooledCount(3000));
+
+        pool.release(array);
+        Assert.assertEquals(1, pool.getPooledCount(3000));
+        // any size of the same class
+        Assert.assertSame(array, pool.acquire(2049));
+        Assert.assertEquals(0, pool.getPooledCount(3000));
+    }
+
+    @Test
+    public void testBoundedClass() {
+        BufferPool pool = new BufferPool(1024, 8192, 2);
+        byte[] a1 = pool.acquire(1024);
+        byte[] a2 = pool.acquire(1024);
+        byte[] a3 = pool.acquire(1024);
+        pool.release(a1);
+        pool.release(a2);
+        pool.release(a3);
+        Assert.assertEquals(2, pool.getPooledCount(1024));
+    }
+
+    @Test
+    public void testForeignArraysNotPooled() {
+        BufferPool pool = new BufferPool(1024, 8192, 4);
+        pool.release(new byte[1000]);
+        pool.release(new byte[512]);
+        pool.release(new byte[16384]);
+        Assert.assertEquals(0, pool.getPooledCount(1024));
+        Assert.assertEquals(0, pool.getPooledCount(512));
+    }
+
+    @Test
+    public void testCeilLog2() {
+        Assert.assertEquals(0, BufferPool.ceilLog2(1));
+        Assert.assertEquals(1, BufferPool.ceilLog2(2));
+        Assert.assertEquals(2, BufferPool.ceilLog2(3));
+        Assert.assertEquals(10, BufferPool.ceilLog2(1024));
+        Assert.assertEquals(11, BufferPool.ceilLog2(1025));
+    }
+}
@@ -0,0 +1,124 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+public class ClientIdAllocatorTest {
+
+    @Test
+    public void testAcquireRelease() {
+        ClientIdAllocator allocator = new ClientIdAllocator(3);
+
+        int id1 = allocator.acquire();
+        int id2 = allocator.acquire();
+        int id3 = allocator.acquire();
+        Assert.assertTrue(id1 > 0 && id2 > 0 && id3 > 0);
+        Assert.assertEquals(3, new HashSet<>(Arrays.asList(id1, id2, id3)).size());
+        Assert.assertEquals(3, allocator.getUsedCount());
+        Assert.assertTrue(allocator.isInUse(id2));
+
+        Assert.assertTrue(allocator.release(id2));
+        Assert.assertFalse(allocator.isInUse(id2));
+        Assert.assertEquals(2, allocator.getUsedCount());
+    }
+
+    @Test
+    public void testExhausted() {
+        ClientIdAllocator allocator = new ClientIdAllocator(2);
+        int id1 = allocator.acquire();
+        allocator.acquire();
+        Assert.assertEquals(ClientIdAllocator.NO_ID, allocator.acquire());
+
+        allocator.release(id1);
+        Assert.assertNotEquals(ClientIdAllocator.NO_ID, allocator.acquire());
+        Assert.assertEquals(ClientIdAllocator.NO_ID, allocator.acquire());
+    }
+
+    @Test
+    public void testNoImmediateReuse() {
+        ClientIdAllocator allocator = new ClientIdAllocator(1);
+        Set<Integer> ids = new HashSet<>();
+        // a single slot, reused with a new generation every time
+        for (int i = 0; i < 1000; ++i) {
+            int id = allocator.acquire();
+            Assert.assertTrue("Id reused: " + id, ids.add(id));
+            Assert.assertTrue(allocator.release(id));
+        }
+    }
+
+    @Test
+    public void testReleasedSlotsReusedInOrder() {
+        ClientIdAllocator allocator = new ClientIdAllocator(3);
+        int id1 = allocator.acquire();
+        int id2 = allocator.acquire();
+        int id3 = allocator.acquire();
+        allocator.release(id2);
+        allocator.release(id1);
+        allocator.release(id3);
+
+        int mask = (1 << ClientIdAllocator.SLOT_BITS) - 1;
+        // the slot released first is reused first
+        Assert.assertEquals(id2 & mask, allocator.acquire() & mask);
+        Assert.assertEquals(id1 & mask, allocator.acquire() & mask);
+        Assert.assertEquals(id3 & mask, allocator.acquire() & mask);
+    }
+
+    @Test
+    public void testStaleRelease() {
+        ClientIdAllocator allocator = new ClientIdAllocator(1);
+        int oldId = allocator.acquire();
+        Assert.assertTrue(allocator.release(oldId));
+        Assert.assertFalse(allocator.release(oldId));
+
+        int newId = allocator.acquire();
+        // the release of the former client must not free the slot of the new one
+        Assert.assertFalse(allocator.release(oldId));
+        Assert.assertTrue(allocator.isInUse(newId));
+
+        Assert.assertFalse(allocator.release(0));
+        Assert.assertFalse(allocator.release(-1));
+        Assert.assertFalse(allocator.release(Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testGenerationWrapsAround() {
+        ClientIdAllocator allocator = new ClientIdAllocator(1);
+        int first = allocator.acquire();
+        allocator.release(first);
+        int generations = 1 << (Integer.SIZE - 1 - ClientIdAllocator.SLOT_BITS);
+        for (int i = 1; i < generations; ++i) {
+            int id = allocator.acquire();
+            Assert.assertTrue(id > 0);
+            Assert.assertNotEquals(first, id);
+            allocator.release(id);
+        }
+        // all the generations have been used
+        Assert.assertEquals(first, allocator.acquire());
+    }
+
+    @Test
+    public void testGrowBeyondShortRange() {
+        ClientIdAllocator allocator = new ClientIdAllocator();
+        Set<Integer> ids = new HashSet<>();
+        int count = Short.MAX_VALUE + 1000;
+        for (int i = 0; i < count; ++i) {
+            int id = allocator.acquire();
+            Assert.assertTrue(id > 0);
+            Assert.assertTrue(ids.add(id));
+        }
+        Assert.assertEquals(count, allocator.getUsedCount());
+        for (int id : ids) {
+            Assert.assertTrue(allocator.release(id));
+        }
+        Assert.assertEquals(0, allocator.getUsedCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidCapacity() {
+        new ClientIdAllocator(0);
+    }
+}
@@ -0,0 +1,205 @@
+package com.genymobile.scrcpy;
+
+import android.media.MediaCodec;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ClientSendQueueTest {
+
+    private static final int CONFIG = MediaCodec.BUFFER_FLAG_CODEC_CONFIG;
+    private static final int KEY_FRAME = MediaCodec.BUFFER_FLAG_KEY_FRAME;
+
+    // the messages are only written by the test
+    private static final class FakeTransport implements ClientSendQueue.Transport {
+        private final List<ByteBuffer> queued = new ArrayList<>();
+        private boolean open = true;
+
+        @Override
+        public boolean isOpen() {
+            return open;
+        }
+
+        @Override
+        public void write(ByteBuffer data) {
+            queued.add(data);
+        }
+
+        @Override
+        public boolean isQueued(ByteBuffer data) {
+            for (ByteBuffer buffer : queued) {
+                if (buffer == data) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public void sendPing() {
+            // not measured
+        }
+
+        void writeAll() {
+            for (ByteBuffer buffer : queued) {
+                buffer.position(buffer.limit());
+            }
+            queued.clear();
+        }
+    }
+
+    private final SharedFrame.Pool pool = new SharedFrame.Pool();
+
+    private boolean offer(ClientSendQueue queue, int size, int flags) {
+        SharedFrame frame = pool.acquire(null, ByteBuffer.allocate(size), flags);
+        try {
+            return queue.offer(frame);
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test
+    public void testWaitForFirstKeyFrame() {
+        FakeTransport transport = new FakeTransport();
+        ClientSendQueue queue = new ClientSendQueue(transport, 1000, 10);
+
+        // codec config packets are never dropped
+        Assert.assertTrue(offer(queue, 10, CONFIG));
+        Assert.assertFalse(offer(queue, 10, 0));
+        Assert.assertTrue(queue.isWaitingForKeyFrame());
+        Assert.assertTrue(offer(queue, 10, KEY_FRAME));
+        Assert.assertTrue(offer(queue, 10, 0));
+        Assert.assertFalse(queue.isWaitingForKeyFrame());
+
+        // not dropped because of congestion
+        Assert.assertEquals(0, queue.getDroppedFrames());
+        Assert.assertEquals(3, transport.queued.size());
+    }
+
+    @Test
+    public void testFrameLimit() {
+        FakeTransport transport = new FakeTransport();
+        ClientSendQueue queue = new ClientSendQueue(transport, 1000, 3);
+
+        Assert.assertTrue(offer(queue, 10, KEY_FRAME));
+        Assert.assertTrue(offer(queue, 10, 0));
+        Assert.assertTrue(offer(queue, 10, 0));
+        Assert.assertFalse(offer(queue, 10, 0));
+        Assert.assertTrue(queue.isWaitingForKeyFrame());
+        Assert.assertEquals(1, queue.getDroppedFrames());
+
+        // the next non-key frames cannot be decoded, even once the queue is written
+        transport.writeAll();
+        Assert.assertEquals(0, queue.getQueuedFrames());
+        Assert.assertFalse(offer(queue, 10, 0));
+        Assert.assertEquals(2, queue.getDroppedFrames());
+
+        Assert.assertTrue(offer(queue, 10, KEY_FRAME));
+        Assert.assertTrue(offer(queue, 10, 0));
+        Assert.assertEquals(2, queue.getDroppedFrames());
+    }
+
+    @Test
+    public void testByteLimit() {
+        FakeTransport transport = new FakeTransport();
+        ClientSendQueue queue = new ClientSendQueue(transport, 100, 10);
+
+        // accepted on an empty queue, even if it exceeds the limit by itself
+        Assert.assertTrue(offer(queue, 150, KEY_FRAME));
+        Assert.assertFalse(offer(queue, 10, 0));
+        transport.writeAll();
+
+        Assert.assertTrue(offer(queue, 50, KEY_FRAME));
+        Assert.assertEquals(52, queue.getQueuedBytes());
+        Assert.assertTrue(offer(queue, 40, 0));
+        Assert.assertFalse(offer(queue, 40, 0));
+        Assert.assertEquals(94, queue.getQueuedBytes());
+    }
+
+    @Test
+    public void testCodecConfigIgnoresLimits() {
+        FakeTransport transport = new FakeTransport();
+        ClientSendQueue queue = new ClientSendQueue(transport, 100, 1);
+
+        Assert.assertTrue(offer(queue, 10, KEY_FRAME));
+        Assert.assertTrue(offer(queue, 200, CONFIG));
+        Assert.assertEquals(2, queue.getQueuedFrames());
+    }
+
+    @Test
+    public void testReclaimOnlyWrittenFrames() {
+        FakeTransport transport = new FakeTransport();
+        ClientSendQueue queue = new ClientSendQueue(transport, 1000, 10);
+
+        Assert.assertTrue(offer(queue, 10, KEY_FRAME));
+        ByteBuffer first = transport.queued.get(0);
+        Assert.assertTrue(offer(queue, 20, 0));
+
+        // partially written: still in flight
+        first.position(first.limit());
+        Assert.assertEquals(2, queue.getQueuedFrames());
+
+        transport.queued.remove(0);
+        Assert.assertEquals(1, queue.getQueuedFrames());
+        Assert.assertEquals(22, queue.getQueuedBytes());
+
+        transport.writeAll();
+        Assert.assertEquals(0, queue.getQueuedFrames());
+        Assert.assertEquals(0, queue.getQueuedBytes());
+    }
+
+    @Test
+    public void testDropOnlyForSlowClient() {
+        FakeTransport slowTransport = new FakeTransport();
+        FakeTransport fastTransport = new FakeTransport();
+        ClientSendQueue slow = new ClientSendQueue(slowTransport, 1000, 2);
+        ClientSendQueue fast = new ClientSendQueue(fastTransport, 1000, 2);
+
+        for (int i = 0; i < 5; ++i) {
+            SharedFrame frame = pool.acquire(null, ByteBuffer.allocate(10), i == 0 ? KEY_FRAME : 0);
+            slow.offer(frame);
+            fast.offer(frame);
+            frame.release();
+            fastTransport.writeAll();
+        }
+
+        Assert.assertEquals(3, slow.getDroppedFrames());
+        Assert.assertTrue(slow.isWaitingForKeyFrame());
+        Assert.assertEquals(0, fast.getDroppedFrames());
+        Assert.assertFalse(fast.isWaitingForKeyFrame());
+    }
+
+    @Test
+    public void testStatsReportDropsSincePreviousSample() {
+        FakeTransport transport = new FakeTransport();
+        ClientSendQueue queue = new ClientSendQueue(transport, 1000, 1);
+
+        Assert.assertTrue(offer(queue, 10, KEY_FRAME));
+        Assert.assertFalse(offer(queue, 10, 0));
+        Assert.assertFalse(offer(queue, 10, 0));
+
+        BitratePolicy.ClientStats stats = queue.sampleStats();
+        Assert.assertEquals(2, stats.getDroppedFrames());
+        Assert.assertEquals(1, stats.getQueuedFrames());
+        Assert.assertEquals(12, stats.getQueuedBytes());
+
+        Assert.assertFalse(offer(queue, 10, 0));
+        Assert.assertEquals(1, queue.sampleStats().getDroppedFrames());
+        Assert.assertEquals(3, queue.getDroppedFrames());
+    }
+
+    @Test
+    public void testClosedTransport() {
+        FakeTransport transport = new FakeTransport();
+        transport.open = false;
+        ClientSendQueue queue = new ClientSendQueue(transport, 1000, 10);
+
+        Assert.assertFalse(offer(queue, 10, KEY_FRAME));
+        Assert.assertTrue(transport.queued.isEmpty());
+    }
+}
@@ -0,0 +1,99 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CodecNegotiatorTest {
+
+    private static final List<String> SUPPORTED = Arrays.asList("video/avc", "video/hevc", "video/x-vnd.on2.vp8");
+
+    @Test
+    public void testParse() {
+        Assert.assertEquals(Arrays.asList("video/av01", "video/hevc"), CodecNegotiator.parse(" video/av01, ,video/hevc,video/av01"));
+        Assert.assertTrue(CodecNegotiator.parse(null).isEmpty());
+    }
+
+    @Test
+    public void testFirstSupportedWins() {
+        Assert.assertEquals("video/hevc", CodecNegotiator.negotiate("video/av01,video/hevc,video/avc", SUPPORTED));
+        Assert.assertEquals("video/x-vnd.on2.vp8", CodecNegotiator.negotiate("video/x-vnd.on2.vp8,video/hevc", SUPPORTED));
+    }
+
+    @Test
+    public void testFallbackToAvc() {
+        Assert.assertEquals(CodecNegotiator.MIMETYPE_AVC, CodecNegotiator.negotiate(null, SUPPORTED));
+        Assert.assertEquals(CodecNegotiator.MIMETYPE_AVC, CodecNegotiator.negotiate("video/av01", SUPPORTED));
+        Assert.assertEquals(CodecNegotiator.MIMETYPE_AVC, CodecNegotiator.negotiate("video/hevc", Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void testPreferred() {
+        Assert.assertEquals("video/av01", CodecNegotiator.getPreferred("video/av01,video/hevc"));
+        Assert.assertEquals(CodecNegotiator.DEFAULT_MIME_TYPE, CodecNegotiator.getPreferred(null));
+    }
+
+    private static VideoSettings createRunning() {
+        VideoSettings running = new VideoSettings();
+        running.setMimeTypes("video/hevc,video/avc");
+        running.setEncoderName("c2.vendor.hevc.encoder");
+        running.setProfile(1);
+        running.setLevel(2);
+        running.setBitRate(8_000_000);
+        return running;
+    }
+
+    @Test
+    public void testJoinerAdoptsRunningCodec() {
+        VideoSettings running = createRunning();
+
+        VideoSettings requested = new VideoSettings();
+        requested.setMimeTypes("video/av01,video/hevc");
+        requested.setBitRate(2_000_000);
+
+        Assert.assertTrue(CodecNegotiator.negotiateJoin(requested, running, "video/hevc"));
+        Assert.assertEquals("video/hevc,video/avc", requested.getMimeTypes());
+        Assert.assertEquals("c2.vendor.hevc.encoder", requested.getEncoderName());
+        Assert.assertEquals(1, requested.getProfile());
+        Assert.assertEquals(2, requested.getLevel());
+        // the other settings are still the requested ones
+        Assert.assertEquals(2_000_000, requested.getBitRate());
+        // so the codec does not restart the stream
+        Assert.assertEquals(0, ReconfigurationPlanner.plan(running, requested) & ReconfigurationPlanner.RESTART);
+    }
+
+    @Test
+    public void testJoinerNotOfferingRunningCodecRenegotiates() {
+        VideoSettings running = createRunning();
+
+        // a client which only decodes AVC must not receive HEVC
+        VideoSettings requested = new VideoSettings();
+        requested.setMimeTypes("video/av01,video/avc");
+        requested.setProfile(3);
+
+        Assert.assertFalse(CodecNegotiator.negotiateJoin(requested, running, "video/hevc"));
+        Assert.assertEquals("video/avc", requested.getMimeTypes());
+        Assert.assertNull(requested.getEncoderName());
+        Assert.assertEquals(0, requested.getProfile());
+        Assert.assertNotEquals(0, ReconfigurationPlanner.plan(running, requested) & ReconfigurationPlanner.RESTART);
+    }
+
+    @Test
+    public void testRenegotiationFallsBackToAvc() {
+        VideoSettings running = new VideoSettings();
+        running.setMimeTypes("video/hevc");
+
+        VideoSettings requested = new VideoSettings();
+        requested.setMimeTypes("video/av01");
+
+        Assert.assertFalse(CodecNegotiator.negotiateJoin(requested, running, "video/hevc"));
+        Assert.assertEquals(CodecNegotiator.MIMETYPE_AVC, requested.getMimeTypes());
+
+        // a client requesting no mime type decodes AVC
+        VideoSettings defaultRequested = new VideoSettings();
+        Assert.assertTrue(CodecNegotiator.negotiateJoin(defaultRequested, requested, CodecNegotiator.MIMETYPE_AVC));
+    }
+}
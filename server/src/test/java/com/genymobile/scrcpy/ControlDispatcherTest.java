@@ -0,0 +1,23 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ControlDispatcherTest {
+
+    @Test
+    public void testClipboardOrderedWithInput() {
+        // "set clipboard, then paste" and "copy, then get clipboard" must be handled in order
+        Assert.assertTrue(ControlDispatcher.isInputLane(ControlMessage.TYPE_INJECT_KEYCODE));
+        Assert.assertTrue(ControlDispatcher.isInputLane(ControlMessage.TYPE_INJECT_TEXT));
+        Assert.assertTrue(ControlDispatcher.isInputLane(ControlMessage.TYPE_SET_CLIPBOARD));
+        Assert.assertTrue(ControlDispatcher.isInputLane(ControlMessage.TYPE_GET_CLIPBOARD));
+    }
+
+    @Test
+    public void testSlowOperations() {
+        Assert.assertFalse(ControlDispatcher.isInputLane(ControlMessage.TYPE_SET_SCREEN_POWER_MODE));
+        Assert.assertFalse(ControlDispatcher.isInputLane(ControlMessage.TYPE_ROTATE_DEVICE));
+        Assert.assertFalse(ControlDispatcher.isInputLane(ControlMessage.TYPE_EXPAND_NOTIFICATION_PANEL));
+    }
+}
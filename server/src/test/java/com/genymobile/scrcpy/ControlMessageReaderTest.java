@@ -4,14 +4,22 @@ import android.view.KeyEvent;
 import android.view.MotionEvent;
 
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 public class ControlMessageReaderTest {
@@ -314,6 +322,62 @@ public class ControlMessageReaderTest {
         Assert.assertEquals(ControlMessage.TYPE_ROTATE_DEVICE, event.getType());
     }
 
+    @Test
+    public void testParseStreamingFilePushStart() throws IOException {
+        ControlMessageReader reader = new ControlMessageReader();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        dos.writeByte(ControlMessage.TYPE_PUSH_FILE);
+        dos.writeShort(7); // push id
+        dos.writeByte(ControlMessage.PUSH_STATE_START_STREAMING);
+        dos.writeInt(123456); // file size
+        byte[] name = "app.apk".getBytes(StandardCharsets.UTF_8);
+        dos.writeShort(name.length);
+        dos.write(name);
+
+        byte[] packet = bos.toByteArray();
+
+        ControlMessage event = reader.parseEvent(ByteBuffer.wrap(packet));
+
+        Assert.assertEquals(ControlMessage.TYPE_PUSH_FILE, event.getType());
+        Assert.assertEquals(7, event.getPushId());
+        Assert.assertEquals(ControlMessage.PUSH_STATE_START_STREAMING, event.getPushState());
+        Assert.assertEquals(123456, event.getFileSize());
+        Assert.assertEquals("app.apk", event.getFileName());
+    }
+
+    @Test
+    public void testParseFilePushChunk() throws IOException {
+        ControlMessageReader reader = new ControlMessageReader();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        dos.writeByte(ControlMessage.TYPE_PUSH_FILE);
+        dos.writeShort(7); // push id
+        dos.writeByte(ControlMessage.PUSH_STATE_APPEND);
+        byte[] chunk = new byte[5000];
+        for (int i = 0; i < chunk.length; ++i) {
+            chunk[i] = (byte) i;
+        }
+        dos.writeInt(chunk.length);
+        dos.write(chunk);
+
+        byte[] packet = bos.toByteArray();
+
+        int pooled = ControlMessage.CHUNK_POOL.getPooledCount(chunk.length);
+        ControlMessage event = reader.parseEvent(ByteBuffer.wrap(packet));
+
+        Assert.assertEquals(ControlMessage.PUSH_STATE_APPEND, event.getPushState());
+        Assert.assertEquals(chunk.length, event.getPushChunkSize());
+        // the pooled array may be bigger than the chunk
+        Assert.assertArrayEquals(chunk, Arrays.copyOf(event.getPushChunk(), event.getPushChunkSize()));
+
+        event.releasePushChunk();
+        Assert.assertNull(event.getPushChunk());
+        Assert.assertEquals(pooled + 1, ControlMessage.CHUNK_POOL.getPooledCount(chunk.length));
+    }
+
     @Test
     public void testMultiEvents() throws IOException {
         ControlMessageReader reader = new ControlMessageReader();
@@ -395,4 +459,167 @@ public class ControlMessageReaderTest {
         Assert.assertEquals(5, event.getRepeat());
         Assert.assertEquals(KeyEvent.META_CTRL_ON, event.getMetaState());
     }
+
+    private static byte[] createInputEvents() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream dos = new DataOutputStream(bos);
+        dos.writeByte(ControlMessage.TYPE_INJECT_TOUCH_EVENT);
+        dos.writeByte(MotionEvent.ACTION_MOVE);
+        dos.writeLong(-1); // pointerId
+        dos.writeInt(100);
+        dos.writeInt(200);
+        dos.writeShort(1080);
+        dos.writeShort(1920);
+        dos.writeShort(0xffff); // pressure
+        dos.writeInt(MotionEvent.BUTTON_PRIMARY);
+
+        dos.writeByte(ControlMessage.TYPE_INJECT_SCROLL_EVENT);
+        dos.writeInt(260);
+        dos.writeInt(1026);
+        dos.writeShort(1080);
+        dos.writeShort(1920);
+        dos.writeInt(1);
+        dos.writeInt(-1);
+
+        dos.writeByte(ControlMessage.TYPE_INJECT_KEYCODE);
+        dos.writeByte(KeyEvent.ACTION_DOWN);
+        dos.writeInt(KeyEvent.KEYCODE_ENTER);
+        dos.writeInt(0); // repeat
+        dos.writeInt(0); // meta state
+        return bos.toByteArray();
+    }
+
+    @Test
+    public void testPooledMessagesAreReused() throws IOException {
+        ControlMessageReader reader = new ControlMessageReader(new ControlMessage.Pool());
+        ByteBuffer buffer = ByteBuffer.wrap(createInputEvents());
+
+        ControlMessage touch = reader.parseEvent(buffer);
+        Assert.assertEquals(ControlMessage.TYPE_INJECT_TOUCH_EVENT, touch.getType());
+        Assert.assertEquals(100, touch.getX());
+        Assert.assertEquals(200, touch.getY());
+        Assert.assertEquals(1080, touch.getScreenWidth());
+        Assert.assertEquals(1920, touch.getScreenHeight());
+        Assert.assertEquals(100, touch.getPosition().getPoint().getX());
+        touch.recycle();
+
+        ControlMessage scroll = reader.parseEvent(buffer);
+        Assert.assertSame(touch, scroll);
+        Assert.assertEquals(ControlMessage.TYPE_INJECT_SCROLL_EVENT, scroll.getType());
+        // the position of the previous message must not be reused
+        Assert.assertEquals(260, scroll.getPosition().getPoint().getX());
+        Assert.assertEquals(1026, scroll.getPosition().getPoint().getY());
+
+        // not recycled, so the next message is another instance
+        ControlMessage key = reader.parseEvent(buffer);
+        Assert.assertNotSame(scroll, key);
+        Assert.assertEquals(ControlMessage.TYPE_INJECT_KEYCODE, key.getType());
+        Assert.assertEquals(KeyEvent.KEYCODE_ENTER, key.getKeycode());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testDoubleRecycle() throws IOException {
+        ControlMessageReader reader = new ControlMessageReader(new ControlMessage.Pool());
+        ControlMessage msg = reader.parseEvent(ByteBuffer.wrap(createInputEvents()));
+        msg.recycle();
+        msg.recycle();
+    }
+
+    @Test
+    public void testPooledDecodingDoesNotAllocate() throws IOException {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(allocationBean.isThreadAllocatedMemorySupported() && allocationBean.isThreadAllocatedMemoryEnabled());
+
+        ControlMessageReader reader = new ControlMessageReader(new ControlMessage.Pool());
+        ByteBuffer buffer = ByteBuffer.wrap(createInputEvents());
+
+        // warmup, to fill the pool and initialize the classes
+        int checksum = decodeAll(reader, buffer, 1000);
+
+        long threadId = Thread.currentThread().getId();
+        long before = allocationBean.getThreadAllocatedBytes(threadId);
+        checksum += decodeAll(reader, buffer, 10_000);
+        long allocated = allocationBean.getThreadAllocatedBytes(threadId) - before;
+
+        Assert.assertNotEquals(0, checksum);
+        // 30000 messages decoded: a single object per message would take several hundreds of KB, so only tolerate the constant overhead
+        // of the JVM (the measurement itself, the JIT compilation)
+        Assert.assertTrue("Allocated " + allocated + " bytes", allocated < 16 * 1024);
+    }
+
+    @Test
+    public void testPooledDecodingFromSeveralThreads() throws Exception {
+        // the WebSocket server decodes the messages of its clients on several worker threads, sharing the same reader and pool
+        final ControlMessageReader reader = new ControlMessageReader(new ControlMessage.Pool());
+        final Set<ControlMessage> held = Collections.newSetFromMap(new ConcurrentHashMap<ControlMessage, Boolean>());
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final int threadCount = 8;
+        final int iterations = 20_000;
+
+        Thread[] threads = new Thread[threadCount];
+        for (int t = 0; t < threadCount; ++t) {
+            final int threadIndex = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        ByteBuffer buffer = ByteBuffer.allocate(64);
+                        for (int i = 0; i < iterations; ++i) {
+                            buffer.clear();
+                            putTouchEvent(buffer, threadIndex, i);
+                            buffer.flip();
+                            ControlMessage msg = reader.parseEvent(buffer);
+                            // a message obtained by 2 threads at once would be overwritten by the other one
+                            Assert.assertTrue("Message obtained twice", held.add(msg));
+                            Thread.yield();
+                            Assert.assertEquals(threadIndex, msg.getPointerId());
+                            Assert.assertEquals(i, msg.getPosition().getPoint().getX());
+                            Assert.assertTrue(held.remove(msg));
+                            msg.recycle();
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+    }
+
+    private static void putTouchEvent(ByteBuffer buffer, long pointerId, int x) {
+        buffer.put((byte) ControlMessage.TYPE_INJECT_TOUCH_EVENT);
+        buffer.put((byte) MotionEvent.ACTION_MOVE);
+        buffer.putLong(pointerId);
+        buffer.putInt(x);
+        buffer.putInt(200);
+        buffer.putShort((short) 1080);
+        buffer.putShort((short) 1920);
+        buffer.putShort((short) 0xffff); // pressure
+        buffer.putInt(MotionEvent.BUTTON_PRIMARY);
+    }
+
+    private static int decodeAll(ControlMessageReader reader, ByteBuffer buffer, int iterations) {
+        int checksum = 0;
+        for (int i = 0; i < iterations; ++i) {
+            buffer.rewind();
+            ControlMessage msg = reader.parseEvent(buffer);
+            while (msg != null) {
+                checksum += msg.getType() + msg.getX();
+                msg.recycle();
+                msg = reader.parseEvent(buffer);
+            }
+        }
+        return checksum;
+    }
 }
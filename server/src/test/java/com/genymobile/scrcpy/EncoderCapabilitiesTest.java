@@ -0,0 +1,81 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class EncoderCapabilitiesTest {
+
+    // a typical 1080p encoder, limited to 8160 macroblocks (1920x1088)
+    private static EncoderCapabilities create1080pEncoder() {
+        return new EncoderCapabilities(2048, 2048, 2, 2, 1000, 40_000_000) {
+            @Override
+            public boolean isSizeSupported(int width, int height) {
+                return super.isSizeSupported(width, height) && ((width + 15) / 16) * ((height + 15) / 16) <= 8160;
+            }
+
+            @Override
+            public double getMaxFrameRate(int width, int height) {
+                return 8160 * 30.0 / (((width + 15) / 16) * ((height + 15) / 16));
+            }
+        };
+    }
+
+    @Test
+    public void testSupportedSizeUnchanged() {
+        EncoderCapabilities capabilities = create1080pEncoder();
+        Assert.assertEquals(new Size(1088, 1920), capabilities.fitSize(new Size(1088, 1920)));
+    }
+
+    @Test
+    public void testAlignment() {
+        EncoderCapabilities capabilities = new EncoderCapabilities(4096, 4096, 32, 2, 0, 0);
+        Assert.assertEquals(32, capabilities.getWidthAlignment());
+        // never less than the default alignment
+        Assert.assertEquals(EncoderCapabilities.DEFAULT_ALIGNMENT, capabilities.getHeightAlignment());
+        Assert.assertEquals(new Size(1056, 1904), capabilities.fitSize(new Size(1080, 1910)));
+    }
+
+    @Test
+    public void testMaxDimensionsKeepAspectRatio() {
+        EncoderCapabilities capabilities = new EncoderCapabilities(1920, 1920, 16, 16, 0, 0);
+        Size size = capabilities.fitSize(new Size(1600, 2560));
+        Assert.assertEquals(new Size(1200, 1920), size);
+    }
+
+    @Test
+    public void testMacroblocksLimit() {
+        EncoderCapabilities capabilities = create1080pEncoder();
+        // a tablet screen, within the max dimensions but beyond the macroblocks limit
+        Size size = capabilities.fitSize(new Size(1600, 2048));
+        Assert.assertNotNull(size);
+        Assert.assertTrue(capabilities.isSizeSupported(size.getWidth(), size.getHeight()));
+        Assert.assertTrue(size.getWidth() < 1600);
+        // the aspect ratio is preserved, up to the alignment
+        Assert.assertEquals(1600.0 / 2048, (double) size.getWidth() / size.getHeight(), 0.02);
+    }
+
+    @Test
+    public void testNoSupportedSize() {
+        EncoderCapabilities capabilities = new EncoderCapabilities(1920, 1080, 16, 16, 0, 0);
+        Assert.assertNull(capabilities.fitSize(new Size(8, 8)));
+    }
+
+    @Test
+    public void testClampBitRate() {
+        EncoderCapabilities capabilities = create1080pEncoder();
+        Assert.assertEquals(8_000_000, capabilities.clampBitRate(8_000_000));
+        Assert.assertEquals(40_000_000, capabilities.clampBitRate(100_000_000));
+        Assert.assertEquals(1000, capabilities.clampBitRate(10));
+    }
+
+    @Test
+    public void testClampFrameRate() {
+        EncoderCapabilities capabilities = create1080pEncoder();
+        Assert.assertEquals(30, capabilities.clampFrameRate(60, 1088, 1920));
+        Assert.assertEquals(24, capabilities.clampFrameRate(24, 1088, 1920));
+        // no limit requested
+        Assert.assertEquals(0, capabilities.clampFrameRate(0, 1088, 1920));
+        // unknown achievable frame rate
+        Assert.assertEquals(60, new EncoderCapabilities(1920, 1920, 16, 16, 0, 0).clampFrameRate(60, 1088, 1920));
+    }
+}
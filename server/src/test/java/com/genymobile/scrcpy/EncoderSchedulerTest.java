@@ -0,0 +1,181 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+public class EncoderSchedulerTest {
+
+    private static final class ManualExecutor implements Executor {
+        private final List<Runnable> started = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            started.add(command);
+        }
+
+        // simulate the termination of the n-th started encoder
+        void finish(int index) {
+            started.get(index).run();
+        }
+    }
+
+    private static final class FakeEncoder implements Runnable {
+        private boolean ran;
+
+        @Override
+        public void run() {
+            ran = true;
+        }
+    }
+
+    @Test
+    public void testRunWithinLimit() {
+        ManualExecutor executor = new ManualExecutor();
+        EncoderScheduler scheduler = new EncoderScheduler(2, executor);
+
+        EncoderScheduler.Session s0 = scheduler.submit(0, new FakeEncoder(), 1);
+        EncoderScheduler.Session s1 = scheduler.submit(1, new FakeEncoder(), 1);
+        EncoderScheduler.Session s2 = scheduler.submit(2, new FakeEncoder(), 1);
+
+        Assert.assertEquals(EncoderScheduler.State.RUNNING, s0.getState());
+        Assert.assertEquals(EncoderScheduler.State.RUNNING, s1.getState());
+        Assert.assertEquals(EncoderScheduler.State.QUEUED, s2.getState());
+        Assert.assertEquals(2, scheduler.getRunningCount());
+        Assert.assertEquals(1, scheduler.getQueuedCount());
+        Assert.assertEquals(2, executor.started.size());
+    }
+
+    @Test
+    public void testStartQueuedOnFinish() {
+        ManualExecutor executor = new ManualExecutor();
+        EncoderScheduler scheduler = new EncoderScheduler(1, executor);
+
+        FakeEncoder e0 = new FakeEncoder();
+        EncoderScheduler.Session s0 = scheduler.submit(0, e0, 1);
+        EncoderScheduler.Session s1 = scheduler.submit(1, new FakeEncoder(), 1);
+        Assert.assertEquals(EncoderScheduler.State.QUEUED, s1.getState());
+
+        executor.finish(0);
+        Assert.assertTrue(e0.ran);
+        Assert.assertEquals(EncoderScheduler.State.FINISHED, s0.getState());
+        Assert.assertEquals(EncoderScheduler.State.RUNNING, s1.getState());
+        Assert.assertEquals(0, scheduler.getQueuedCount());
+    }
+
+    @Test
+    public void testPriorityByViewers() {
+        ManualExecutor executor = new ManualExecutor();
+        EncoderScheduler scheduler = new EncoderScheduler(1, executor);
+
+        scheduler.submit(0, new FakeEncoder(), 1);
+        EncoderScheduler.Session s1 = scheduler.submit(1, new FakeEncoder(), 1);
+        EncoderScheduler.Session s2 = scheduler.submit(2, new FakeEncoder(), 1);
+        EncoderScheduler.Session s3 = scheduler.submit(3, new FakeEncoder(), 1);
+        scheduler.setViewers(s2, 3);
+
+        executor.finish(0);
+        Assert.assertEquals(EncoderScheduler.State.RUNNING, s2.getState());
+        Assert.assertEquals(EncoderScheduler.State.QUEUED, s1.getState());
+
+        // same number of viewers: by submission order
+        executor.finish(1);
+        Assert.assertEquals(EncoderScheduler.State.RUNNING, s1.getState());
+        Assert.assertEquals(EncoderScheduler.State.QUEUED, s3.getState());
+    }
+
+    @Test
+    public void testCancelQueued() {
+        ManualExecutor executor = new ManualExecutor();
+        EncoderScheduler scheduler = new EncoderScheduler(1, executor);
+
+        scheduler.submit(0, new FakeEncoder(), 1);
+        EncoderScheduler.Session s1 = scheduler.submit(1, new FakeEncoder(), 1);
+        scheduler.cancel(s1);
+        Assert.assertEquals(EncoderScheduler.State.FINISHED, s1.getState());
+
+        executor.finish(0);
+        Assert.assertEquals(0, scheduler.getRunningCount());
+        Assert.assertEquals(1, executor.started.size());
+    }
+
+    @Test
+    public void testFinishOnException() {
+        ManualExecutor executor = new ManualExecutor();
+        EncoderScheduler scheduler = new EncoderScheduler(1, executor);
+
+        EncoderScheduler.Session s0 = scheduler.submit(0, new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException("codec failure");
+            }
+        }, 1);
+        EncoderScheduler.Session s1 = scheduler.submit(1, new FakeEncoder(), 1);
+
+        try {
+            executor.finish(0);
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertEquals(EncoderScheduler.State.FINISHED, s0.getState());
+        Assert.assertEquals(EncoderScheduler.State.RUNNING, s1.getState());
+    }
+
+    @Test
+    public void testLimitPerEncoder() {
+        ManualExecutor executor = new ManualExecutor();
+        EncoderScheduler scheduler = new EncoderScheduler(new EncoderScheduler.InstanceLimits() {
+            @Override
+            public int getMaxInstances(String encoderName, String mimeType) {
+                return "c2.hw.avc.encoder".equals(encoderName) ? 1 : 2;
+            }
+        }, executor);
+
+        EncoderScheduler.Session avc0 = scheduler.submit(0, "c2.hw.avc.encoder", "video/avc", new FakeEncoder(), 1);
+        EncoderScheduler.Session avc1 = scheduler.submit(1, "c2.hw.avc.encoder", "video/avc", new FakeEncoder(), 3);
+        // the saturated avc encoder does not delay the sessions of the other encoders, even with fewer viewers
+        EncoderScheduler.Session hevc0 = scheduler.submit(2, "c2.hw.hevc.encoder", "video/hevc", new FakeEncoder(), 1);
+        EncoderScheduler.Session hevc1 = scheduler.submit(3, "c2.hw.hevc.encoder", "video/hevc", new FakeEncoder(), 1);
+        EncoderScheduler.Session hevc2 = scheduler.submit(4, "c2.hw.hevc.encoder", "video/hevc", new FakeEncoder(), 1);
+
+        Assert.assertEquals(EncoderScheduler.State.RUNNING, avc0.getState());
+        Assert.assertEquals(EncoderScheduler.State.QUEUED, avc1.getState());
+        Assert.assertEquals(EncoderScheduler.State.RUNNING, hevc0.getState());
+        Assert.assertEquals(EncoderScheduler.State.RUNNING, hevc1.getState());
+        Assert.assertEquals(EncoderScheduler.State.QUEUED, hevc2.getState());
+
+        // a finished hevc session frees an hevc instance only
+        executor.finish(1);
+        Assert.assertEquals(EncoderScheduler.State.QUEUED, avc1.getState());
+        Assert.assertEquals(EncoderScheduler.State.RUNNING, hevc2.getState());
+
+        executor.finish(0);
+        Assert.assertEquals(EncoderScheduler.State.RUNNING, avc1.getState());
+        Assert.assertEquals(0, scheduler.getQueuedCount());
+    }
+
+    @Test
+    public void testLimitLookedUpWithMimeType() {
+        ManualExecutor executor = new ManualExecutor();
+        final List<String> lookups = new ArrayList<>();
+        EncoderScheduler scheduler = new EncoderScheduler(new EncoderScheduler.InstanceLimits() {
+            @Override
+            public int getMaxInstances(String encoderName, String mimeType) {
+                lookups.add(encoderName + "/" + mimeType);
+                return 1;
+            }
+        }, executor);
+
+        scheduler.submit(0, "c2.hw.encoder", "video/hevc", new FakeEncoder(), 1);
+        Assert.assertEquals("c2.hw.encoder/video/hevc", lookups.get(0));
+
+        // instances of the same encoder share its limit, whatever the codec
+        EncoderScheduler.Session s1 = scheduler.submit(1, "c2.hw.encoder", "video/avc", new FakeEncoder(), 1);
+        Assert.assertEquals(EncoderScheduler.State.QUEUED, s1.getState());
+        Assert.assertEquals("c2.hw.encoder/video/avc", lookups.get(1));
+    }
+}
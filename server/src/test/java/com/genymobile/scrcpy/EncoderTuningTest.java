@@ -0,0 +1,51 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class EncoderTuningTest {
+
+    private static List<String> format(List<CodecOption> options) {
+        List<String> result = new ArrayList<>();
+        for (CodecOption option : options) {
+            result.add(option.getKey() + "=" + option.getValue());
+        }
+        return result;
+    }
+
+    @Test
+    public void testDefaultTuningHasNoOptions() {
+        Assert.assertTrue(EncoderTuning.getOptions(EncoderTuning.DEFAULT, 33, true, true).isEmpty());
+        Assert.assertFalse(EncoderTuning.hasFrameTimestamp(EncoderTuning.DEFAULT));
+    }
+
+    @Test
+    public void testInteractiveOnRecentDevice() {
+        List<String> options = format(EncoderTuning.getOptions(EncoderTuning.INTERACTIVE, 30, true, true));
+        Assert.assertEquals(Arrays.asList("bitrate-mode=2", "priority=0", "max-bframes=0", "latency=1", "low-latency=1"), options);
+        Assert.assertTrue(EncoderTuning.hasFrameTimestamp(EncoderTuning.INTERACTIVE));
+    }
+
+    @Test
+    public void testInteractiveOnlyRequestsSupportedKeys() {
+        List<String> options = format(EncoderTuning.getOptions(EncoderTuning.INTERACTIVE, 29, false, false));
+        Assert.assertEquals(Arrays.asList("priority=0", "max-bframes=0"), options);
+
+        options = format(EncoderTuning.getOptions(EncoderTuning.INTERACTIVE, 30, true, false));
+        Assert.assertEquals(Arrays.asList("bitrate-mode=2", "priority=0", "max-bframes=0", "latency=1"), options);
+
+        options = format(EncoderTuning.getOptions(EncoderTuning.INTERACTIVE, 21, false, false));
+        Assert.assertEquals(Collections.emptyList(), options);
+    }
+
+    @Test
+    public void testName() {
+        Assert.assertEquals("interactive", EncoderTuning.getName(EncoderTuning.INTERACTIVE));
+        Assert.assertEquals("default", EncoderTuning.getName(EncoderTuning.DEFAULT));
+    }
+}
@@ -0,0 +1,96 @@
+package com.genymobile.scrcpy;
+
+import android.media.MediaCodec;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class FrameRingTest {
+
+    private static ByteBuffer packet(int value) {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        buffer.putInt(value);
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test
+    public void testPublishAndTake() throws InterruptedException {
+        FrameRing ring = new FrameRing(4);
+        FrameRing.Consumer consumer = ring.addConsumer();
+
+        ByteBuffer frameMeta = packet(42);
+        Assert.assertTrue(ring.publish(frameMeta, packet(1), MediaCodec.BUFFER_FLAG_KEY_FRAME));
+        Assert.assertTrue(ring.publish(null, packet(2), 0));
+
+        ByteBuffer first = consumer.take();
+        Assert.assertEquals(8, first.remaining());
+        Assert.assertEquals(42, first.getInt());
+        Assert.assertEquals(1, first.getInt());
+
+        ByteBuffer second = consumer.take();
+        Assert.assertEquals(4, second.remaining());
+        Assert.assertEquals(2, second.getInt());
+    }
+
+    @Test
+    public void testDropUntilKeyFrameWhenFull() throws InterruptedException {
+        FrameRing ring = new FrameRing(2);
+        FrameRing.Consumer consumer = ring.addConsumer();
+
+        Assert.assertTrue(ring.publish(null, packet(1), MediaCodec.BUFFER_FLAG_KEY_FRAME));
+        Assert.assertTrue(ring.publish(null, packet(2), 0));
+        // full
+        Assert.assertFalse(ring.publish(null, packet(3), 0));
+
+        Assert.assertEquals(1, consumer.take().getInt());
+        Assert.assertEquals(2, consumer.take().getInt());
+
+        // packet 2 is still held by the consumer, but packet 1 is released
+        Assert.assertFalse(ring.publish(null, packet(4), 0));
+        Assert.assertTrue(ring.publish(null, packet(5), MediaCodec.BUFFER_FLAG_KEY_FRAME));
+        Assert.assertEquals(5, consumer.take().getInt());
+
+        Assert.assertTrue(ring.publish(null, packet(6), 0));
+        Assert.assertEquals(6, consumer.take().getInt());
+        Assert.assertEquals(2, ring.getDroppedPackets());
+    }
+
+    @Test
+    public void testPendingConfigPublishedBeforeKeyFrame() throws InterruptedException {
+        FrameRing ring = new FrameRing(4);
+        FrameRing.Consumer consumer = ring.addConsumer();
+
+        Assert.assertTrue(ring.publish(null, packet(1), MediaCodec.BUFFER_FLAG_KEY_FRAME));
+        for (int i = 2; i <= 4; ++i) {
+            Assert.assertTrue(ring.publish(null, packet(i), 0));
+        }
+        Assert.assertFalse(ring.publish(null, packet(100), MediaCodec.BUFFER_FLAG_CODEC_CONFIG));
+
+        for (int i = 1; i <= 4; ++i) {
+            Assert.assertEquals(i, consumer.take().getInt());
+        }
+
+        Assert.assertFalse(ring.publish(null, packet(5), 0));
+        Assert.assertTrue(ring.publish(null, packet(6), MediaCodec.BUFFER_FLAG_KEY_FRAME));
+
+        Assert.assertEquals(100, consumer.take().getInt());
+        Assert.assertEquals(6, consumer.take().getInt());
+    }
+
+    @Test
+    public void testLargePacket() throws InterruptedException {
+        FrameRing ring = new FrameRing(2);
+        FrameRing.Consumer consumer = ring.addConsumer();
+
+        ByteBuffer large = ByteBuffer.allocate(1 << 20);
+        large.putInt(0, 7);
+        Assert.assertTrue(ring.publish(null, large, MediaCodec.BUFFER_FLAG_KEY_FRAME));
+
+        ByteBuffer view = consumer.take();
+        Assert.assertEquals(1 << 20, view.remaining());
+        Assert.assertEquals(7, view.getInt());
+    }
+}
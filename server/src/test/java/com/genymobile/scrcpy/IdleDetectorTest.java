@@ -0,0 +1,108 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IdleDetectorTest {
+
+    private static final long REPEAT_US = 100_000;
+    private static final long QUIET_US = 500_000;
+    private static final long HEARTBEAT_US = 1_000_000;
+
+    private static final int CHANGE_SIZE = 20_000;
+    private static final int REPEAT_SIZE = 30;
+
+    private static IdleDetector createIdleDetector() {
+        IdleDetector detector = new IdleDetector(REPEAT_US, QUIET_US, HEARTBEAT_US);
+        // the first frame of a codec
+        Assert.assertEquals(IdleDetector.FORWARD, detector.onFrame(1_000_000, 80_000, true));
+        return detector;
+    }
+
+    // repeat the last frame until the given pts (included), and return the actions
+    private static int[] repeatUntil(IdleDetector detector, long fromPts, long toPts) {
+        int count = (int) ((toPts - fromPts) / REPEAT_US);
+        int[] actions = new int[count];
+        for (int i = 0; i < count; ++i) {
+            actions[i] = detector.onFrame(fromPts + (i + 1) * REPEAT_US, REPEAT_SIZE, false);
+        }
+        return actions;
+    }
+
+    @Test
+    public void testChangingScreenIsForwarded() {
+        IdleDetector detector = createIdleDetector();
+        for (long pts = 1_016_667; pts < 3_000_000; pts += 16_667) {
+            Assert.assertEquals(IdleDetector.FORWARD, detector.onFrame(pts, CHANGE_SIZE, false));
+        }
+        Assert.assertFalse(detector.isIdle());
+    }
+
+    @Test
+    public void testIdleAfterQuietPeriod() {
+        IdleDetector detector = createIdleDetector();
+        int[] actions = repeatUntil(detector, 1_000_000, 2_600_000);
+        // forwarded during the quiet period
+        for (int i = 0; i < 4; ++i) {
+            Assert.assertEquals(IdleDetector.FORWARD, actions[i]);
+        }
+        // idle at 1.5s, then a heartbeat every second
+        Assert.assertEquals(IdleDetector.HEARTBEAT, actions[4]);
+        for (int i = 5; i < 14; ++i) {
+            Assert.assertEquals(IdleDetector.DROP, actions[i]);
+        }
+        Assert.assertEquals(IdleDetector.HEARTBEAT, actions[14]);
+        Assert.assertEquals(IdleDetector.DROP, actions[15]);
+        Assert.assertTrue(detector.isIdle());
+    }
+
+    @Test
+    public void testResumeWithKeyFrame() {
+        IdleDetector detector = createIdleDetector();
+        repeatUntil(detector, 1_000_000, 2_000_000);
+        Assert.assertTrue(detector.isIdle());
+
+        // a real change, not aligned on the repeat interval
+        Assert.assertEquals(IdleDetector.REQUEST_KEY_FRAME, detector.onFrame(2_042_123, CHANGE_SIZE, false));
+        Assert.assertFalse(detector.isIdle());
+        // the frames are dropped until the key frame
+        Assert.assertEquals(IdleDetector.DROP, detector.onFrame(2_058_790, CHANGE_SIZE, false));
+        Assert.assertEquals(IdleDetector.FORWARD, detector.onFrame(2_075_457, 60_000, true));
+        Assert.assertEquals(IdleDetector.FORWARD, detector.onFrame(2_092_124, CHANGE_SIZE, false));
+    }
+
+    @Test
+    public void testLargeFrameOnRepeatIntervalIsAChange() {
+        IdleDetector detector = createIdleDetector();
+        repeatUntil(detector, 1_000_000, 2_000_000);
+        Assert.assertTrue(detector.isIdle());
+        Assert.assertEquals(IdleDetector.REQUEST_KEY_FRAME, detector.onFrame(2_100_000, CHANGE_SIZE, false));
+    }
+
+    @Test
+    public void testRequestedKeyFrameForwardedWhileIdle() {
+        IdleDetector detector = createIdleDetector();
+        repeatUntil(detector, 1_000_000, 2_000_000);
+        Assert.assertTrue(detector.isIdle());
+
+        detector.requestKeyFrame();
+        // the key frame repeats the static screen
+        Assert.assertEquals(IdleDetector.FORWARD, detector.onFrame(2_100_000, 60_000, true));
+        Assert.assertTrue(detector.isIdle());
+        Assert.assertEquals(IdleDetector.DROP, detector.onFrame(2_200_000, REPEAT_SIZE, false));
+
+        // a periodic key frame, not requested, is dropped
+        Assert.assertEquals(IdleDetector.DROP, detector.onFrame(2_300_000, 60_000, true));
+    }
+
+    @Test
+    public void testReset() {
+        IdleDetector detector = createIdleDetector();
+        repeatUntil(detector, 1_000_000, 2_000_000);
+        Assert.assertTrue(detector.isIdle());
+
+        detector.reset();
+        Assert.assertFalse(detector.isIdle());
+        Assert.assertEquals(IdleDetector.FORWARD, detector.onFrame(5_000_000, 80_000, true));
+    }
+}
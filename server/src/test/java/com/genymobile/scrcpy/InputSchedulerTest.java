@@ -0,0 +1,234 @@
+package com.genymobile.scrcpy;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+public class InputSchedulerTest {
+
+    private static final class Event {
+        private final long time;
+        private final int pointerCount;
+        private final List<Long> batchTimes = new ArrayList<>();
+        private boolean recycled;
+
+        Event(long time, int pointerCount) {
+            this.time = time;
+            this.pointerCount = pointerCount;
+            batchTimes.add(time);
+        }
+    }
+
+    private static final class FakeInjector implements InputScheduler.Injector<Event> {
+        private final List<Event> injected = new ArrayList<>();
+
+        @Override
+        public long getEventTime(Event event) {
+            return event.time;
+        }
+
+        @Override
+        public boolean canBatch(Event batch, Event event) {
+            return batch.pointerCount == event.pointerCount;
+        }
+
+        @Override
+        public void appendBatch(Event batch, Event event) {
+            batch.batchTimes.add(event.time);
+        }
+
+        @Override
+        public boolean inject(Event event) {
+            Assert.assertFalse(event.recycled);
+            injected.add(event);
+            event.recycled = true;
+            return true;
+        }
+
+        @Override
+        public void recycle(Event event) {
+            Assert.assertFalse(event.recycled);
+            event.recycled = true;
+        }
+    }
+
+    private static final class ManualClock implements InputScheduler.Clock {
+        private long now;
+
+        @Override
+        public long uptimeMillis() {
+            return now;
+        }
+    }
+
+    private static final class ManualTask extends FutureTask<Void> implements ScheduledFuture<Void> {
+        private final Runnable command;
+        private final long delayMillis;
+
+        ManualTask(Runnable command, long delayMillis) {
+            super(command, null);
+            this.command = command;
+            this.delayMillis = delayMillis;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(getDelay(TimeUnit.MILLISECONDS), o.getDelay(TimeUnit.MILLISECONDS));
+        }
+    }
+
+    // the scheduled tasks are only run by the test
+    private static final class ManualExecutor extends ScheduledThreadPoolExecutor {
+        private final List<ManualTask> tasks = new ArrayList<>();
+
+        ManualExecutor() {
+            super(1);
+        }
+
+        @Override
+        public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+            ManualTask task = new ManualTask(command, unit.toMillis(delay));
+            tasks.add(task);
+            return task;
+        }
+
+        void runAll() {
+            List<ManualTask> toRun = new ArrayList<>(tasks);
+            tasks.clear();
+            for (ManualTask task : toRun) {
+                task.run(); // no-op if cancelled
+            }
+        }
+    }
+
+    private final FakeInjector injector = new FakeInjector();
+    private final ManualClock clock = new ManualClock();
+    private final ManualExecutor executor = new ManualExecutor();
+    private final InputScheduler<Event> scheduler = new InputScheduler<>(injector, executor, clock);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private Event move(long time) {
+        clock.now = time;
+        Event event = new Event(time, 1);
+        Assert.assertTrue(scheduler.injectMove(event));
+        return event;
+    }
+
+    private Event inject(long time) {
+        clock.now = time;
+        Event event = new Event(time, 1);
+        Assert.assertTrue(scheduler.inject(event));
+        return event;
+    }
+
+    @Test
+    public void testFirstMoveOfWindowIsInjectedImmediately() {
+        Event first = move(160);
+        Assert.assertEquals(Arrays.asList(first), injector.injected);
+
+        // next window
+        Event second = move(176);
+        Assert.assertEquals(Arrays.asList(first, second), injector.injected);
+        Assert.assertTrue(executor.tasks.isEmpty());
+    }
+
+    @Test
+    public void testMovesOfSameWindowAreCoalesced() {
+        Event first = move(160);
+        Event second = move(165);
+        Event third = move(170);
+        Assert.assertEquals(Arrays.asList(first), injector.injected);
+        Assert.assertTrue(third.recycled);
+
+        // flushed at the end of the window
+        Assert.assertEquals(1, executor.tasks.size());
+        Assert.assertEquals(176 - 165, executor.tasks.get(0).getDelay(TimeUnit.MILLISECONDS));
+        executor.runAll();
+        Assert.assertEquals(Arrays.asList(first, second), injector.injected);
+        Assert.assertEquals(Arrays.asList(165L, 170L), second.batchTimes);
+    }
+
+    @Test
+    public void testDownAndUpFlushPendingMovesFirst() {
+        Event down = inject(160);
+        Event move1 = move(161);
+        Event move2 = move(163);
+        Event up = inject(165);
+
+        Assert.assertEquals(Arrays.asList(down, move1, move2, up), injector.injected);
+        Assert.assertEquals(Arrays.asList(163L), move2.batchTimes);
+
+        // a move has already been injected during this window
+        Event down2 = inject(166);
+        Event move3 = move(167);
+        Assert.assertEquals(Arrays.asList(down, move1, move2, up, down2), injector.injected);
+        executor.runAll();
+        Assert.assertEquals(Arrays.asList(down, move1, move2, up, down2, move3), injector.injected);
+    }
+
+    @Test
+    public void testMoveNotBatchableFlushesPendingMoves() {
+        Event first = move(160);
+        Event second = move(162);
+        Event twoPointers = new Event(164, 2);
+        clock.now = 164;
+        scheduler.injectMove(twoPointers);
+
+        // the pending move is injected first, the new one waits for the end of the window
+        Assert.assertEquals(Arrays.asList(first, second), injector.injected);
+        executor.runAll();
+        Assert.assertEquals(Arrays.asList(first, second, twoPointers), injector.injected);
+    }
+
+    @Test
+    public void testFlushCancelsScheduledTask() {
+        move(160);
+        Event pending = move(162);
+        Assert.assertEquals(1, executor.tasks.size());
+        ManualTask task = executor.tasks.get(0);
+
+        scheduler.flush();
+        Assert.assertTrue(task.isCancelled());
+        Assert.assertTrue(pending.recycled);
+    }
+
+    @Test
+    public void testStaleFlushTaskDoesNotFlushNextMoves() {
+        move(160);
+        move(162);
+        ManualTask stale = executor.tasks.remove(0);
+        inject(163);
+
+        // moves of the next window, pending until its end
+        Event next1 = move(176);
+        Event next2 = move(178);
+        Assert.assertEquals(1, executor.tasks.size());
+
+        // the task of the previous window was already running when cancelled
+        Assert.assertTrue(stale.isCancelled());
+        stale.command.run();
+        Assert.assertFalse(injector.injected.contains(next2));
+
+        executor.runAll();
+        Assert.assertEquals(next2, injector.injected.get(injector.injected.size() - 1));
+        Assert.assertEquals(next1, injector.injected.get(injector.injected.size() - 2));
+    }
+}
@@ -0,0 +1,131 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void testCounter() {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.Counter counter = registry.counter("test_total", "A test counter");
+        counter.inc();
+        counter.add(41);
+
+        Assert.assertSame(counter, registry.counter("test_total", "A test counter"));
+        Assert.assertEquals("# HELP test_total A test counter\n"
+                + "# TYPE test_total counter\n"
+                + "test_total 42\n", registry.render());
+    }
+
+    @Test
+    public void testLabels() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("sent_total", "Sent", "client=\"2\"").add(20);
+        registry.counter("sent_total", "Sent", "client=\"1\"").add(10);
+
+        Assert.assertEquals("# HELP sent_total Sent\n"
+                + "# TYPE sent_total counter\n"
+                + "sent_total{client=\"1\"} 10\n"
+                + "sent_total{client=\"2\"} 20\n", registry.render());
+
+        registry.remove("sent_total", "client=\"2\"");
+        Assert.assertEquals("# HELP sent_total Sent\n"
+                + "# TYPE sent_total counter\n"
+                + "sent_total{client=\"1\"} 10\n", registry.render());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTypeMismatch() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("metric", "A metric");
+        registry.gauge("metric", "A metric");
+    }
+
+    @Test
+    public void testHistogramBuckets() {
+        for (long value = 0; value < 100_000; ++value) {
+            int index = MetricsRegistry.Histogram.getBucketIndex(value);
+            // the upper bound is inclusive, like the le label of the rendered buckets
+            Assert.assertTrue(value <= MetricsRegistry.Histogram.getBucketUpperBound(index));
+            if (index > 0) {
+                Assert.assertTrue(value > MetricsRegistry.Histogram.getBucketUpperBound(index - 1));
+            }
+        }
+        for (int index = 0; index < 100; ++index) {
+            long upperBound = MetricsRegistry.Histogram.getBucketUpperBound(index);
+            Assert.assertEquals(index, MetricsRegistry.Histogram.getBucketIndex(upperBound));
+        }
+    }
+
+    @Test
+    public void testHistogramQuantiles() {
+        MetricsRegistry.Histogram histogram = new MetricsRegistry().histogram("latency_seconds", "Latency");
+        for (int i = 1; i <= 100; ++i) {
+            histogram.record(i * 1000);
+        }
+        Assert.assertEquals(100, histogram.getCount());
+        long median = histogram.getQuantileUpperBound(0.5);
+        Assert.assertTrue(median > 50_000 && median <= 50_000 * 5 / 4);
+        long p99 = histogram.getQuantileUpperBound(0.99);
+        Assert.assertTrue(p99 > 99_000 && p99 <= 99_000 * 5 / 4);
+    }
+
+    @Test
+    public void testHistogramRendering() {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.Histogram histogram = registry.histogram("latency_seconds", "Latency");
+        histogram.record(1);
+        histogram.record(5);
+
+        Assert.assertEquals("# HELP latency_seconds Latency\n"
+                + "# TYPE latency_seconds histogram\n"
+                + "latency_seconds_bucket{le=\"1.0E-6\"} 1\n"
+                + "latency_seconds_bucket{le=\"2.0E-6\"} 1\n"
+                + "latency_seconds_bucket{le=\"3.0E-6\"} 1\n"
+                + "latency_seconds_bucket{le=\"4.0E-6\"} 1\n"
+                + "latency_seconds_bucket{le=\"5.0E-6\"} 2\n"
+                + "latency_seconds_bucket{le=\"+Inf\"} 2\n"
+                + "latency_seconds_sum 6.0E-6\n"
+                + "latency_seconds_count 2\n", registry.render());
+    }
+
+    @Test
+    public void testHistogramRenderingMonotonicWhileRecording() throws InterruptedException {
+        final MetricsRegistry registry = new MetricsRegistry();
+        final MetricsRegistry.Histogram histogram = registry.histogram("latency_seconds", "Latency");
+        final AtomicBoolean recording = new AtomicBoolean(true);
+        Thread recorder = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                long value = 0;
+                while (recording.get()) {
+                    histogram.record(value++ % 100);
+                }
+            }
+        });
+        recorder.start();
+        try {
+            for (int i = 0; i < 1000; ++i) {
+                long previous = 0;
+                long count = -1;
+                for (String line : registry.render().split("\n")) {
+                    if (line.startsWith("latency_seconds_bucket")) {
+                        long cumulated = Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+                        Assert.assertTrue(line, cumulated >= previous);
+                        previous = cumulated;
+                    } else if (line.startsWith("latency_seconds_count")) {
+                        count = Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+                    }
+                }
+                // the last bucket is +Inf
+                Assert.assertEquals(previous, count);
+            }
+        } finally {
+            recording.set(false);
+            recorder.join();
+        }
+    }
+}
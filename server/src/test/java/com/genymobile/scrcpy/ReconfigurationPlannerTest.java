@@ -0,0 +1,210 @@
+package com.genymobile.scrcpy;
+
+import android.graphics.Rect;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class ReconfigurationPlannerTest {
+
+    private static final class FakeEncoder implements ReconfigurationPlanner.Encoder {
+        private final List<String> calls = new ArrayList<>();
+
+        @Override
+        public void setParameters(int bitRate, int maxFps) {
+            calls.add("setParameters " + bitRate + " " + maxFps);
+        }
+
+        @Override
+        public void requestSyncFrame() {
+            calls.add("requestSyncFrame");
+        }
+
+        @Override
+        public void updateViewport() {
+            calls.add("updateViewport");
+        }
+
+        @Override
+        public void restart() {
+            calls.add("restart");
+        }
+    }
+
+    private static VideoSettings createSettings() {
+        VideoSettings settings = new VideoSettings();
+        settings.setBitRate(8_000_000);
+        settings.setMaxFps(30);
+        settings.setBounds(1080, 1920);
+        settings.setSendFrameMeta(true);
+        return settings;
+    }
+
+    private static List<String> execute(int plan, VideoSettings settings) {
+        FakeEncoder encoder = new FakeEncoder();
+        ReconfigurationPlanner.apply(plan, encoder, settings);
+        return encoder.calls;
+    }
+
+    @Test
+    public void testNoChange() {
+        int plan = ReconfigurationPlanner.plan(createSettings(), createSettings());
+        Assert.assertEquals(ReconfigurationPlanner.NONE, plan);
+        Assert.assertEquals(Collections.emptyList(), execute(plan, createSettings()));
+    }
+
+    @Test
+    public void testBitRateChange() {
+        VideoSettings requested = createSettings();
+        requested.setBitRate(2_000_000);
+        int plan = ReconfigurationPlanner.plan(createSettings(), requested);
+        Assert.assertEquals(ReconfigurationPlanner.UPDATE_PARAMETERS, plan);
+        Assert.assertEquals(Collections.singletonList("setParameters 2000000 30"), execute(plan, requested));
+    }
+
+    @Test
+    public void testMaxFpsChange() {
+        VideoSettings requested = createSettings();
+        requested.setMaxFps(15);
+        int plan = ReconfigurationPlanner.plan(createSettings(), requested);
+        Assert.assertEquals(ReconfigurationPlanner.UPDATE_PARAMETERS, plan);
+        Assert.assertEquals(Collections.singletonList("setParameters 8000000 15"), execute(plan, requested));
+    }
+
+    @Test
+    public void testMaxFpsLimitRemoved() {
+        VideoSettings requested = createSettings();
+        requested.setMaxFps(0);
+        int plan = ReconfigurationPlanner.plan(createSettings(), requested);
+        Assert.assertEquals(ReconfigurationPlanner.RESTART, plan);
+    }
+
+    @Test
+    public void testResolutionChange() {
+        VideoSettings requested = createSettings();
+        requested.setBounds(720, 1280);
+        requested.setBitRate(2_000_000);
+        int plan = ReconfigurationPlanner.plan(createSettings(), requested);
+        Assert.assertEquals(ReconfigurationPlanner.RESTART, plan);
+        // a new codec is configured with the new parameters, no need to update them
+        Assert.assertEquals(Collections.singletonList("restart"), execute(plan, requested));
+    }
+
+    @Test
+    public void testViewportMove() {
+        VideoSettings current = createSettings();
+        current.setCrop(new Rect(0, 0, 540, 960));
+        VideoSettings requested = createSettings();
+        requested.setCrop(new Rect(300, 500, 840, 1460));
+        int plan = ReconfigurationPlanner.plan(current, requested);
+        Assert.assertEquals(ReconfigurationPlanner.UPDATE_VIEWPORT, plan);
+        Assert.assertEquals(Collections.singletonList("updateViewport"), execute(plan, requested));
+    }
+
+    @Test
+    public void testViewportZoomWithSameVideoSize() {
+        VideoSettings current = createSettings();
+        current.setBounds(540, 960);
+        current.setCrop(new Rect(0, 0, 1080, 1920));
+        VideoSettings requested = createSettings();
+        requested.setBounds(540, 960);
+        // twice the zoom, same video size
+        requested.setCrop(new Rect(270, 480, 810, 1440));
+        requested.setBitRate(2_000_000);
+        int plan = ReconfigurationPlanner.plan(current, requested);
+        Assert.assertEquals(ReconfigurationPlanner.UPDATE_VIEWPORT | ReconfigurationPlanner.UPDATE_PARAMETERS, plan);
+        Assert.assertEquals(Arrays.asList("updateViewport", "setParameters 2000000 30"), execute(plan, requested));
+    }
+
+    @Test
+    public void testViewportResize() {
+        VideoSettings current = createSettings();
+        current.setCrop(new Rect(0, 0, 540, 960));
+        VideoSettings requested = createSettings();
+        requested.setCrop(new Rect(0, 0, 720, 960));
+        Assert.assertEquals(ReconfigurationPlanner.RESTART, ReconfigurationPlanner.plan(current, requested));
+    }
+
+    @Test
+    public void testViewportFromFullScreen() {
+        VideoSettings requested = createSettings();
+        requested.setCrop(new Rect(0, 0, 540, 960));
+        Assert.assertEquals(ReconfigurationPlanner.RESTART, ReconfigurationPlanner.plan(createSettings(), requested));
+    }
+
+    @Test
+    public void testOrientationLockChange() {
+        VideoSettings requested = createSettings();
+        requested.setLockedVideoOrientation(1);
+        Assert.assertEquals(ReconfigurationPlanner.RESTART, ReconfigurationPlanner.plan(createSettings(), requested));
+    }
+
+    @Test
+    public void testCodecChange() {
+        VideoSettings encoderChanged = createSettings();
+        encoderChanged.setEncoderName("OMX.google.h264.encoder");
+        Assert.assertEquals(ReconfigurationPlanner.RESTART, ReconfigurationPlanner.plan(createSettings(), encoderChanged));
+
+        VideoSettings optionsChanged = createSettings();
+        optionsChanged.setCodecOptions("profile=1");
+        Assert.assertEquals(ReconfigurationPlanner.RESTART, ReconfigurationPlanner.plan(createSettings(), optionsChanged));
+
+        VideoSettings intervalChanged = createSettings();
+        intervalChanged.setIFrameInterval((byte) 1);
+        Assert.assertEquals(ReconfigurationPlanner.RESTART, ReconfigurationPlanner.plan(createSettings(), intervalChanged));
+        VideoSettings mimeTypeChanged = createSettings();
+        mimeTypeChanged.setMimeTypes("video/hevc,video/avc");
+        Assert.assertEquals(ReconfigurationPlanner.RESTART, ReconfigurationPlanner.plan(createSettings(), mimeTypeChanged));
+
+        VideoSettings profileChanged = createSettings();
+        profileChanged.setProfile(8);
+        Assert.assertEquals(ReconfigurationPlanner.RESTART, ReconfigurationPlanner.plan(createSettings(), profileChanged));
+
+        VideoSettings tuningChanged = createSettings();
+        tuningChanged.setTuning(EncoderTuning.INTERACTIVE);
+        Assert.assertEquals(ReconfigurationPlanner.RESTART, ReconfigurationPlanner.plan(createSettings(), tuningChanged));
+    }
+
+    @Test
+    public void testFrameMetaChange() {
+        VideoSettings requested = createSettings();
+        requested.setSendFrameMeta(false);
+        int plan = ReconfigurationPlanner.plan(createSettings(), requested);
+        Assert.assertEquals(ReconfigurationPlanner.REQUEST_SYNC_FRAME, plan);
+    }
+
+    @Test
+    public void testJoinWithSameSettings() {
+        int plan = ReconfigurationPlanner.planJoin(createSettings(), createSettings());
+        Assert.assertEquals(ReconfigurationPlanner.REQUEST_SYNC_FRAME, plan);
+        Assert.assertEquals(Collections.singletonList("requestSyncFrame"), execute(plan, createSettings()));
+    }
+
+    @Test
+    public void testJoinWithNewBitRate() {
+        VideoSettings requested = createSettings();
+        requested.setBitRate(4_000_000);
+        int plan = ReconfigurationPlanner.planJoin(createSettings(), requested);
+        Assert.assertEquals(ReconfigurationPlanner.UPDATE_PARAMETERS | ReconfigurationPlanner.REQUEST_SYNC_FRAME, plan);
+        Assert.assertEquals(Arrays.asList("setParameters 4000000 30", "requestSyncFrame"), execute(plan, requested));
+    }
+
+    @Test
+    public void testJoinWithNewResolution() {
+        VideoSettings requested = createSettings();
+        requested.setBounds(720, 1280);
+        int plan = ReconfigurationPlanner.planJoin(createSettings(), requested);
+        Assert.assertEquals(ReconfigurationPlanner.RESTART, plan);
+        Assert.assertEquals(Collections.singletonList("restart"), execute(plan, requested));
+    }
+
+    @Test
+    public void testRotation() {
+        Assert.assertEquals(Collections.singletonList("restart"), execute(ReconfigurationPlanner.planRotation(), createSettings()));
+    }
+}
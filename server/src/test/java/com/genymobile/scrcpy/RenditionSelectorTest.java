@@ -0,0 +1,66 @@
+package com.genymobile.scrcpy;
+
+import android.graphics.Rect;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class RenditionSelectorTest {
+
+    private static VideoSettings createSettings(int width, int height, int bitRate) {
+        VideoSettings settings = new VideoSettings();
+        settings.setBounds(width, height);
+        settings.setBitRate(bitRate);
+        settings.setMaxFps(30);
+        return settings;
+    }
+
+    @Test
+    public void testFirstRendition() {
+        List<VideoSettings> renditions = new ArrayList<>();
+        int index = RenditionSelector.select(renditions, createSettings(1080, 1920, 8_000_000), 3);
+        Assert.assertEquals(RenditionSelector.NEW_RENDITION, index);
+    }
+
+    @Test
+    public void testJoinMatchingRendition() {
+        List<VideoSettings> renditions = Arrays.asList(createSettings(1080, 1920, 8_000_000), createSettings(540, 960, 2_000_000));
+        int index = RenditionSelector.select(renditions, createSettings(540, 960, 2_000_000), 3);
+        Assert.assertEquals(1, index);
+    }
+
+    @Test
+    public void testNewRenditionForDifferentBitRate() {
+        // joining would change the bitrate of the clients of the existing rendition
+        List<VideoSettings> renditions = Collections.singletonList(createSettings(1080, 1920, 8_000_000));
+        int index = RenditionSelector.select(renditions, createSettings(1080, 1920, 2_000_000), 3);
+        Assert.assertEquals(RenditionSelector.NEW_RENDITION, index);
+    }
+
+    @Test
+    public void testNewRenditionForRegionOfInterest() {
+        // joining would move the viewport of the clients of the existing rendition
+        VideoSettings fullScreen = createSettings(1080, 1920, 8_000_000);
+        fullScreen.setCrop(new Rect(0, 0, 540, 960));
+        VideoSettings regionOfInterest = createSettings(1080, 1920, 8_000_000);
+        regionOfInterest.setCrop(new Rect(100, 200, 640, 1160));
+        int index = RenditionSelector.select(Collections.singletonList(fullScreen), regionOfInterest, 3);
+        Assert.assertEquals(RenditionSelector.NEW_RENDITION, index);
+    }
+
+    @Test
+    public void testClosestRenditionBeyondLimit() {
+        List<VideoSettings> renditions = Arrays.asList(createSettings(1080, 1920, 8_000_000), createSettings(540, 960, 2_000_000),
+                createSettings(272, 480, 500_000));
+        int index = RenditionSelector.select(renditions, createSettings(720, 1280, 4_000_000), 3);
+        Assert.assertEquals(1, index);
+
+        index = RenditionSelector.select(renditions, createSettings(1080, 1920, 4_000_000), 3);
+        Assert.assertEquals(0, index);
+    }
+}
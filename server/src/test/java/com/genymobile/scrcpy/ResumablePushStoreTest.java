@@ -0,0 +1,230 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Random;
+
+public class ResumablePushStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] createContent(int size) {
+        byte[] content = new byte[size];
+        new Random(42).nextBytes(content);
+        return content;
+    }
+
+    private static byte[] sha256(byte[] content) throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance("SHA-256").digest(content);
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int offset = 0;
+            while (offset < data.length) {
+                offset += in.read(data, offset, data.length - offset);
+            }
+        }
+        return data;
+    }
+
+    private static void write(ResumablePushStore.Upload upload, byte[] content, int from, int to) throws IOException {
+        upload.write(ByteBuffer.wrap(content, from, to - from));
+    }
+
+    @Test
+    public void testCompleteUpload() throws Exception {
+        ResumablePushStore store = new ResumablePushStore(folder.newFolder("partial"));
+        byte[] content = createContent(100_000);
+        byte[] hash = sha256(content);
+
+        ResumablePushStore.Upload upload = store.open(hash, content.length);
+        Assert.assertEquals(0, upload.getOffset());
+        write(upload, content, 0, 60_000);
+        write(upload, content, 60_000, content.length);
+        Assert.assertEquals(content.length, upload.getOffset());
+
+        File target = new File(folder.getRoot(), "file.bin");
+        Assert.assertTrue(store.complete(upload, target));
+        Assert.assertArrayEquals(content, readFile(target));
+    }
+
+    @Test
+    public void testResumeSuspendedUpload() throws Exception {
+        ResumablePushStore store = new ResumablePushStore(folder.newFolder("partial"));
+        byte[] content = createContent(100_000);
+        byte[] hash = sha256(content);
+
+        ResumablePushStore.Upload upload = store.open(hash, content.length);
+        write(upload, content, 0, 30_000);
+        // the connection is lost
+        store.suspend(upload);
+
+        upload = store.open(hash, content.length);
+        Assert.assertEquals(30_000, upload.getOffset());
+        write(upload, content, 30_000, content.length);
+
+        File target = new File(folder.getRoot(), "file.bin");
+        Assert.assertTrue(store.complete(upload, target));
+        Assert.assertArrayEquals(content, readFile(target));
+    }
+
+    @Test
+    public void testResumeAfterRestart() throws Exception {
+        File directory = folder.newFolder("partial");
+        byte[] content = createContent(200_000);
+        byte[] hash = sha256(content);
+
+        ResumablePushStore store = new ResumablePushStore(directory);
+        ResumablePushStore.Upload upload = store.open(hash, content.length);
+        write(upload, content, 0, 150_000);
+        store.suspend(upload);
+
+        // the hash state is lost, it must be computed from the partial file
+        store = new ResumablePushStore(directory);
+        upload = store.open(hash, content.length);
+        Assert.assertEquals(150_000, upload.getOffset());
+        write(upload, content, 150_000, content.length);
+
+        File target = new File(folder.getRoot(), "file.bin");
+        Assert.assertTrue(store.complete(upload, target));
+        Assert.assertArrayEquals(content, readFile(target));
+    }
+
+    @Test
+    public void testHashMismatch() throws Exception {
+        File directory = folder.newFolder("partial");
+        ResumablePushStore store = new ResumablePushStore(directory);
+        byte[] content = createContent(10_000);
+        byte[] hash = sha256(content);
+        byte[] corrupted = Arrays.copyOf(content, content.length);
+        corrupted[5000] ^= 1;
+
+        ResumablePushStore.Upload upload = store.open(hash, content.length);
+        write(upload, corrupted, 0, corrupted.length);
+
+        File target = new File(folder.getRoot(), "file.bin");
+        Assert.assertFalse(store.complete(upload, target));
+        Assert.assertFalse(target.exists());
+        // the partial file is deleted, the next push starts from the beginning
+        Assert.assertEquals(0, directory.list().length);
+        Assert.assertEquals(0, store.open(hash, content.length).getOffset());
+    }
+
+    @Test(expected = IOException.class)
+    public void testWriteBeyondSize() throws Exception {
+        ResumablePushStore store = new ResumablePushStore(folder.newFolder("partial"));
+        byte[] content = createContent(1000);
+
+        ResumablePushStore.Upload upload = store.open(sha256(content), 500);
+        write(upload, content, 0, content.length);
+    }
+
+    @Test
+    public void testBusy() throws Exception {
+        ResumablePushStore store = new ResumablePushStore(folder.newFolder("partial"));
+        byte[] content = createContent(1000);
+        byte[] hash = sha256(content);
+
+        ResumablePushStore.Upload upload = store.open(hash, content.length);
+        Assert.assertNull(store.open(hash, content.length));
+
+        store.discard(upload);
+        Assert.assertNotNull(store.open(hash, content.length));
+    }
+
+    @Test
+    public void testDeduplication() throws Exception {
+        ResumablePushStore store = new ResumablePushStore(folder.newFolder("partial"));
+        byte[] content = createContent(10_000);
+        byte[] hash = sha256(content);
+        Assert.assertNull(store.findCompleted(hash, content.length));
+
+        ResumablePushStore.Upload upload = store.open(hash, content.length);
+        write(upload, content, 0, content.length);
+        File target = new File(folder.getRoot(), "file.bin");
+        Assert.assertTrue(store.complete(upload, target));
+
+        Assert.assertEquals(target, store.findCompleted(hash, content.length));
+        Assert.assertNull(store.findCompleted(hash, content.length + 1));
+
+        File copy = new File(folder.getRoot(), "copy.bin");
+        ResumablePushStore.copy(target, copy);
+        Assert.assertArrayEquals(content, readFile(copy));
+
+        // the file is not the pushed content anymore
+        Assert.assertTrue(target.delete());
+        Assert.assertNull(store.findCompleted(hash, content.length));
+    }
+
+    private static File createPartialFile(File directory, String key, int size, long lastModified) throws IOException {
+        File file = new File(directory, key + ".part");
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size);
+        }
+        Assert.assertTrue(file.setLastModified(lastModified));
+        return file;
+    }
+
+    @Test
+    public void testCleanUpStalePartialFiles() throws Exception {
+        File directory = folder.newFolder("partial");
+        long hour = 60 * 60 * 1000L;
+        long now = 100 * hour;
+        ResumablePushStore store = new ResumablePushStore(directory, 24 * hour, 1_000_000);
+
+        byte[] content = createContent(1000);
+        ResumablePushStore.Upload upload = store.open(sha256(content), content.length);
+        write(upload, content, 0, 500);
+        File activeFile = new File(directory, ResumablePushStore.toHex(sha256(content)) + ".part");
+        Assert.assertTrue(activeFile.setLastModified(now - 48 * hour));
+
+        File stale = createPartialFile(directory, "aa", 100, now - 25 * hour);
+        File recent = createPartialFile(directory, "bb", 100, now - hour);
+        File other = new File(directory, "other");
+        Assert.assertTrue(other.createNewFile());
+        Assert.assertTrue(other.setLastModified(now - 48 * hour));
+
+        Assert.assertEquals(1, store.cleanUp(now));
+        Assert.assertFalse(stale.exists());
+        Assert.assertTrue(recent.exists());
+        // being written
+        Assert.assertTrue(activeFile.exists());
+        // not a partial file
+        Assert.assertTrue(other.exists());
+    }
+
+    @Test
+    public void testCleanUpOldestPartialFilesBeyondMaxSize() throws Exception {
+        File directory = folder.newFolder("partial");
+        long now = 1_000_000_000L;
+        ResumablePushStore store = new ResumablePushStore(directory, Long.MAX_VALUE / 2, 250);
+
+        File oldest = createPartialFile(directory, "aa", 100, now - 3000);
+        File older = createPartialFile(directory, "bb", 100, now - 2000);
+        File newest = createPartialFile(directory, "cc", 100, now - 1000);
+
+        Assert.assertEquals(1, store.cleanUp(now));
+        Assert.assertFalse(oldest.exists());
+        Assert.assertTrue(older.exists());
+        Assert.assertTrue(newest.exists());
+    }
+
+    @Test
+    public void testToHex() {
+        Assert.assertEquals("00ff7f80", ResumablePushStore.toHex(new byte[] {0, (byte) 0xff, 0x7f, (byte) 0x80}));
+    }
+}
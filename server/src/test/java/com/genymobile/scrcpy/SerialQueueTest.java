@@ -0,0 +1,140 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class SerialQueueTest {
+
+    private static final class ManualExecutor implements Executor {
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.remove(0).run();
+            }
+        }
+    }
+
+    private static final class RecordingHandler implements SerialQueue.Handler<Integer> {
+        private final List<Integer> handled = new ArrayList<>();
+
+        @Override
+        public void handle(Integer item) {
+            handled.add(item);
+        }
+    }
+
+    @Test
+    public void testSingleDrainTask() {
+        ManualExecutor executor = new ManualExecutor();
+        RecordingHandler handler = new RecordingHandler();
+        MetricsRegistry.Gauge depth = new MetricsRegistry().gauge("depth", "Depth");
+        SerialQueue<Integer> queue = new SerialQueue<>(executor, handler, depth);
+
+        queue.add(1);
+        queue.add(2);
+        queue.add(3);
+
+        // a single task drains all the items
+        Assert.assertEquals(1, executor.tasks.size());
+        Assert.assertEquals(3, queue.size());
+        Assert.assertEquals(3, depth.get());
+
+        executor.runAll();
+        Assert.assertEquals(Arrays.asList(1, 2, 3), handler.handled);
+        Assert.assertEquals(0, queue.size());
+        Assert.assertEquals(0, depth.get());
+
+        // once drained, a new item submits a new task
+        queue.add(4);
+        Assert.assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4), handler.handled);
+    }
+
+    @Test
+    public void testBatchesTakeTurns() {
+        ManualExecutor executor = new ManualExecutor();
+        final List<String> handled = new ArrayList<>();
+        MetricsRegistry.Gauge depth = new MetricsRegistry().gauge("depth", "Depth");
+        SerialQueue<String> queueA = new SerialQueue<>(executor, new SerialQueue.Handler<String>() {
+            @Override
+            public void handle(String item) {
+                handled.add(item);
+            }
+        }, depth, 2);
+        SerialQueue<String> queueB = new SerialQueue<>(executor, new SerialQueue.Handler<String>() {
+            @Override
+            public void handle(String item) {
+                handled.add(item);
+            }
+        }, depth, 2);
+
+        for (int i = 0; i < 5; ++i) {
+            queueA.add("a" + i);
+        }
+        queueB.add("b0");
+        queueB.add("b1");
+        queueB.add("b2");
+
+        executor.runAll();
+        // at most 2 items in a row, then the other queue gets a turn
+        Assert.assertEquals(Arrays.asList("a0", "a1", "b0", "b1", "a2", "a3", "b2", "a4"), handled);
+        Assert.assertEquals(0, depth.get());
+    }
+
+    @Test
+    public void testOrderAndExclusionOnThreadPool() throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        final int count = 10_000;
+        final List<Integer> handled = new ArrayList<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        final int[] running = new int[1];
+        final boolean[] overlap = new boolean[1];
+        SerialQueue.Handler<Integer> handler = new SerialQueue.Handler<Integer>() {
+            @Override
+            public void handle(Integer item) {
+                synchronized (running) {
+                    ++running[0];
+                    if (running[0] > 1) {
+                        overlap[0] = true;
+                    }
+                }
+                // not synchronized on purpose: the items must never be handled concurrently
+                handled.add(item);
+                synchronized (running) {
+                    --running[0];
+                }
+                if (item == count - 1) {
+                    done.countDown();
+                }
+            }
+        };
+        SerialQueue<Integer> queue = new SerialQueue<>(executor, handler, new MetricsRegistry().gauge("depth", "Depth"));
+        for (int i = 0; i < count; ++i) {
+            queue.add(i);
+        }
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+        Assert.assertFalse(overlap[0]);
+        Assert.assertEquals(count, handled.size());
+        for (int i = 0; i < count; ++i) {
+            Assert.assertEquals(i, (int) handled.get(i));
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SessionRegistryTest {
+
+    private static final class Rendition {
+    }
+
+    private static final int DISPLAY_ID = 0;
+
+    @Test
+    public void testClientIds() {
+        SessionRegistry<Rendition> registry = new SessionRegistry<>(new Rendition[0]);
+
+        int id1 = registry.reserveClientId();
+        int id2 = registry.reserveClientId();
+        Assert.assertNotEquals(id1, id2);
+        Assert.assertEquals(2, registry.getClientCount());
+
+        registry.releaseClientId(id2);
+        Assert.assertEquals(1, registry.getClientCount());
+        Assert.assertNotEquals(id2, registry.reserveClientId());
+    }
+
+    @Test
+    public void testRenditions() {
+        SessionRegistry<Rendition> registry = new SessionRegistry<>(new Rendition[0]);
+        Assert.assertEquals(0, registry.getRenditions(DISPLAY_ID).length);
+        Assert.assertSame(registry.getDisplayLock(DISPLAY_ID), registry.getDisplayLock(DISPLAY_ID));
+        Assert.assertNotSame(registry.getDisplayLock(DISPLAY_ID), registry.getDisplayLock(DISPLAY_ID + 1));
+
+        Rendition rendition = new Rendition();
+        registry.addRendition(DISPLAY_ID, rendition);
+        Assert.assertArrayEquals(new Rendition[] {rendition}, registry.getRenditions(DISPLAY_ID));
+        Assert.assertEquals(0, registry.getRenditions(DISPLAY_ID + 1).length);
+
+        Assert.assertTrue(registry.removeRendition(DISPLAY_ID, rendition));
+        Assert.assertFalse(registry.removeRendition(DISPLAY_ID, rendition));
+        Assert.assertEquals(0, registry.getRenditions(DISPLAY_ID).length);
+    }
+}
@@ -0,0 +1,124 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+public class SharedFrameTest {
+
+    private static ByteBuffer payload(int length) {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        for (int i = 0; i < length; ++i) {
+            buffer.put((byte) i);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test
+    public void testSmallPacket() {
+        SharedFrame.Pool pool = new SharedFrame.Pool();
+        SharedFrame frame = pool.acquire(null, payload(100), 0);
+
+        ByteBuffer view = frame.view();
+        Assert.assertEquals(102, view.remaining());
+        Assert.assertEquals((byte) 0x82, view.get());
+        Assert.assertEquals(100, view.get());
+        Assert.assertEquals(0, view.get());
+        Assert.assertEquals(99, view.get(view.limit() - 1));
+    }
+
+    @Test
+    public void testMediumPacket() {
+        SharedFrame.Pool pool = new SharedFrame.Pool();
+        SharedFrame frame = pool.acquire(null, payload(1000), 0);
+
+        ByteBuffer view = frame.view();
+        Assert.assertEquals(1004, view.remaining());
+        Assert.assertEquals((byte) 0x82, view.get());
+        Assert.assertEquals(126, view.get());
+        Assert.assertEquals(1000, view.getShort());
+    }
+
+    @Test
+    public void testLargePacket() {
+        SharedFrame.Pool pool = new SharedFrame.Pool();
+        SharedFrame frame = pool.acquire(null, payload(100000), 0);
+
+        ByteBuffer view = frame.view();
+        Assert.assertEquals(100010, view.remaining());
+        Assert.assertEquals((byte) 0x82, view.get());
+        Assert.assertEquals(127, view.get());
+        Assert.assertEquals(100000, view.getLong());
+    }
+
+    @Test
+    public void testFrameMetaAndPacket() {
+        SharedFrame.Pool pool = new SharedFrame.Pool();
+        ByteBuffer frameMeta = payload(12);
+        ByteBuffer packet = payload(200);
+        SharedFrame frame = pool.acquire(frameMeta, packet, 0);
+
+        ByteBuffer view = frame.view();
+        Assert.assertEquals(2 + 12 + 4 + 200, view.remaining());
+        Assert.assertEquals((byte) 0x82, view.get());
+        Assert.assertEquals(12, view.get());
+        view.position(2 + 12);
+        Assert.assertEquals((byte) 0x82, view.get());
+        Assert.assertEquals(126, view.get());
+        Assert.assertEquals(200, view.getShort());
+
+        // the source buffers must not be consumed
+        Assert.assertEquals(12, frameMeta.remaining());
+        Assert.assertEquals(200, packet.remaining());
+    }
+
+    @Test
+    public void testFrameTimestampOnlyInRequestingViews() {
+        SharedFrame.Pool pool = new SharedFrame.Pool();
+        SharedFrame frame = pool.acquire(payload(12), payload(200), payload(8), 0);
+
+        ByteBuffer withTimestamp = frame.view(true);
+        Assert.assertEquals(2 + 12 + 4 + 200 + 2 + 8, withTimestamp.remaining());
+        Assert.assertEquals(withTimestamp.remaining(), frame.getLength(true));
+        withTimestamp.position(2 + 12 + 4 + 200);
+        Assert.assertEquals((byte) 0x82, withTimestamp.get());
+        Assert.assertEquals(8, withTimestamp.get());
+
+        // the other clients receive the same frame meta and packet, without the timestamp
+        ByteBuffer withoutTimestamp = frame.view(false);
+        Assert.assertEquals(2 + 12 + 4 + 200, withoutTimestamp.remaining());
+        Assert.assertEquals(withoutTimestamp.remaining(), frame.getLength(false));
+        Assert.assertEquals(12, withoutTimestamp.get(1));
+    }
+
+    @Test
+    public void testViewsAreIndependent() {
+        SharedFrame.Pool pool = new SharedFrame.Pool();
+        SharedFrame frame = pool.acquire(null, payload(10), 0);
+
+        ByteBuffer view1 = frame.view();
+        ByteBuffer view2 = frame.view();
+        view1.position(view1.limit());
+        Assert.assertEquals(12, view2.remaining());
+        Assert.assertTrue(view2.isReadOnly());
+    }
+
+    @Test
+    public void testRecycle() {
+        SharedFrame.Pool pool = new SharedFrame.Pool();
+        SharedFrame frame = pool.acquire(null, payload(10), 0);
+        frame.retain();
+        frame.release();
+
+        // still referenced once, must not be reused
+        SharedFrame other = pool.acquire(null, payload(10), 0);
+        Assert.assertNotSame(frame, other);
+
+        frame.release();
+        SharedFrame reused = pool.acquire(null, payload(20), 0);
+        Assert.assertSame(frame, reused);
+        Assert.assertEquals(22, reused.getLength());
+    }
+}
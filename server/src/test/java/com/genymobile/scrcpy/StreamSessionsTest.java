@@ -0,0 +1,274 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class StreamSessionsTest {
+
+    private static final int DISPLAY_ID = 0;
+    private static final int MAX_RENDITIONS = 3;
+
+    private static final class Rendition implements StreamSessions.Rendition<Integer> {
+        private final Object displayLock;
+        private final SubscriberList<Integer> clients = new SubscriberList<>(new Integer[0]);
+        private volatile VideoSettings videoSettings;
+        // the viewer count as reported to the encoder, only changed with the lock of the display held
+        private int viewers;
+        private final AtomicInteger releaseCount = new AtomicInteger();
+        private final AtomicInteger leftCount = new AtomicInteger();
+
+        Rendition(SessionRegistry<Rendition> registry, VideoSettings videoSettings) {
+            this.displayLock = registry.getDisplayLock(videoSettings.getDisplayId());
+            this.videoSettings = videoSettings;
+        }
+
+        @Override
+        public VideoSettings getVideoSettings() {
+            return videoSettings;
+        }
+
+        @Override
+        public int getViewerCount() {
+            return clients.size();
+        }
+
+        @Override
+        public String getMimeType() {
+            // as if every codec was supported
+            return CodecNegotiator.getPreferred(videoSettings.getMimeTypes());
+        }
+
+        @Override
+        public void join(Integer client, VideoSettings videoSettings) {
+            Assert.assertTrue(Thread.holdsLock(displayLock));
+            Assert.assertEquals("Joined a released rendition", 0, releaseCount.get());
+            // a viewer may join again, to change the settings
+            clients.add(client);
+            viewers = clients.size();
+            this.videoSettings = videoSettings;
+        }
+
+        @Override
+        public boolean removeViewer(Integer client) {
+            Assert.assertTrue(Thread.holdsLock(displayLock));
+            if (!clients.remove(client)) {
+                return false;
+            }
+            viewers = clients.size();
+            return true;
+        }
+
+        @Override
+        public void onLeft(boolean last) {
+            Assert.assertFalse(Thread.holdsLock(displayLock));
+            leftCount.incrementAndGet();
+            if (last) {
+                Assert.assertEquals(1, releaseCount.incrementAndGet());
+                Assert.assertEquals(0, clients.size());
+                synchronized (displayLock) {
+                    Assert.assertEquals(0, viewers);
+                }
+            }
+        }
+    }
+
+    private final SessionRegistry<Rendition> registry = new SessionRegistry<>(new Rendition[0]);
+    private final List<Rendition> created = new CopyOnWriteArrayList<>();
+
+    private StreamSessions<Integer, Rendition> createSessions(boolean simulcast) {
+        return new StreamSessions<>(registry, new StreamSessions.Factory<Rendition>() {
+            @Override
+            public Rendition create(VideoSettings videoSettings) {
+                Rendition rendition = new Rendition(registry, videoSettings);
+                created.add(rendition);
+                return rendition;
+            }
+        }, simulcast, MAX_RENDITIONS);
+    }
+
+    private static VideoSettings createSettings(int displayId, int bitRate) {
+        VideoSettings settings = new VideoSettings();
+        settings.setDisplayId(displayId);
+        settings.setBounds(1080, 1920);
+        settings.setBitRate(bitRate);
+        settings.setMaxFps(30);
+        return settings;
+    }
+
+    @Test
+    public void testSharedRendition() {
+        StreamSessions<Integer, Rendition> sessions = createSessions(false);
+        Rendition first = sessions.join(1, null, createSettings(DISPLAY_ID, 8_000_000));
+        Rendition second = sessions.join(2, null, createSettings(DISPLAY_ID, 2_000_000));
+        Assert.assertSame(first, second);
+        Assert.assertEquals(2, first.getViewerCount());
+
+        sessions.leave(1, first);
+        Assert.assertEquals(0, first.releaseCount.get());
+        Assert.assertArrayEquals(new Rendition[] {first}, registry.getRenditions(DISPLAY_ID));
+
+        sessions.leave(2, first);
+        Assert.assertEquals(1, first.releaseCount.get());
+        Assert.assertEquals(0, registry.getRenditions(DISPLAY_ID).length);
+
+        // not a viewer anymore
+        sessions.leave(2, first);
+        Assert.assertEquals(2, first.leftCount.get());
+    }
+
+    @Test
+    public void testJoinerAdoptsRunningCodec() {
+        StreamSessions<Integer, Rendition> sessions = createSessions(false);
+        VideoSettings running = createSettings(DISPLAY_ID, 8_000_000);
+        running.setMimeTypes("video/hevc");
+        Rendition rendition = sessions.join(1, null, running);
+
+        VideoSettings requested = createSettings(DISPLAY_ID, 2_000_000);
+        requested.setMimeTypes("video/av01,video/hevc");
+        sessions.join(2, null, requested);
+        Assert.assertEquals("video/hevc", rendition.getVideoSettings().getMimeTypes());
+
+        // a client which cannot decode the running codec renegotiates it for all the viewers
+        VideoSettings avcOnly = createSettings(DISPLAY_ID, 2_000_000);
+        avcOnly.setMimeTypes("video/avc");
+        Assert.assertSame(rendition, sessions.join(3, null, avcOnly));
+        Assert.assertEquals("video/avc", rendition.getMimeType());
+        sessions.leave(3, rendition);
+
+        // the single viewer of a stream may change its codec
+        sessions.leave(1, rendition);
+        Assert.assertEquals(1, rendition.getViewerCount());
+        VideoSettings changed = createSettings(DISPLAY_ID, 2_000_000);
+        changed.setMimeTypes("video/av01");
+        Assert.assertSame(rendition, sessions.join(2, rendition, changed));
+        Assert.assertEquals("video/av01", rendition.getVideoSettings().getMimeTypes());
+    }
+
+    @Test
+    public void testSwitchDisplay() {
+        StreamSessions<Integer, Rendition> sessions = createSessions(false);
+        Rendition first = sessions.join(1, null, createSettings(DISPLAY_ID, 8_000_000));
+        Rendition second = sessions.join(1, first, createSettings(DISPLAY_ID + 1, 8_000_000));
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(1, first.releaseCount.get());
+        Assert.assertEquals(0, registry.getRenditions(DISPLAY_ID).length);
+        Assert.assertArrayEquals(new Rendition[] {second}, registry.getRenditions(DISPLAY_ID + 1));
+    }
+
+    @Test
+    public void testSimulcastSharedRenditionIsNotChanged() {
+        StreamSessions<Integer, Rendition> sessions = createSessions(true);
+        VideoSettings settings = createSettings(DISPLAY_ID, 8_000_000);
+        Rendition shared = sessions.join(1, null, settings);
+        Assert.assertSame(shared, sessions.join(2, null, createSettings(DISPLAY_ID, 8_000_000)));
+
+        // client 2 requests another bitrate: it gets its own rendition
+        Rendition own = sessions.join(2, shared, createSettings(DISPLAY_ID, 2_000_000));
+        Assert.assertNotSame(shared, own);
+        Assert.assertEquals(8_000_000, shared.getVideoSettings().getBitRate());
+        Assert.assertEquals(1, shared.getViewerCount());
+        Assert.assertEquals(1, shared.leftCount.get());
+        Assert.assertEquals(0, shared.releaseCount.get());
+
+        // its single viewer may change it in place
+        Assert.assertSame(own, sessions.join(2, own, createSettings(DISPLAY_ID, 4_000_000)));
+        Assert.assertEquals(4_000_000, own.getVideoSettings().getBitRate());
+    }
+
+    @Test
+    public void testConnectDisconnectChurnWhileStreaming() throws InterruptedException {
+        runChurn(createSessions(false));
+        Assert.assertEquals(0, registry.getRenditions(DISPLAY_ID).length);
+    }
+
+    @Test
+    public void testSimulcastConnectDisconnectChurnWhileStreaming() throws InterruptedException {
+        runChurn(createSessions(true));
+        Assert.assertEquals(0, registry.getRenditions(DISPLAY_ID).length);
+    }
+
+    private void runChurn(final StreamSessions<Integer, Rendition> sessions) throws InterruptedException {
+        final int threadCount = 4;
+        final int connectionsPerThread = 250; // 1000 connects and disconnects
+        final int[] bitRates = {8_000_000, 4_000_000, 2_000_000, 1_000_000};
+        final Set<Integer> activeIds = Collections.newSetFromMap(new ConcurrentHashMap<Integer, Boolean>());
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final AtomicBoolean churning = new AtomicBoolean(true);
+        final AtomicLong sent = new AtomicLong();
+
+        // the encoder thread, sending to every client of every rendition
+        Thread streamer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (churning.get()) {
+                        Rendition[] renditions = registry.getRenditions(DISPLAY_ID);
+                        Assert.assertTrue(renditions.length <= MAX_RENDITIONS);
+                        for (Rendition rendition : renditions) {
+                            for (Integer clientId : rendition.clients.snapshot()) {
+                                Assert.assertNotNull(clientId);
+                                sent.incrementAndGet();
+                            }
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        });
+        streamer.start();
+
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        for (int t = 0; t < threadCount; ++t) {
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < connectionsPerThread; ++i) {
+                            int clientId = registry.reserveClientId();
+                            Assert.assertNotEquals(SessionRegistry.NO_CLIENT_ID, clientId);
+                            Assert.assertTrue("Client id reserved twice", activeIds.add(clientId));
+                            Rendition rendition = sessions.join(clientId, null, createSettings(DISPLAY_ID, bitRates[i % bitRates.length]));
+                            Thread.yield();
+                            // change the settings, as a client resizing its window
+                            rendition = sessions.join(clientId, rendition, createSettings(DISPLAY_ID, bitRates[(i + 1) % bitRates.length]));
+                            Thread.yield();
+                            sessions.leave(clientId, rendition);
+                            Assert.assertTrue(activeIds.remove(clientId));
+                            registry.releaseClientId(clientId);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+        churning.set(false);
+        streamer.join();
+
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        Assert.assertEquals(0, registry.getClientCount());
+        for (Rendition rendition : created) {
+            Assert.assertEquals("Rendition not released once", 1, rendition.releaseCount.get());
+            Assert.assertEquals(0, rendition.getViewerCount());
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SubscriberListTest {
+
+    @Test
+    public void testAddRemove() {
+        SubscriberList<String> list = new SubscriberList<>(new String[0]);
+        Assert.assertTrue(list.isEmpty());
+
+        Assert.assertTrue(list.add("a"));
+        Assert.assertTrue(list.add("b"));
+        Assert.assertTrue(list.add("c"));
+        Assert.assertFalse(list.add("b"));
+        Assert.assertArrayEquals(new String[] {"a", "b", "c"}, list.snapshot());
+
+        Assert.assertTrue(list.remove("b"));
+        Assert.assertFalse(list.remove("b"));
+        Assert.assertArrayEquals(new String[] {"a", "c"}, list.snapshot());
+        Assert.assertTrue(list.contains("c"));
+        Assert.assertFalse(list.contains("b"));
+        Assert.assertEquals(2, list.size());
+    }
+
+    @Test
+    public void testSnapshotNotAffectedByChanges() {
+        SubscriberList<String> list = new SubscriberList<>(new String[0]);
+        list.add("a");
+        list.add("b");
+
+        String[] snapshot = list.snapshot();
+        list.remove("a");
+        list.add("c");
+
+        Assert.assertArrayEquals(new String[] {"a", "b"}, snapshot);
+        Assert.assertArrayEquals(new String[] {"b", "c"}, list.snapshot());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNonEmptyInitialArray() {
+        new SubscriberList<>(new String[] {"a"});
+    }
+}
@@ -0,0 +1,58 @@
+package com.genymobile.scrcpy;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class VideoSettingsTest {
+
+    private static VideoSettings createSettings() {
+        VideoSettings settings = new VideoSettings();
+        settings.setBitRate(4_000_000);
+        settings.setMaxFps(30);
+        settings.setBounds(720, 1280);
+        settings.setDisplayId(2);
+        settings.setEncoderName("c2.android.hevc.encoder");
+        settings.setMimeTypes("video/hevc,video/avc");
+        settings.setProfile(1);
+        settings.setLevel(2048);
+        settings.setTuning(EncoderTuning.INTERACTIVE);
+        return settings;
+    }
+
+    @Test
+    public void testSerializationRoundTrip() {
+        VideoSettings settings = createSettings();
+        VideoSettings parsed = VideoSettings.fromByteArray(settings.toByteArray());
+        Assert.assertEquals(settings, parsed);
+        Assert.assertEquals("video/hevc,video/avc", parsed.getMimeTypes());
+        Assert.assertEquals(1, parsed.getProfile());
+        Assert.assertEquals(2048, parsed.getLevel());
+        Assert.assertEquals(EncoderTuning.INTERACTIVE, parsed.getTuning());
+    }
+
+    @Test
+    public void testParseWithoutCodecFields() {
+        VideoSettings settings = createSettings();
+        byte[] bytes = settings.toByteArray();
+        // the settings sent by a client not aware of the codec fields
+        int codecFieldsLength = 4 + "video/hevc,video/avc".length() + 8 + 1;
+        VideoSettings parsed = VideoSettings.fromByteArray(Arrays.copyOf(bytes, bytes.length - codecFieldsLength));
+        Assert.assertNull(parsed.getMimeTypes());
+        Assert.assertEquals(0, parsed.getProfile());
+        Assert.assertEquals(EncoderTuning.DEFAULT, parsed.getTuning());
+        Assert.assertEquals("c2.android.hevc.encoder", parsed.getEncoderName());
+    }
+
+    @Test
+    public void testDefaultMimeTypeIsNotSerialized() {
+        VideoSettings settings = new VideoSettings();
+        ByteBuffer buffer = ByteBuffer.wrap(settings.toByteArray());
+        // base fields, then empty codec options, encoder name and mime types, then profile, level and tuning
+        Assert.assertEquals(48, buffer.remaining());
+        buffer.position(35 + 8);
+        Assert.assertEquals(0, buffer.getInt());
+    }
+}
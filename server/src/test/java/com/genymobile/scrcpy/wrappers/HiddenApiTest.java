@@ -0,0 +1,80 @@
+package com.genymobile.scrcpy.wrappers;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+
+public class HiddenApiTest {
+
+    @Test
+    public void testAvailableMethod() throws Exception {
+        HiddenApi.MethodRef ref = HiddenApi.method(String.class, "substring", int.class, int.class);
+        Assert.assertTrue(ref.isAvailable());
+        Method method = ref.get();
+        Assert.assertSame(method, ref.get()); // cached
+        Assert.assertEquals("cd", method.invoke("abcde", 2, 4));
+        Assert.assertEquals("java.lang.String.substring(int, int)", ref.getSignature());
+    }
+
+    @Test
+    public void testMissingMethod() {
+        HiddenApi.MethodRef ref = HiddenApi.method(String.class, "doesNotExist", int.class);
+        Assert.assertFalse(ref.isAvailable());
+        try {
+            ref.get();
+            Assert.fail("Expected NoSuchMethodException");
+        } catch (NoSuchMethodException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testFirstAvailable() throws Exception {
+        HiddenApi.MethodRef newVersion = HiddenApi.method(String.class, "doesNotExistYet");
+        HiddenApi.MethodRef oldVersion = HiddenApi.method(String.class, "length");
+        Method method = HiddenApi.firstAvailable(newVersion, oldVersion);
+        Assert.assertEquals("length", method.getName());
+    }
+
+    @Test(expected = NoSuchMethodException.class)
+    public void testNoneAvailable() throws Exception {
+        HiddenApi.firstAvailable(HiddenApi.method(String.class, "missing1"), HiddenApi.method(String.class, "missing2"));
+    }
+
+    @Test
+    public void testReport() {
+        HiddenApi.method(Object.class, "hashCode");
+        HiddenApi.method(Object.class, "hiddenMethod", long.class);
+        String report = HiddenApi.getReport();
+        Assert.assertTrue(report.contains("available java.lang.Object.hashCode()\n"));
+        Assert.assertTrue(report.contains("missing   java.lang.Object.hiddenMethod(long)\n"));
+    }
+
+    @Test
+    public void testMissingAlternativesCountedOnce() {
+        long missing = HiddenApi.getMissingMethodCount();
+
+        // a legacy signature absent on this "device", replaced by the new one
+        HiddenApi.MethodRef newVersion = HiddenApi.method(String.class, "isEmpty");
+        HiddenApi.MethodRef oldVersion = HiddenApi.method(String.class, "isEmptyLegacy");
+        HiddenApi.alternatives(newVersion, oldVersion);
+        Assert.assertFalse(oldVersion.isAvailable());
+        Assert.assertTrue(newVersion.isAvailable());
+        Assert.assertEquals(missing, HiddenApi.getMissingMethodCount());
+
+        // none of the alternatives available: a single missing method
+        HiddenApi.MethodRef missing1 = HiddenApi.method(String.class, "notYet");
+        HiddenApi.MethodRef missing2 = HiddenApi.method(String.class, "notAnymore");
+        HiddenApi.alternatives(missing1, missing2);
+        Assert.assertFalse(missing1.isAvailable());
+        Assert.assertEquals(missing, HiddenApi.getMissingMethodCount());
+        Assert.assertFalse(missing2.isAvailable());
+        Assert.assertEquals(missing + 1, HiddenApi.getMissingMethodCount());
+
+        String report = HiddenApi.getReport();
+        Assert.assertTrue(report.contains("unused    java.lang.String.isEmptyLegacy()\n"));
+        Assert.assertTrue(report.contains("missing   java.lang.String.notYet()\n"));
+        Assert.assertTrue(report.contains("missing   java.lang.String.notAnymore()\n"));
+    }
+}